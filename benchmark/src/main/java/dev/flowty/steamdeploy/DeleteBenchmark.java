@@ -0,0 +1,78 @@
+package dev.flowty.steamdeploy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the deletion of staged content. Every invocation needs a fresh tree to delete, so we
+ * measure single invocations rather than throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class DeleteBenchmark {
+
+  @Param
+  Tree tree;
+
+  private Path root;
+  private Path source;
+  private Path victim;
+  private Ingester copier;
+
+  @Setup
+  public void setup() {
+    root = Tree.tempDir();
+    source = tree.create(root.resolve("source"));
+    victim = root.resolve("victim");
+    copier = new Ingester(new Ingestion(), Platform.fromOsName());
+  }
+
+  @Setup(Level.Invocation)
+  public void populate() {
+    copier.ingest(source, victim, root.resolve("victim.manifest"));
+  }
+
+  @TearDown(Level.Invocation)
+  public void awaitReaping() {
+    QuietFiles.awaitReaping(Duration.ofMinutes(1));
+  }
+
+  @TearDown
+  public void tearDown() {
+    QuietFiles.recursiveDelete(root);
+  }
+
+  /**
+   * Synchronous deletion
+   */
+  @Benchmark
+  public void recursiveDelete() {
+    QuietFiles.recursiveDelete(victim);
+  }
+
+  /**
+   * Rename-and-reap deletion: this measures only the time that the caller is blocked for
+   */
+  @Benchmark
+  public void reap() {
+    QuietFiles.reap(victim);
+  }
+}
@@ -0,0 +1,106 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures end-to-end deployments with {@link SteamCMD#deploy(Auth, Path, InjectableFile)}
+ * against {@link FakeSteamCMD}, so the results show our own overhead in supervising steamcmd
+ * rather than steam's upload speed. The fake is a separate JVM, so its startup time is included in
+ * every result: the <code>QUIET</code> deployment is the baseline.
+ *
+ * @see TimeoutBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DeployBenchmark {
+
+  /**
+   * The volume of steamcmd output
+   */
+  public enum Output {
+    /**
+     * Just the login and build result
+     */
+    QUIET("""
+        login
+        build
+        """),
+    /**
+     * A verbose build with plenty of progress reports
+     */
+    CHATTY("""
+        login
+        lines 2000 100
+        progress 1073741824 1000
+        build
+        """),
+    /**
+     * Far more output than steamcmd would ever produce, as fast as it can be printed
+     */
+    FLOOD("""
+        login
+        lines 200000 200
+        build
+        """);
+
+    private final String scenario;
+
+    Output(String scenario) {
+      this.scenario = scenario;
+    }
+  }
+
+  @Param
+  Output output;
+
+  private Path root;
+  private Path app;
+  private InjectableFile appBuild;
+  private SteamCMD steamCMD;
+
+  @Setup
+  public void setup() {
+    root = Tree.tempDir();
+    app = root.resolve("app");
+    QuietFiles.createDirectories(app);
+    QuietFiles.write(app.resolve("game.exe"), "content".getBytes(UTF_8));
+    appBuild = InjectableFile.appBuild(1234, "", false, false, 5678);
+
+    FakeSteamCMD.install(root.resolve("steamcmd"), output.scenario);
+    steamCMD = new SteamCMD(root.resolve("steamcmd"));
+  }
+
+  @TearDown
+  public void tearDown() {
+    QuietFiles.recursiveDelete(root);
+  }
+
+  /**
+   * A successful deployment
+   *
+   * @return the build result
+   */
+  @Benchmark
+  public Result deploy() {
+    return steamCMD.deploy(new Auth("user"), app, appBuild);
+  }
+}
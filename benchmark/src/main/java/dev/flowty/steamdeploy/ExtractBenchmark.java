@@ -0,0 +1,141 @@
+package dev.flowty.steamdeploy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures extraction of the SDK archive formats, using local archives of synthetic trees rather
+ * than the real SDK so that results do not depend on the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class ExtractBenchmark {
+
+  /**
+   * The archive formats that we download
+   */
+  public enum Format {
+    /**
+     * As used by {@link Platform#LINUX} and {@link Platform#MAC}
+     */
+    TAR_GZ(Platform.LINUX) {
+      @Override
+      void write(Path dir, List<Path> files, OutputStream out) throws IOException {
+        try (GzipCompressorOutputStream gz = new GzipCompressorOutputStream(out);
+            TarArchiveOutputStream tar = new TarArchiveOutputStream(gz)) {
+          tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+          for (Path file : files) {
+            tar.putArchiveEntry(new TarArchiveEntry(file.toFile(), entryName(dir, file)));
+            Files.copy(file, tar);
+            tar.closeArchiveEntry();
+          }
+        }
+      }
+    },
+    /**
+     * As used by {@link Platform#WINDOWS}
+     */
+    ZIP(Platform.WINDOWS) {
+      @Override
+      void write(Path dir, List<Path> files, OutputStream out) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+          for (Path file : files) {
+            zip.putNextEntry(new ZipEntry(entryName(dir, file)));
+            Files.copy(file, zip);
+            zip.closeEntry();
+          }
+        }
+      }
+    };
+
+    final Platform platform;
+
+    Format(Platform platform) {
+      this.platform = platform;
+    }
+
+    abstract void write(Path dir, List<Path> files, OutputStream out) throws IOException;
+
+    /**
+     * @param dir     The directory to archive
+     * @param archive The archive file to create
+     */
+    void archive(Path dir, Path archive) {
+      try (OutputStream out = Files.newOutputStream(archive);
+          var walk = Files.walk(dir)) {
+        write(dir, walk.filter(Files::isRegularFile).sorted().toList(), out);
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    }
+
+    private static String entryName(Path dir, Path file) {
+      return dir.relativize(file).toString().replace('\\', '/');
+    }
+  }
+
+  @Param
+  Tree tree;
+
+  @Param
+  Format format;
+
+  private Path root;
+  private Path archive;
+  private Path destination;
+
+  @Setup
+  public void setup() {
+    root = Tree.tempDir();
+    Path source = tree.create(root.resolve("source"));
+    archive = root.resolve("archive");
+    format.archive(source, archive);
+    QuietFiles.recursiveDelete(source);
+    destination = root.resolve("destination");
+  }
+
+  @Setup(Level.Invocation)
+  public void clean() {
+    QuietFiles.recursiveDelete(destination);
+  }
+
+  @TearDown
+  public void tearDown() {
+    QuietFiles.recursiveDelete(root);
+  }
+
+  /**
+   * Extracts the archive
+   */
+  @Benchmark
+  public void extract() {
+    format.platform.extract(archive, destination);
+  }
+}
@@ -0,0 +1,83 @@
+package dev.flowty.steamdeploy;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures staging of application files, as done by {@link SteamCMD#ingestApplication(Path,
+ * Workspace)}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class IngestBenchmark {
+
+  @Param
+  Tree tree;
+
+  @Param({"COPY", "LINK"})
+  Staging staging;
+
+  private Path root;
+  private Path app;
+  private Ingester replacing;
+  private Ingester incremental;
+
+  @Setup
+  public void setup() {
+    root = Tree.tempDir();
+    app = tree.create(root.resolve("app"));
+    Platform platform = Platform.fromOsName();
+
+    Ingestion r = new Ingestion();
+    r.staging(staging);
+    replacing = new Ingester(r, platform);
+
+    Ingestion i = new Ingestion();
+    i.staging(staging);
+    i.incremental(true);
+    incremental = new Ingester(i, platform);
+    incremental.ingest(app, root.resolve("incremental"), root.resolve("incremental.manifest"));
+  }
+
+  @TearDown
+  public void tearDown() {
+    QuietFiles.recursiveDelete(root);
+  }
+
+  /**
+   * The default behaviour: delete the previous content and stage everything afresh
+   *
+   * @return staging statistics
+   */
+  @Benchmark
+  public Ingester.Stats replace() {
+    return replacing.ingest(app, root.resolve("replace"), root.resolve("replace.manifest"));
+  }
+
+  /**
+   * Incremental staging when nothing has changed
+   *
+   * @return staging statistics
+   */
+  @Benchmark
+  public Ingester.Stats incrementalUnchanged() {
+    return incremental.ingest(app, root.resolve("incremental"),
+        root.resolve("incremental.manifest"));
+  }
+}
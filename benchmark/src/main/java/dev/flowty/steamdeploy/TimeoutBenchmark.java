@@ -0,0 +1,101 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how promptly misbehaving steamcmd processes are killed, by running deployments against
+ * a {@link FakeSteamCMD} that breaches the {@link Timeouts}. Anything over the 500ms timeout is
+ * lateness, though the inactivity period only starts once the fake's JVM has started and logged
+ * in: compare with the <code>QUIET</code> {@link DeployBenchmark} for that.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class TimeoutBenchmark {
+
+  private static final Duration TIMEOUT = Duration.ofMillis(500);
+
+  private Path root;
+  private Path app;
+  private InjectableFile appBuild;
+  private SteamCMD stalling;
+  private SteamCMD overrunning;
+
+  @Setup
+  public void setup() {
+    root = Tree.tempDir();
+    app = root.resolve("app");
+    QuietFiles.createDirectories(app);
+    QuietFiles.write(app.resolve("game.exe"), "content".getBytes(UTF_8));
+    appBuild = InjectableFile.appBuild(1234, "", false, false, 5678);
+
+    FakeSteamCMD.install(root.resolve("stalling"), """
+        login
+        stall 60000
+        build
+        """);
+    stalling = new SteamCMD(root.resolve("stalling"))
+        .withTimeouts(t -> t.inactivity(TIMEOUT));
+
+    FakeSteamCMD.install(root.resolve("overrunning"), """
+        login
+        rate 100
+        lines 6000 80
+        build
+        """);
+    overrunning = new SteamCMD(root.resolve("overrunning"))
+        .withTimeouts(t -> t.total(TIMEOUT));
+  }
+
+  @TearDown
+  public void tearDown() {
+    QuietFiles.recursiveDelete(root);
+  }
+
+  /**
+   * steamcmd goes quiet and is killed for inactivity
+   *
+   * @return the failure message
+   */
+  @Benchmark
+  public String inactivity() {
+    return timeout(stalling);
+  }
+
+  /**
+   * steamcmd keeps talking, but takes too long overall
+   *
+   * @return the failure message
+   */
+  @Benchmark
+  public String total() {
+    return timeout(overrunning);
+  }
+
+  private String timeout(SteamCMD steamCMD) {
+    try {
+      steamCMD.deploy(new Auth("user"), app, appBuild);
+    } catch (IllegalStateException ise) {
+      return ise.getMessage();
+    }
+    throw new IllegalStateException("Deployment was expected to time out");
+  }
+}
@@ -0,0 +1,81 @@
+package dev.flowty.steamdeploy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Synthetic application directory trees
+ */
+public enum Tree {
+
+  /**
+   * Thousands of small files in a shallow hierarchy
+   */
+  MANY_SMALL {
+    @Override
+    void populate(Path root, Random rng) {
+      for (int d = 0; d < 40; d++) {
+        for (int f = 0; f < 100; f++) {
+          file(root.resolve("dir" + d).resolve("file" + f + ".dat"), 1024, rng);
+        }
+      }
+    }
+  },
+
+  /**
+   * A handful of very large files
+   */
+  FEW_HUGE {
+    @Override
+    void populate(Path root, Random rng) {
+      for (int f = 0; f < 4; f++) {
+        file(root.resolve("huge" + f + ".pak"), 32 * 1024 * 1024, rng);
+      }
+    }
+  },
+
+  /**
+   * A long chain of nested directories with a few files at each level
+   */
+  DEEP {
+    @Override
+    void populate(Path root, Random rng) {
+      Path dir = root;
+      for (int d = 0; d < 64; d++) {
+        dir = dir.resolve("level" + d);
+        for (int f = 0; f < 4; f++) {
+          file(dir.resolve("file" + f + ".dat"), 4 * 1024, rng);
+        }
+      }
+    }
+  };
+
+  /**
+   * Fills a directory with this tree's content. The content is the same every time.
+   *
+   * @param root The directory to populate
+   * @return the directory
+   */
+  Path create(Path root) {
+    QuietFiles.createDirectories(root);
+    populate(root, new Random(ordinal()));
+    return root;
+  }
+
+  abstract void populate(Path root, Random rng);
+
+  private static void file(Path path, int size, Random rng) {
+    QuietFiles.createDirectories(path.getParent());
+    byte[] content = new byte[size];
+    rng.nextBytes(content);
+    QuietFiles.write(path, content);
+  }
+
+  /**
+   * @return A new temporary directory
+   */
+  static Path tempDir() {
+    return QuietFiles.wrap(() -> Files.createTempDirectory("steamdeploy-benchmark"));
+  }
+}
@@ -0,0 +1,95 @@
+package dev.flowty.steamdeploy;
+
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures generation and parsing of app build scripts with many depots and file mappings
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class VDFBenchmark {
+
+  @Param({"1", "16"})
+  int depots;
+
+  @Param({"10", "1000"})
+  int mappings;
+
+  private VDF script;
+  private String text;
+
+  @Setup
+  public void setup() {
+    script = script();
+    text = script.toString();
+  }
+
+  /**
+   * Builds and renders the script
+   *
+   * @return The script text
+   */
+  @Benchmark
+  public String generate() {
+    return script().toString();
+  }
+
+  /**
+   * Renders a previously-built script
+   */
+  @Benchmark
+  public void write() {
+    script.writeTo(Writer.nullWriter());
+  }
+
+  /**
+   * Parses the script
+   *
+   * @return The parsed content
+   */
+  @Benchmark
+  public VDF parse() {
+    return VDFReader.parse(new StringReader(text), false);
+  }
+
+  private VDF script() {
+    return new VDF("AppBuild")
+        .v("AppID", "1000")
+        .v("Desc", "benchmark")
+        .v("ContentRoot", "/path/to/content")
+        .v("BuildOutput", "/path/to/output")
+        .o("Depots", ds -> {
+          for (int d = 0; d < depots; d++) {
+            String id = String.valueOf(1001 + d);
+            ds.o(id, depot -> {
+              depot.v("DepotID", id);
+              for (int m = 0; m < mappings; m++) {
+                String dir = "dir" + m;
+                depot.o("FileMapping", fm -> fm
+                    .v("LocalPath", id + "/" + dir + "/*")
+                    .v("DepotPath", dir)
+                    .v("recursive", "1"));
+              }
+              depot.v("FileExclusion", "*.pdb");
+            });
+          }
+        });
+  }
+}
@@ -0,0 +1,383 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.InstantSource;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Summarises a deployment as JSON: phase timings, the build ID, and per-depot file and byte counts.
+ * The depot details come from the <code>manifest_&lt;depot&gt;.txt</code> files that steamcmd writes
+ * to the <code>BuildOutput</code> directory, compared against the manifests of the previous build.
+ * Manifests that were not rewritten by this build are left out, so a failed build doesn't report
+ * the results of an earlier one.
+ */
+class BuildReport implements Consumer<Progress> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BuildReport.class);
+
+  private static final Pattern MANIFEST_FILE = Pattern.compile("manifest_(\\d+)\\.txt");
+  private static final Pattern HEADER = Pattern.compile("^\\s*([^:]+?)\\s*:\\s*(.*?)\\s*$");
+  private static final Pattern ROW = Pattern.compile(
+      "^\\s*(\\d+)\\s+(\\d+)\\s+([0-9a-fA-F]{40})\\s+(\\d+)\\s+(.+?)\\s*$");
+  private static final int DIRECTORY_FLAG = 0x40;
+
+  /**
+   * A file in a depot manifest
+   *
+   * @param size   file size in bytes
+   * @param chunks How many chunks the file was split into
+   * @param sha    content hash
+   */
+  record File(long size, int chunks, String sha) {
+
+  }
+
+  /**
+   * The human-readable manifest of a depot build
+   *
+   * @param manifestId The manifest ID, if found
+   * @param compressed The compressed size of the depot content, if found
+   * @param files      The files in the depot, keyed by path
+   */
+  record DepotManifest(Optional<String> manifestId, OptionalLong compressed,
+                       Map<String, File> files) {
+
+    /**
+     * @param path A <code>manifest_&lt;depot&gt;.txt</code> file
+     * @return The parsed manifest
+     */
+    static DepotManifest parse(Path path) {
+      Optional<String> id = Optional.empty();
+      OptionalLong compressed = OptionalLong.empty();
+      Map<String, File> files = new TreeMap<>();
+      try (Stream<String> lines = QuietFiles.lines(path)) {
+        for (String line : (Iterable<String>) lines::iterator) {
+          Matcher row = ROW.matcher(line);
+          Matcher header = HEADER.matcher(line);
+          if (row.matches()) {
+            if ((Integer.parseInt(row.group(4)) & DIRECTORY_FLAG) == 0) {
+              files.put(row.group(5), new File(
+                  Long.parseLong(row.group(1)),
+                  Integer.parseInt(row.group(2)),
+                  row.group(3).toLowerCase(Locale.ROOT)));
+            }
+          } else if (header.matches()) {
+            String value = header.group(2);
+            switch (header.group(1)) {
+              case "Manifest ID / date" -> id = Optional.of(value.split("\\s*/\\s*")[0]);
+              case "Total bytes compressed" -> compressed = OptionalLong.of(Long.parseLong(value));
+              default -> {
+                // we compute the other totals from the rows
+              }
+            }
+          }
+        }
+      }
+      return new DepotManifest(id, compressed, files);
+    }
+  }
+
+  /**
+   * Timings of the depot build phases, as seen on the console
+   */
+  private static class DepotTimes {
+
+    long start;
+    long uploadStart = -1;
+    long end = -1;
+  }
+
+  private final InstantSource clock;
+  private final Map<String, Long> phases = new LinkedHashMap<>();
+  private final Map<Long, DepotTimes> depotTimes = new TreeMap<>();
+  private final Map<Long, DepotManifest> previous = new TreeMap<>();
+  private final Map<Long, FileTime> previousModified = new TreeMap<>();
+  private DepotTimes current;
+  private Path output;
+  private Optional<Long> appId = Optional.empty();
+  private Optional<Long> buildId = Optional.empty();
+
+  /**
+   * @param clock The source of time
+   */
+  BuildReport(InstantSource clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Runs and times a phase of the deployment
+   *
+   * @param phase  The phase name
+   * @param action The phase activity
+   * @param <T>    The phase result type
+   * @return The phase result
+   */
+  <T> T time(String phase, Supplier<T> action) {
+    long start = clock.millis();
+    try {
+      return action.get();
+    } finally {
+      synchronized (this) {
+        phases.merge(phase, clock.millis() - start, Long::sum);
+      }
+    }
+  }
+
+  /**
+   * Runs and times a phase of the deployment
+   *
+   * @param phase  The phase name
+   * @param action The phase activity
+   */
+  void time(String phase, Runnable action) {
+    time(phase, () -> {
+      action.run();
+      return null;
+    });
+  }
+
+  /**
+   * Finds the build output directory and remembers the manifests of the previous build, so that we
+   * can see what has changed. Call this before the build starts.
+   *
+   * @param script    The build script
+   * @param workspace The deployment workspace
+   */
+  synchronized void prepare(Path script, Workspace workspace) {
+    output = workspace.output();
+    try (Reader in = Files.newBufferedReader(script, UTF_8)) {
+      VDF vdf = VDFReader.parse(in, false);
+      appId = vdf.value("AppID").map(Long::valueOf);
+      vdf.value("BuildOutput")
+          // build scripts are usually written with windows separators
+          .map(o -> o.replace('\\', '/'))
+          .map(o -> script.toAbsolutePath().getParent().resolve(o).normalize())
+          .ifPresent(o -> output = o);
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Failed to read build script {}, assuming default output location", script, e);
+    }
+    previous.clear();
+    previousModified.clear();
+    manifestFiles().forEach((id, file) -> {
+      previous.put(id, DepotManifest.parse(file));
+      previousModified.put(id, modified(file));
+    });
+  }
+
+  @Override
+  public synchronized void accept(Progress progress) {
+    long now = clock.millis();
+    switch (progress) {
+      case Progress.Depot d -> {
+        end(now);
+        current = new DepotTimes();
+        current.start = now;
+        depotTimes.put(d.depotId(), current);
+      }
+      case Progress.Transfer t -> {
+        if (current != null && t.phase() == Progress.Phase.UPLOADING && current.uploadStart < 0) {
+          current.uploadStart = now;
+        }
+      }
+      case Progress.Build b -> {
+        end(now);
+        appId = Optional.of(b.appId());
+        buildId = Optional.of(b.buildId());
+      }
+      case Progress.Login l -> {
+        // not interesting
+      }
+    }
+  }
+
+  private void end(long now) {
+    if (current != null) {
+      current.end = now;
+      current = null;
+    }
+  }
+
+  /**
+   * Writes the report
+   *
+   * @param file   Where to write the report
+   * @param result The build result
+   */
+  synchronized void write(Path file, Result result) {
+    end(clock.millis());
+    Map<Long, DepotManifest> depots = new TreeMap<>(output != null ? manifests() : Map.of());
+    depotTimes.keySet().forEach(id -> depots.putIfAbsent(id, null));
+
+    StringBuilder json = new StringBuilder("{\n");
+    field(json, 1, "appId", appId.map(String::valueOf).orElse("null"), true);
+    field(json, 1, "buildId", buildId.map(String::valueOf).orElse("null"), true);
+    field(json, 1, "status", String.valueOf(result.status()), true);
+    field(json, 1, "output", output != null ? quote(output.toString()) : "null", true);
+    json.append("  \"phaseMillis\": {");
+    String separator = "\n";
+    for (Map.Entry<String, Long> phase : phases.entrySet()) {
+      json.append(separator);
+      field(json, 2, phase.getKey(), String.valueOf(phase.getValue()), false);
+      separator = ",\n";
+    }
+    json.append(phases.isEmpty() ? "},\n" : "\n  },\n");
+    json.append("  \"depots\": [");
+    separator = "\n";
+    for (Map.Entry<Long, DepotManifest> depot : depots.entrySet()) {
+      json.append(separator);
+      depot(json, depot.getKey(), Optional.ofNullable(depot.getValue()));
+      separator = ",\n";
+    }
+    json.append(depots.isEmpty() ? "]\n" : "\n  ]\n");
+    json.append("}\n");
+
+    QuietFiles.createDirectories(file.toAbsolutePath().getParent());
+    QuietFiles.write(file, json.toString().getBytes(UTF_8));
+    LOG.info("Build report written to {}", file);
+  }
+
+  private void depot(StringBuilder json, long id, Optional<DepotManifest> manifest) {
+    json.append("    {\n");
+    field(json, 3, "depotId", String.valueOf(id), true);
+    manifest.ifPresent(m -> {
+      Map<String, File> before = Optional.ofNullable(previous.get(id))
+          .map(DepotManifest::files)
+          .orElse(Map.of());
+      long files = 0, chunks = 0, bytes = 0;
+      long newFiles = 0, newBytes = 0;
+      long changedFiles = 0, changedBytes = 0;
+      long unchangedFiles = 0, unchangedBytes = 0, unchangedChunks = 0;
+      for (Map.Entry<String, File> entry : m.files().entrySet()) {
+        File f = entry.getValue();
+        File old = before.get(entry.getKey());
+        files++;
+        chunks += f.chunks();
+        bytes += f.size();
+        if (old == null) {
+          newFiles++;
+          newBytes += f.size();
+        } else if (old.sha().equals(f.sha())) {
+          unchangedFiles++;
+          unchangedBytes += f.size();
+          unchangedChunks += f.chunks();
+        } else {
+          changedFiles++;
+          changedBytes += f.size();
+        }
+      }
+      long removedFiles = before.keySet().stream()
+          .filter(path -> !m.files().containsKey(path))
+          .count();
+      field(json, 3, "manifestId", m.manifestId().map(BuildReport::quote).orElse("null"), true);
+      field(json, 3, "files", String.valueOf(files), true);
+      field(json, 3, "chunks", String.valueOf(chunks), true);
+      field(json, 3, "bytes", String.valueOf(bytes), true);
+      field(json, 3, "compressedBytes", m.compressed().isPresent()
+          ? String.valueOf(m.compressed().getAsLong())
+          : "null", true);
+      field(json, 3, "newFiles", String.valueOf(newFiles), true);
+      field(json, 3, "newBytes", String.valueOf(newBytes), true);
+      field(json, 3, "changedFiles", String.valueOf(changedFiles), true);
+      field(json, 3, "changedBytes", String.valueOf(changedBytes), true);
+      field(json, 3, "unchangedFiles", String.valueOf(unchangedFiles), true);
+      field(json, 3, "unchangedBytes", String.valueOf(unchangedBytes), true);
+      field(json, 3, "removedFiles", String.valueOf(removedFiles), true);
+      // we only see per-file chunk counts, so unchanged files are the best guide to chunk reuse
+      field(json, 3, "chunkReuse", chunks == 0
+          ? "null"
+          : String.format(Locale.ROOT, "%.4f", (double) unchangedChunks / chunks), true);
+    });
+    DepotTimes t = depotTimes.get(id);
+    long uploadStart = t == null ? -1 : t.uploadStart < 0 ? t.end : t.uploadStart;
+    field(json, 3, "scanMillis", t == null ? "null" : String.valueOf(uploadStart - t.start), true);
+    field(json, 3, "uploadMillis", t == null ? "null" : String.valueOf(t.end - uploadStart),
+        false);
+    json.append("\n    }");
+  }
+
+  /**
+   * @return The manifests that have been written since {@link #prepare(Path, Workspace)}
+   */
+  private Map<Long, DepotManifest> manifests() {
+    Map<Long, DepotManifest> manifests = new TreeMap<>();
+    manifestFiles().forEach((id, file) -> {
+      DepotManifest manifest = DepotManifest.parse(file);
+      if (!previous.containsKey(id)
+          || !modified(file).equals(previousModified.get(id))
+          || !manifest.manifestId().equals(previous.get(id).manifestId())) {
+        manifests.put(id, manifest);
+      }
+    });
+    return manifests;
+  }
+
+  private Map<Long, Path> manifestFiles() {
+    Map<Long, Path> manifests = new TreeMap<>();
+    if (Files.isDirectory(output)) {
+      try (Stream<Path> files = QuietFiles.list(output)) {
+        files.forEach(f -> {
+          Matcher m = MANIFEST_FILE.matcher(f.getFileName().toString());
+          if (m.matches()) {
+            manifests.put(Long.parseLong(m.group(1)), f);
+          }
+        });
+      }
+    }
+    return manifests;
+  }
+
+  private static FileTime modified(Path file) {
+    return QuietFiles.wrap(() -> Files.getLastModifiedTime(file));
+  }
+
+  private static void field(StringBuilder json, int depth, String name, String value,
+      boolean more) {
+    json.append("  ".repeat(depth))
+        .append(quote(name))
+        .append(": ")
+        .append(value);
+    if (more) {
+      json.append(",\n");
+    }
+  }
+
+  private static String quote(String s) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"' -> sb.append("\\\"");
+        case '\\' -> sb.append("\\\\");
+        case '\n' -> sb.append("\\n");
+        case '\r' -> sb.append("\\r");
+        case '\t' -> sb.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            sb.append(String.format("\\u%04x", (int) c));
+          } else {
+            sb.append(c);
+          }
+        }
+      }
+    }
+    return sb.append('"').toString();
+  }
+}
@@ -0,0 +1,204 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An approximation of the content of a directory tree as steam sees it: each file split into
+ * fixed-size chunks, identified by their SHA-1 hashes. Steam's actual chunking is not documented,
+ * and may well not be at fixed offsets. Persisted as lines of tab-separated
+ * <code>size, mtime, chunks, path</code>, with the chunk hashes comma-separated.
+ */
+class ChunkIndex {
+
+  /**
+   * The typical size of the chunks that steam splits files into
+   */
+  static final int CHUNK_SIZE = 1024 * 1024;
+
+  /**
+   * How many chunks are hashed in a single task, so that huge files are spread over threads
+   */
+  private static final int CHUNKS_PER_TASK = 64;
+
+  private static final String NO_CHUNKS = "-";
+
+  /**
+   * The chunks of a single file
+   *
+   * @param size   The file size in bytes
+   * @param mtime  The last-modified time in milliseconds since the epoch
+   * @param chunks The hashes of the file's chunks, in order
+   */
+  record Entry(long size, long mtime, List<String> chunks) {
+
+    /**
+     * @param index The index of a chunk in this file
+     * @return The size of that chunk
+     */
+    long chunkSize(int index) {
+      return Math.min(CHUNK_SIZE, size - (long) index * CHUNK_SIZE);
+    }
+  }
+
+  private final Map<String, Entry> entries;
+
+  private ChunkIndex(Map<String, Entry> entries) {
+    this.entries = Collections.unmodifiableMap(entries);
+  }
+
+  /**
+   * @return An index with no entries
+   */
+  static ChunkIndex empty() {
+    return new ChunkIndex(new TreeMap<>());
+  }
+
+  /**
+   * @return The entries in this index, keyed by '/'-separated relative path
+   */
+  Map<String, Entry> entries() {
+    return entries;
+  }
+
+  /**
+   * Builds the chunk index of a directory tree
+   *
+   * @param root        The directory to index
+   * @param filter      Which files to include
+   * @param known       A previous index, whose chunk hashes are reused where the size and
+   *                    modification time of a file are unchanged
+   * @param trusted     Known hashes are only reused for files last modified before this time, in
+   *                    milliseconds since the epoch
+   * @param parallelism How many threads to hash with
+   * @return The chunk index
+   */
+  static ChunkIndex build(Path root, Filter filter, ChunkIndex known, long trusted,
+      int parallelism) {
+    Manifest manifest = Manifest.scan(root, false, filter);
+    Map<String, String[]> hashes = new TreeMap<>();
+    Map<String, Manifest.Entry> files = new TreeMap<>();
+    List<Task> tasks = new ArrayList<>();
+    manifest.entries().forEach((path, entry) -> {
+      if (entry.isDirectory()) {
+        return;
+      }
+      files.put(path, entry);
+      Entry previous = known.entries.get(path);
+      if (previous != null && previous.mtime() < trusted
+          && previous.size() == entry.size() && previous.mtime() == entry.mtime()) {
+        hashes.put(path, previous.chunks().toArray(String[]::new));
+        return;
+      }
+      int chunks = (int) ((entry.size() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+      String[] slots = new String[chunks];
+      hashes.put(path, slots);
+      for (int first = 0; first < chunks; first += CHUNKS_PER_TASK) {
+        tasks.add(new Task(root.resolve(path), slots, first,
+            Math.min(CHUNKS_PER_TASK, chunks - first)));
+      }
+    });
+
+    Manifest.inParallel(tasks, parallelism, "chunk-", Task::run);
+
+    Map<String, Entry> entries = new TreeMap<>();
+    files.forEach((path, entry) -> entries.put(path,
+        new Entry(entry.size(), entry.mtime(), List.of(hashes.get(path)))));
+    return new ChunkIndex(entries);
+  }
+
+  /**
+   * Hashes a run of chunks in a file
+   *
+   * @param file   The file
+   * @param slots  Where to put the chunk hashes
+   * @param first  The index of the first chunk to hash
+   * @param count  How many chunks to hash
+   */
+  private record Task(Path file, String[] slots, int first, int count) {
+
+    void run() {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        for (int i = first; i < first + count; i++) {
+          buffer.clear();
+          long position = (long) i * CHUNK_SIZE;
+          while (buffer.hasRemaining()
+              && channel.read(buffer, position + buffer.position()) > 0) {
+            // keep reading until the chunk is full or the file ends
+          }
+          buffer.flip();
+          digest.update(buffer);
+          slots[i] = HexFormat.of().formatHex(digest.digest());
+        }
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      } catch (NoSuchAlgorithmException nsae) {
+        throw new IllegalStateException(nsae);
+      }
+    }
+  }
+
+  /**
+   * Persists this index
+   *
+   * @param destination The file to write
+   */
+  void write(Path destination) {
+    QuietFiles.write(destination, entries.entrySet().stream()
+        .map(e -> e.getValue().size()
+            + "\t" + e.getValue().mtime()
+            + "\t" + (e.getValue().chunks().isEmpty()
+            ? NO_CHUNKS
+            : String.join(",", e.getValue().chunks()))
+            + "\t" + e.getKey()
+            + "\n")
+        .collect(Collectors.joining())
+        .getBytes(UTF_8));
+  }
+
+  /**
+   * Reads a persisted index
+   *
+   * @param source The file to read
+   * @return The index, which will be empty if the file does not exist
+   */
+  static ChunkIndex read(Path source) {
+    if (!Files.exists(source)) {
+      return empty();
+    }
+    Map<String, Entry> entries = new TreeMap<>();
+    try (Stream<String> lines = QuietFiles.lines(source)) {
+      lines.forEach(line -> {
+        String[] fields = line.split("\t", 4);
+        if (fields.length == 4) {
+          entries.put(fields[3], new Entry(
+              Long.parseLong(fields[0]),
+              Long.parseLong(fields[1]),
+              NO_CHUNKS.equals(fields[2])
+                  ? List.of()
+                  : List.of(fields[2].split(","))));
+        }
+      });
+    }
+    return new ChunkIndex(entries);
+  }
+}
@@ -1,13 +1,20 @@
 package dev.flowty.steamdeploy;
 
+import static java.util.stream.Collectors.joining;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
@@ -20,14 +27,34 @@ class CommandLine {
 
   private static final Logger LOG = LoggerFactory.getLogger(CommandLine.class);
 
+  /**
+   * Enforces inactivity and total deadlines for every running command
+   */
+  private static final ScheduledExecutorService TIMER = timer();
+
+  /**
+   * How long we'll wait for output to be drained after the process exits
+   */
+  private static final Duration READER_GRACE = Duration.ofSeconds(5);
+
   private final Path workingDirectory;
   private Duration timeout = Duration.ofHours(1);
   private Duration inactivity = Duration.ofHours(1);
+  private Optional<Path> log = Optional.empty();
+  private Consumer<String> onLine = line -> {
+  };
 
   private CommandLine(Path workingDirectory) {
     this.workingDirectory = workingDirectory;
   }
 
+  private static ScheduledExecutorService timer() {
+    ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+        Thread.ofPlatform().name("command-timer").daemon().factory());
+    timer.setRemoveOnCancelPolicy(true);
+    return timer;
+  }
+
   public static CommandLine here() {
     return in(null);
   }
@@ -46,73 +73,156 @@ class CommandLine {
     return this;
   }
 
+  /**
+   * @param log Where to write the complete output of the command, gzipped
+   * @return {@code this}
+   */
+  public CommandLine loggingTo(Path log) {
+    this.log = Optional.of(log);
+    return this;
+  }
+
+  /**
+   * @param onLine Will be called with each line of output as it arrives
+   * @return {@code this}
+   */
+  public CommandLine onLine(Consumer<String> onLine) {
+    this.onLine = onLine;
+    return this;
+  }
+
   public Result run(String... cmd) {
     LOG.debug("Running {}", String.join(" ", cmd));
+    Process process;
     try {
       ProcessBuilder builder = new ProcessBuilder(cmd)
           .redirectErrorStream(true);
       if (workingDirectory != null) {
         builder.directory(workingDirectory.toFile());
       }
-      Process process = builder.start();
-      List<String> lines = new ArrayList<>();
-      AtomicReference<Instant> lastActivity = new AtomicReference<>(Instant.now());
-
-      Thread outputReader = outputReader(process, lines, lastActivity);
-      outputReader.start();
-      Thread activityMonitor = activityMonitor(process, lastActivity);
-      activityMonitor.start();
-
-      boolean normalExit = process.waitFor(timeout.getSeconds(), TimeUnit.SECONDS);
-      if (!normalExit) {
-        LOG.error("timeout breached!");
-        process.destroyForcibly();
-        return new Result(-1, lines);
-      }
-      LOG.debug("status {}", process.exitValue());
-      return new Result(process.exitValue(), lines);
+      process = builder.start();
     } catch (IOException ioe) {
       throw new UncheckedIOException(ioe);
+    }
+
+    Supervision supervision = new Supervision(process);
+    Events.Command event = new Events.Command();
+    event.begin();
+    try {
+      long waitStart = System.nanoTime();
+      int status = process.waitFor();
+      // the process has gone, so the output will end imminently
+      supervision.reader.join(READER_GRACE.toMillis());
+      event.waited = System.nanoTime() - waitStart;
+      Result result;
+      if (supervision.killed.get() != null) {
+        result = supervision.output.result(-1);
+      } else {
+        LOG.debug("status {}", status);
+        result = supervision.output.result(status);
+      }
+      if (event.shouldCommit()) {
+        event.command = describe(cmd);
+        event.status = result.status();
+        event.lines = result.lines();
+        event.killed = supervision.killed.get();
+        event.commit();
+      }
+      return result;
     } catch (InterruptedException ie) {
+      process.destroyForcibly();
+      supervision.output.close();
+      Thread.currentThread().interrupt();
       throw new IllegalStateException("unexpected", ie);
     }
   }
 
-  private static Thread outputReader(Process process, List<String> lines,
-      AtomicReference<Instant> lastActivity) {
-    Thread t = new Thread(() -> {
+  /**
+   * @param cmd A command
+   * @return A description of the command that omits arguments that might be sensitive, e.g.: the
+   * password that follows <code>+login</code>
+   */
+  static String describe(String... cmd) {
+    return Stream.concat(
+            Stream.of(Paths.get(cmd[0]).getFileName().toString()),
+            Stream.of(cmd).skip(1).filter(arg -> arg.startsWith("+") || arg.startsWith("-")))
+        .collect(joining(" "));
+  }
+
+  /**
+   * Watches a running process: captures its output on a virtual thread, and enforces its deadlines
+   * on the shared timer. Deadline tasks are cancelled as soon as the process exits.
+   */
+  private class Supervision {
+
+    private final Process process;
+    private final OutputCapture output = new OutputCapture(
+        OutputCapture.TAIL_LINES, OutputCapture.TAIL_CHARS, log);
+    private final AtomicReference<String> killed = new AtomicReference<>();
+    private final Thread reader;
+    private final ScheduledFuture<?> deadline;
+    private volatile long lastActivity = System.nanoTime();
+    private volatile ScheduledFuture<?> idleCheck;
+
+    Supervision(Process process) {
+      this.process = process;
+      reader = Thread.ofVirtual().name("command-output").start(this::read);
+      deadline = TIMER.schedule(
+          () -> kill("timeout breached!"),
+          timeout.toNanos(), TimeUnit.NANOSECONDS);
+      idleCheck = TIMER.schedule(this::checkActivity,
+          inactivity.toNanos(), TimeUnit.NANOSECONDS);
+      process.onExit().thenRun(() -> {
+        deadline.cancel(false);
+        idleCheck.cancel(false);
+      });
+    }
+
+    private void read() {
       try (BufferedReader br = process.inputReader()) {
         String line;
         while ((line = br.readLine()) != null) {
           LOG.debug("\t{}", line);
-          lines.add(line);
-          lastActivity.set(Instant.now());
+          output.add(line);
+          onLine.accept(line);
+          lastActivity = System.nanoTime();
         }
       } catch (IOException ioe) {
-        LOG.error("Failed to stream command output", ioe);
+        if (killed.get() == null) {
+          LOG.error("Failed to stream command output", ioe);
+        } else {
+          LOG.debug("Output stream of killed process failed", ioe);
+        }
       }
-    });
-    t.setDaemon(true);
-    return t;
-  }
+    }
 
-  private Thread activityMonitor(Process process, AtomicReference<Instant> lastActivity) {
-    Thread t = new Thread(() -> {
-
-      while (process.isAlive()) {
-        try {
-          Thread.sleep(1000);
-          Duration sinceLastActivity = Duration.between(lastActivity.get(), Instant.now());
-          if (inactivity.getSeconds() < sinceLastActivity.getSeconds()) {
-            LOG.error("Killing process due to {} of inactivity", sinceLastActivity);
-            process.destroyForcibly();
-          }
-        } catch (InterruptedException ie) {
-          LOG.warn("unexpected", ie);
-        }
+    /**
+     * Rather than rescheduling on every line of output, we check when the inactivity period would
+     * have expired since the last activity that we know about, and go back to sleep if there has
+     * been more activity since.
+     */
+    private void checkActivity() {
+      if (!process.isAlive()) {
+        return;
+      }
+      long idle = System.nanoTime() - lastActivity;
+      long remaining = inactivity.toNanos() - idle;
+      if (remaining <= 0) {
+        kill(String.format("Killing process due to %s of inactivity", Duration.ofNanos(idle)));
+      } else {
+        idleCheck = TIMER.schedule(this::checkActivity, remaining, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    private void kill(String reason) {
+      if (process.isAlive() && killed.compareAndSet(null, reason)) {
+        LOG.error(reason);
+        // steamcmd.sh runs the real binary as a child, which would otherwise hold on to our output.
+        // The parent goes first so that it isn't around to report on the death of its children
+        List<ProcessHandle> descendants = process.descendants().toList();
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
       }
-    });
-    t.setDaemon(true);
-    return t;
+    }
   }
 }
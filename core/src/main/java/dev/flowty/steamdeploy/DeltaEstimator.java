@@ -0,0 +1,199 @@
+package dev.flowty.steamdeploy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Estimates how much of an application will be uploaded, without involving steamcmd. Files are
+ * split into fixed-size chunks, which approximates steam's own chunking, and chunks that were not
+ * present in the last deployment to the same target are counted as uploads. Steam compresses chunks
+ * before upload and may find more reuse than fixed offsets do, so the estimate is an upper bound.
+ */
+public class DeltaEstimator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DeltaEstimator.class);
+
+  /**
+   * How a file has changed since the last deployment
+   */
+  public enum Change {
+    /**
+     * The file was not in the last deployment
+     */
+    NEW,
+    /**
+     * The file was in the last deployment, but some of its chunks have changed
+     */
+    CHANGED,
+    /**
+     * All of the file's chunks were in the last deployment
+     */
+    UNCHANGED
+  }
+
+  /**
+   * The expected upload for a single file
+   *
+   * @param path        The '/'-separated path of the file, relative to the application directory
+   * @param size        The file size in bytes
+   * @param uploadBytes The number of bytes in chunks that steam has not seen before
+   * @param change      How the file has changed since the last deployment
+   */
+  public record FileDelta(String path, long size, long uploadBytes, Change change) {
+
+  }
+
+  /**
+   * The expected upload for a deployment target
+   *
+   * @param files        The files in the application
+   * @param removedFiles The number of files in the last deployment that are now absent
+   * @param baseline     {@code true} if there was a previous deployment to compare against
+   */
+  public record Estimate(List<FileDelta> files, int removedFiles, boolean baseline) {
+
+    /**
+     * @return The total size of the application
+     */
+    public long bytes() {
+      return files.stream().mapToLong(FileDelta::size).sum();
+    }
+
+    /**
+     * @return The number of bytes in chunks that are expected to be uploaded
+     */
+    public long uploadBytes() {
+      return files.stream().mapToLong(FileDelta::uploadBytes).sum();
+    }
+
+    /**
+     * @param change A type of change
+     * @return The number of files that have changed in that way
+     */
+    public long count(Change change) {
+      return files.stream().filter(f -> f.change() == change).count();
+    }
+
+    /**
+     * @param limit The maximum number of files to return
+     * @return The files that contribute most to the upload, largest first
+     */
+    public List<FileDelta> largest(int limit) {
+      return files.stream()
+          .filter(f -> f.uploadBytes() > 0)
+          .sorted(Comparator.comparingLong(FileDelta::uploadBytes).reversed())
+          .limit(limit)
+          .toList();
+    }
+  }
+
+  private final Path directory;
+  private int parallelism = 1;
+
+  /**
+   * @param directory Where to store chunk indices
+   */
+  public DeltaEstimator(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * @return Chunk index storage in the user's home directory
+   */
+  public static DeltaEstimator machineWide() {
+    return new DeltaEstimator(
+        Paths.get(System.getProperty("user.home"), ".steamdeploy", "chunks"));
+  }
+
+  /**
+   * @param parallelism How many threads to hash chunks with
+   * @return {@code this}
+   */
+  public DeltaEstimator parallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive, not " + parallelism);
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Indexes the chunks of an application and compares them with the last recorded deployment
+   *
+   * @param key         Identifies the deployment target, e.g.: the app and depot IDs
+   * @param application The application directory
+   * @param filter      Which application files are deployed
+   * @return The expected upload
+   */
+  public Estimate estimate(String key, Path application, Filter filter) {
+    Instant start = Instant.now();
+    Path lastFile = file(key, "last");
+    Path pending = file(key, "pending");
+    ChunkIndex last = ChunkIndex.read(lastFile);
+    // reuse hashes from whichever index was written most recently
+    Path knownFile = Files.exists(pending) ? pending : lastFile;
+    ChunkIndex known = knownFile == pending ? ChunkIndex.read(pending) : last;
+    ChunkIndex current = ChunkIndex.build(application, filter, known,
+        Manifest.trusted(knownFile), parallelism);
+    QuietFiles.replace(pending, current::write);
+
+    Set<String> seen = new HashSet<>();
+    last.entries().values().forEach(e -> seen.addAll(e.chunks()));
+    boolean baseline = Files.exists(lastFile);
+    List<FileDelta> files = new ArrayList<>();
+    for (Map.Entry<String, ChunkIndex.Entry> e : current.entries().entrySet()) {
+      ChunkIndex.Entry entry = e.getValue();
+      long upload = 0;
+      for (int i = 0; i < entry.chunks().size(); i++) {
+        // steam deduplicates chunks, so each new one is only uploaded once
+        if (seen.add(entry.chunks().get(i))) {
+          upload += entry.chunkSize(i);
+        }
+      }
+      ChunkIndex.Entry previous = last.entries().get(e.getKey());
+      Change change = previous == null
+          ? Change.NEW
+          : previous.chunks().equals(entry.chunks()) ? Change.UNCHANGED : Change.CHANGED;
+      files.add(new FileDelta(e.getKey(), entry.size(), upload, change));
+    }
+    int removed = (int) last.entries().keySet().stream()
+        .filter(p -> !current.entries().containsKey(p))
+        .count();
+
+    Estimate estimate = new Estimate(List.copyOf(files), removed, baseline);
+    LOG.info("Estimated upload of {} of {} bytes for {} in {}",
+        estimate.uploadBytes(), estimate.bytes(), key, Duration.between(start, Instant.now()));
+    return estimate;
+  }
+
+  /**
+   * Records that the content of the last estimate has been deployed, so that it becomes the baseline
+   * for the next estimate
+   *
+   * @param key Identifies the deployment target
+   */
+  public void record(String key) {
+    Path pending = file(key, "pending");
+    if (!Files.exists(pending)) {
+      throw new IllegalStateException("No estimate to record for " + key);
+    }
+    QuietFiles.move(pending, file(key, "last"),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private Path file(String key, String suffix) {
+    return directory.resolve(QuietFiles.checkName(key, "estimate key") + "." + suffix);
+  }
+}
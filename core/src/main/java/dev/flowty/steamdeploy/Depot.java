@@ -0,0 +1,49 @@
+package dev.flowty.steamdeploy;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A depot to upload, and where its content comes from
+ *
+ * @param id       The steam depot ID
+ * @param source   The directory that holds the depot content
+ * @param mappings How that content is mapped into the depot
+ * @param filter   Which files in the source directory are uploaded
+ */
+public record Depot(int id, Path source, List<Mapping> mappings, Filter filter) {
+
+  /**
+   * @param id       The steam depot ID
+   * @param source   The directory that holds the depot content
+   * @param mappings How that content is mapped into the depot
+   * @param filter   Which files in the source directory are uploaded
+   */
+  public Depot {
+    if (mappings.isEmpty()) {
+      throw new IllegalArgumentException("Depot " + id + " has no file mappings");
+    }
+    mappings = List.copyOf(mappings);
+  }
+
+  /**
+   * A depot that takes all of the mapped files in its source directory
+   *
+   * @param id       The steam depot ID
+   * @param source   The directory that holds the depot content
+   * @param mappings How that content is mapped into the depot
+   */
+  public Depot(int id, Path source, List<Mapping> mappings) {
+    this(id, source, mappings, Filter.ALL);
+  }
+
+  /**
+   * A depot that takes all of the files in its source directory
+   *
+   * @param id     The steam depot ID
+   * @param source The directory that holds the depot content
+   */
+  public Depot(int id, Path source) {
+    this(id, source, List.of(Mapping.ALL));
+  }
+}
@@ -0,0 +1,401 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads a URL to a local file. For HTTP sources that support range requests:
+ * <ul>
+ *   <li>dropped connections are resumed from where they left off</li>
+ *   <li>partial downloads left by an earlier process are resumed, if the server identified the
+ *   version of the content that they hold</li>
+ *   <li>the file can be fetched in segments over several concurrent connections</li>
+ * </ul>
+ * The destination file only appears once the download is complete. Downloads can be made
+ * conditional on the content having changed since an earlier download, in which case nothing is
+ * transferred if it has not.
+ */
+class Download {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Download.class);
+
+  /**
+   * We won't bother splitting downloads into segments smaller than this
+   */
+  private static final long MIN_SEGMENT = 1024 * 1024;
+
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+  private static final Duration READ_TIMEOUT = Duration.ofSeconds(60);
+
+  /**
+   * The validators that identify a version of the downloaded content
+   *
+   * @param etag         The entity tag
+   * @param lastModified The last-modified date, as supplied by the server
+   */
+  record Validators(Optional<String> etag, Optional<String> lastModified) {
+
+    /**
+     * Validators that match nothing
+     */
+    static final Validators NONE = new Validators(Optional.empty(), Optional.empty());
+
+    /**
+     * @return The value for an {@code If-Range} header, which requires a strong entity tag or a
+     * date
+     */
+    Optional<String> ifRange() {
+      return etag().filter(e -> !e.startsWith("W/")).or(this::lastModified);
+    }
+  }
+
+  private final URL url;
+  private int connections = 1;
+  private int attempts = 3;
+  private Validators previous = Validators.NONE;
+
+  /**
+   * @param url What to download
+   */
+  Download(URL url) {
+    this.url = url;
+  }
+
+  /**
+   * @param connections The maximum number of concurrent connections to use
+   * @return {@code this}
+   */
+  Download connections(int connections) {
+    this.connections = Math.max(1, connections);
+    return this;
+  }
+
+  /**
+   * @param attempts How many times to try each request before giving up
+   * @return {@code this}
+   */
+  Download attempts(int attempts) {
+    this.attempts = Math.max(1, attempts);
+    return this;
+  }
+
+  /**
+   * Makes the download conditional
+   *
+   * @param previous The validators of a previously-downloaded version of the content
+   * @return {@code this}
+   */
+  Download ifChanged(Validators previous) {
+    this.previous = previous;
+    return this;
+  }
+
+  /**
+   * Performs the download
+   *
+   * @param file Where to save the downloaded content. Any existing file will be replaced.
+   * @return The validators of the downloaded content, or empty if the content has not changed since
+   * the version identified by {@link #ifChanged(Validators)}, in which case nothing was downloaded
+   */
+  Optional<Validators> to(Path file) {
+    Events.Download event = new Events.Download();
+    event.begin();
+    event.url = url.toString();
+    event.connections = connections;
+    Path part = part(file);
+    QuietFiles.createDirectories(file.toAbsolutePath().getParent());
+
+    Validators validators;
+    if (!url.getProtocol().startsWith("http")) {
+      URLConnection conn = QuietFiles.wrap(url::openConnection);
+      validators = new Validators(Optional.empty(),
+          Optional.ofNullable(conn.getHeaderField("last-modified")));
+      if (validators.lastModified().isPresent()
+          && validators.lastModified().equals(previous.lastModified())) {
+        LOG.info("{} has not been modified", url);
+        event.commit();
+        return Optional.empty();
+      }
+      QuietFiles.wrap(() -> {
+        try (InputStream in = conn.getInputStream()) {
+          return Files.copy(in, part, StandardCopyOption.REPLACE_EXISTING);
+        }
+      });
+    } else {
+      Probe probe = probe();
+      if (!probe.modified()) {
+        LOG.info("{} has not been modified", url);
+        event.commit();
+        return Optional.empty();
+      }
+      validators = probe.validators();
+      long segmentSize = probe.length() / connections;
+      if (probe.ranges() && connections > 1 && segmentSize >= MIN_SEGMENT) {
+        segmented(part, probe);
+      } else {
+        single(part, probe);
+      }
+      long size = QuietFiles.wrap(() -> Files.size(part));
+      if (probe.length() >= 0 && size != probe.length()) {
+        throw new IllegalStateException(String.format(
+            "Downloaded %s bytes from %s, expected %s", size, url, probe.length()));
+      }
+    }
+
+    QuietFiles.move(part, file,
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    QuietFiles.recursiveDelete(version(part));
+    event.modified = true;
+    event.bytes = QuietFiles.wrap(() -> Files.size(file));
+    event.commit();
+    return Optional.of(validators);
+  }
+
+  /**
+   * Deletes any partial download that was left behind
+   *
+   * @param file A download destination
+   */
+  static void discard(Path file) {
+    Path part = part(file);
+    QuietFiles.recursiveDelete(part);
+    QuietFiles.recursiveDelete(version(part));
+  }
+
+  private static Path part(Path file) {
+    return file.resolveSibling(file.getFileName() + ".part");
+  }
+
+  /**
+   * @param part A partial download
+   * @return Where to record the {@link Validators#ifRange()} of the content in the partial download
+   */
+  private static Path version(Path part) {
+    return part.resolveSibling(part.getFileName() + ".version");
+  }
+
+  /**
+   * What we know about the resource before downloading it
+   *
+   * @param length     The content length, or -1 if unknown
+   * @param ranges     {@code true} if range requests are supported
+   * @param validators Identifies the current version of the content
+   * @param modified   {@code false} if the content matches the previous validators
+   */
+  private record Probe(long length, boolean ranges, Validators validators, boolean modified) {
+
+    static final Probe UNKNOWN = new Probe(-1, false, Validators.NONE, true);
+  }
+
+  private Probe probe() {
+    try {
+      HttpURLConnection conn = open();
+      conn.setRequestMethod("HEAD");
+      previous.etag().ifPresent(v -> conn.setRequestProperty("If-None-Match", v));
+      previous.lastModified().ifPresent(v -> conn.setRequestProperty("If-Modified-Since", v));
+      try {
+        if (conn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+          return new Probe(-1, false, previous, false);
+        }
+        if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          LOG.debug("HEAD {} returned {}", url, conn.getResponseCode());
+          return Probe.UNKNOWN;
+        }
+        return new Probe(
+            conn.getContentLengthLong(),
+            "bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges")),
+            new Validators(
+                Optional.ofNullable(conn.getHeaderField("ETag")),
+                Optional.ofNullable(conn.getHeaderField("Last-Modified"))),
+            true);
+      } finally {
+        conn.disconnect();
+      }
+    } catch (IOException ioe) {
+      LOG.debug("Failed to probe {}", url, ioe);
+      return Probe.UNKNOWN;
+    }
+  }
+
+  private void single(Path part, Probe probe) {
+    Optional<String> ifRange = probe.validators().ifRange();
+    Path version = version(part);
+    long offset = 0;
+    if (probe.ranges() && Files.exists(part)) {
+      // without knowing that the partial content is of the current version we could splice old and
+      // new content together
+      Optional<String> partial = Files.exists(version)
+          ? Optional.of(new String(QuietFiles.readAllBytes(version), UTF_8))
+          : Optional.empty();
+      if (ifRange.isPresent() && ifRange.equals(partial)) {
+        offset = QuietFiles.wrap(() -> Files.size(part));
+      } else {
+        LOG.info("Discarding partial download of {} of unknown version", url);
+      }
+      if (probe.length() >= 0 && offset > probe.length()) {
+        offset = 0;
+      }
+      if (offset > 0) {
+        LOG.info("Resuming download of {} from byte {}", url, offset);
+      }
+    }
+    if (offset == 0) {
+      QuietFiles.recursiveDelete(part);
+      QuietFiles.recursiveDelete(version);
+      ifRange.ifPresent(v -> QuietFiles.write(version, v.getBytes(UTF_8)));
+    }
+
+    IOException failure = null;
+    for (int attempt = 0; attempt < attempts; attempt++) {
+      if (probe.length() >= 0 && offset == probe.length()) {
+        return;
+      }
+      try (FileChannel channel = FileChannel.open(part,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+        HttpURLConnection conn = open();
+        if (offset > 0) {
+          conn.setRequestProperty("Range", "bytes=" + offset + "-");
+          // if the content has changed then we need all of it
+          ifRange.ifPresent(v -> conn.setRequestProperty("If-Range", v));
+        }
+        int status = conn.getResponseCode();
+        if (status == HttpURLConnection.HTTP_OK) {
+          // we asked for a range and got the whole thing
+          offset = 0;
+          channel.truncate(0);
+        } else if (status != HttpURLConnection.HTTP_PARTIAL) {
+          throw new IllegalStateException("GET " + url + " returned " + status);
+        }
+        try (InputStream in = conn.getInputStream()) {
+          offset = transfer(in, channel, offset, -1);
+        }
+        if (probe.length() >= 0 && offset < probe.length()) {
+          throw new EOFException("Premature end of stream");
+        }
+        return;
+      } catch (IOException ioe) {
+        LOG.warn("Download of {} interrupted at byte {}: {}", url, offset, ioe.toString());
+        failure = ioe;
+        if (!probe.ranges()) {
+          offset = 0;
+          QuietFiles.recursiveDelete(part);
+        }
+      }
+    }
+    throw new IllegalStateException("Failed to download " + url, failure);
+  }
+
+  private void segmented(Path part, Probe probe) {
+    long length = probe.length();
+    LOG.info("Downloading {} bytes from {} over {} connections", length, url, connections);
+    // segments complete out of order, so what's left behind can't be resumed
+    QuietFiles.recursiveDelete(part);
+    QuietFiles.recursiveDelete(version(part));
+    try (FileChannel channel = FileChannel.open(part,
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ExecutorService pool = Executors.newFixedThreadPool(connections,
+            Thread.ofPlatform().name("download-", 0).daemon().factory())) {
+      // make sure the file is full-length, even if the last segment finishes first
+      channel.write(ByteBuffer.allocate(1), length - 1);
+
+      long segment = (length + connections - 1) / connections;
+      List<Future<?>> futures = new ArrayList<>();
+      for (long start = 0; start < length; start += segment) {
+        long from = start;
+        long to = Math.min(length, start + segment) - 1;
+        futures.add(pool.submit(() -> segment(channel, probe, from, to)));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } catch (IOException ioe) {
+      throw new IllegalStateException("Failed to download " + url, ioe);
+    } catch (ExecutionException ee) {
+      throw new IllegalStateException("Failed to download " + url, ee.getCause());
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted downloading " + url, ie);
+    }
+  }
+
+  private Void segment(FileChannel channel, Probe probe, long from, long to)
+      throws IOException {
+    long offset = from;
+    IOException failure = null;
+    for (int attempt = 0; attempt < attempts && offset <= to; attempt++) {
+      HttpURLConnection conn = open();
+      conn.setRequestProperty("Range", "bytes=" + offset + "-" + to);
+      probe.validators().ifRange().ifPresent(v -> conn.setRequestProperty("If-Range", v));
+      try {
+        if (conn.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+          throw new IllegalStateException(
+              "Range request to " + url + " returned " + conn.getResponseCode());
+        }
+        try (InputStream in = conn.getInputStream()) {
+          offset = transfer(in, channel, offset, to + 1);
+        }
+      } catch (IOException ioe) {
+        LOG.warn("Segment {}-{} of {} interrupted at byte {}: {}",
+            from, to, url, offset, ioe.toString());
+        failure = ioe;
+      }
+    }
+    if (offset <= to) {
+      throw new IOException("Failed to fetch bytes " + from + "-" + to, failure);
+    }
+    return null;
+  }
+
+  /**
+   * Copies a stream into a file
+   *
+   * @param in      The source of data
+   * @param channel The file to write to
+   * @param offset  The file position to start writing at
+   * @param limit   The file position to stop writing at, or -1 to write the entire stream
+   * @return The file position after the last byte written
+   * @throws IOException if the transfer fails
+   */
+  private static long transfer(InputStream in, FileChannel channel, long offset, long limit)
+      throws IOException {
+    byte[] buffer = new byte[64 * 1024];
+    int read;
+    while ((limit < 0 || offset < limit) && (read = in.read(buffer)) != -1) {
+      int count = limit < 0 ? read : (int) Math.min(read, limit - offset);
+      ByteBuffer bb = ByteBuffer.wrap(buffer, 0, count);
+      while (bb.hasRemaining()) {
+        offset += channel.write(bb, offset);
+      }
+    }
+    return offset;
+  }
+
+  private HttpURLConnection open() throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    conn.setConnectTimeout((int) CONNECT_TIMEOUT.toMillis());
+    conn.setReadTimeout((int) READ_TIMEOUT.toMillis());
+    return conn;
+  }
+}
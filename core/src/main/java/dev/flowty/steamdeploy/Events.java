@@ -0,0 +1,185 @@
+package dev.flowty.steamdeploy;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for the phases of a deployment. Record them with e.g.:
+ * <code>-XX:StartFlightRecording:filename=deploy.jfr</code> and look for the
+ * <code>steamdeploy</code> category. Events that are not enabled cost next to nothing.
+ */
+final class Events {
+
+  private static final String CATEGORY = "steamdeploy";
+
+  private Events() {
+    // no instances
+  }
+
+  @Name("dev.flowty.steamdeploy.Install")
+  @Label("Install")
+  @Category(CATEGORY)
+  @Description("Populating a steamcmd installation")
+  static class Install extends Event {
+
+    @Label("Directory")
+    String directory;
+
+    @Label("Cached")
+    @Description("Whether the installation was populated from a cache")
+    boolean cached;
+
+    @Label("Reused")
+    @Description("Whether an existing installation was reused")
+    boolean reused;
+  }
+
+  @Name("dev.flowty.steamdeploy.Download")
+  @Label("Download")
+  @Category(CATEGORY)
+  @Description("Downloading the steamcmd SDK archive")
+  static class Download extends Event {
+
+    @Label("URL")
+    String url;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Connections")
+    int connections;
+
+    @Label("Modified")
+    @Description("False if the content was unchanged and nothing was transferred")
+    boolean modified;
+  }
+
+  @Name("dev.flowty.steamdeploy.Extract")
+  @Label("Extract")
+  @Category(CATEGORY)
+  @Description("Extracting the steamcmd SDK archive")
+  static class Extract extends Event {
+
+    @Label("Archive")
+    String archive;
+
+    @Label("Archive Size")
+    @DataAmount
+    long archiveBytes;
+
+    @Label("Destination")
+    String destination;
+
+    @Label("Files")
+    int files;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+  }
+
+  @Name("dev.flowty.steamdeploy.Prepare")
+  @Label("Prepare")
+  @Category(CATEGORY)
+  @Description("Preparing the steamcmd executable for use")
+  static class Prepare extends Event {
+
+    @Label("Directory")
+    String directory;
+  }
+
+  @Name("dev.flowty.steamdeploy.Delete")
+  @Label("Delete")
+  @Category(CATEGORY)
+  @Description("Removing previously-staged content")
+  static class Delete extends Event {
+
+    @Label("Path")
+    String path;
+
+    @Label("Asynchronous")
+    @Description("Whether the content was moved aside and deleted in the background")
+    boolean async;
+  }
+
+  @Name("dev.flowty.steamdeploy.Ingest")
+  @Label("Ingest")
+  @Category(CATEGORY)
+  @Description("Staging application files for upload")
+  static class Ingest extends Event {
+
+    @Label("Source")
+    String source;
+
+    @Label("Destination")
+    String destination;
+
+    @Label("Incremental")
+    boolean incremental;
+
+    @Label("Staging")
+    String staging;
+
+    @Label("Files Copied")
+    int copied;
+
+    @Label("Bytes Copied")
+    @DataAmount
+    long copiedBytes;
+
+    @Label("Files Skipped")
+    int skipped;
+
+    @Label("Bytes Skipped")
+    @DataAmount
+    long skippedBytes;
+
+    @Label("Files Removed")
+    int removed;
+  }
+
+  @Name("dev.flowty.steamdeploy.Script")
+  @Label("Script")
+  @Category(CATEGORY)
+  @Description("Generating the app build script")
+  static class Script extends Event {
+
+    @Label("Path")
+    String path;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+  }
+
+  @Name("dev.flowty.steamdeploy.Command")
+  @Label("Command")
+  @Category(CATEGORY)
+  @Description("Running a command, either as a process or in a steamcmd session")
+  static class Command extends Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Exit Status")
+    int status;
+
+    @Label("Output Lines")
+    long lines;
+
+    @Label("Killed")
+    @Description("Why the command was killed, if it was")
+    String killed;
+
+    @Label("Wait Time")
+    @Description("How long we spent waiting for the command to finish")
+    @Timespan
+    long waited;
+  }
+}
@@ -0,0 +1,117 @@
+package dev.flowty.steamdeploy;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Categories of steamcmd failure, distinguishing those that might succeed on a second attempt from
+ * those that will not
+ */
+public enum Failure {
+
+  /**
+   * The command was killed for running too long or too quietly
+   */
+  TIMEOUT(true),
+  /**
+   * Steam is refusing requests because too many have been made
+   */
+  RATE_LIMITED(true,
+      "Rate Limit Exceeded",
+      "RateLimitExceeded"),
+  /**
+   * The credentials were rejected
+   */
+  CREDENTIALS(false,
+      "Invalid Password",
+      "InvalidPassword",
+      "Two-factor code mismatch",
+      "Invalid Login Auth Code",
+      "Expired Login Auth Code",
+      "Account Logon Denied",
+      "Account Disabled"),
+  /**
+   * The build script refers to something that the account can't build, or that doesn't exist
+   */
+  CONFIGURATION(false,
+      "Access Denied",
+      "No permission",
+      "Failed to load app build",
+      "Invalid AppID",
+      "Invalid depot",
+      "Invalid build script",
+      "Missing ContentRoot"),
+  /**
+   * Steam or its content servers could not be reached
+   */
+  NETWORK(true,
+      "No Connection",
+      "Service Unavailable",
+      "Failed to connect",
+      "Connection (?:reset|refused|closed|timed out)",
+      "Timeout",
+      "Failed to upload chunk",
+      "HTTP error"),
+  /**
+   * steamcmd updated itself rather than doing what it was asked to
+   */
+  SELF_UPDATE(true,
+      "Update complete, launching",
+      "Downloading update"),
+  /**
+   * None of the above
+   */
+  UNKNOWN(false);
+
+  /**
+   * steamcmd's exit status after it has updated itself
+   */
+  private static final int UPDATED_STATUS = 7;
+
+  private final boolean retryable;
+  private final Optional<Pattern> pattern;
+
+  Failure(boolean retryable, String... patterns) {
+    this.retryable = retryable;
+    pattern = patterns.length == 0
+        ? Optional.empty()
+        : Optional.of(Pattern.compile(String.join("|", patterns), Pattern.CASE_INSENSITIVE));
+  }
+
+  /**
+   * @return {@code true} if a failure of this type might not happen on the next attempt
+   */
+  public boolean retryable() {
+    return retryable;
+  }
+
+  /**
+   * @param result The result of a steamcmd command
+   * @return The category of failure, or empty if the command succeeded
+   */
+  public static Optional<Failure> classify(Result result) {
+    if (result.status() == 0) {
+      return Optional.empty();
+    }
+    if (result.status() == -1) {
+      return Optional.of(TIMEOUT);
+    }
+    // a single pass, as the output of a verbose build could be large
+    Set<Failure> matched = EnumSet.noneOf(Failure.class);
+    try (Stream<String> output = result.output()) {
+      output.forEach(line -> Arrays.stream(values())
+          .filter(f -> !matched.contains(f))
+          .filter(f -> f.pattern.map(p -> p.matcher(line).find()).orElse(false))
+          .forEach(matched::add));
+    }
+    if (!matched.isEmpty()) {
+      // the earliest-declared category wins
+      return matched.stream().findFirst();
+    }
+    return Optional.of(result.status() == UPDATED_STATUS ? SELF_UPDATE : UNKNOWN);
+  }
+}
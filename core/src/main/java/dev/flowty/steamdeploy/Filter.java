@@ -0,0 +1,201 @@
+package dev.flowty.steamdeploy;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Include and exclude rules for application files, in the style of <code>.gitignore</code>:
+ * <ul>
+ *   <li><code>*</code> matches anything but <code>/</code>, <code>?</code> matches a single
+ *   character, and <code>**</code> matches across directories</li>
+ *   <li>Patterns that start with or contain a <code>/</code> are relative to the application
+ *   directory, those that don't match at any depth</li>
+ *   <li>Patterns that end with <code>/</code> only match directories</li>
+ *   <li>Patterns that match a directory apply to everything inside it</li>
+ * </ul>
+ * A file is accepted if it matches any of the includes (or there are none) and none of the
+ * excludes.
+ */
+public final class Filter {
+
+  /**
+   * Accepts everything
+   */
+  public static final Filter ALL = new Filter(List.of(), List.of());
+
+  /**
+   * A compiled rule
+   *
+   * @param glob      The rule as supplied
+   * @param regex     The rule as a regular expression over '/'-separated relative paths
+   * @param directory {@code true} if the rule only matches directories
+   */
+  private record Rule(String glob, Pattern regex, boolean directory) {
+
+    static Rule of(String glob) {
+      String body = glob.startsWith("/") ? glob.substring(1) : glob;
+      boolean directory = body.endsWith("/");
+      if (directory) {
+        body = body.substring(0, body.length() - 1);
+      }
+      if (body.isEmpty()) {
+        throw new IllegalArgumentException("Empty file pattern '" + glob + "'");
+      }
+      StringBuilder regex = new StringBuilder();
+      if (!glob.startsWith("/") && !body.contains("/")) {
+        regex.append("(?:.*/)?");
+      }
+      for (int i = 0; i < body.length(); i++) {
+        char c = body.charAt(i);
+        if (body.startsWith("**/", i)) {
+          regex.append("(?:.*/)?");
+          i += 2;
+        } else if (body.startsWith("**", i)) {
+          regex.append(".*");
+          i += 1;
+        } else if (c == '*') {
+          regex.append("[^/]*");
+        } else if (c == '?') {
+          regex.append("[^/]");
+        } else {
+          regex.append(Pattern.quote(String.valueOf(c)));
+        }
+      }
+      return new Rule(glob, Pattern.compile(regex.toString()), directory);
+    }
+
+    /**
+     * Translates this rule into steam's <code>FileExclusion</code> syntax, which matches wildcards
+     * against paths relative to the depot's content root and has no notion of matching at any depth
+     * or across directories. Hence a rule can need several steam patterns: one with and one without
+     * a leading wildcard directory if it is unanchored, and one with and one without each
+     * <code>**&#47;</code> directory.
+     *
+     * @return The equivalent steam patterns
+     */
+    List<String> steam() {
+      String body = glob.startsWith("/") ? glob.substring(1) : glob;
+      if (directory) {
+        body = body.substring(0, body.length() - 1);
+      }
+      boolean anchored = glob.startsWith("/") || body.contains("/");
+
+      List<String> patterns = List.of("");
+      String[] parts = body.split("\\*\\*/", -1);
+      for (int i = 0; i < parts.length; i++) {
+        String part = parts[i];
+        patterns = i == 0
+            ? patterns.stream().map(p -> p + part).toList()
+            : patterns.stream()
+                .flatMap(p -> Stream.of(p + part, p + "*/" + part))
+                .toList();
+      }
+      return patterns.stream()
+          .map(p -> p.replace("**", "*"))
+          .flatMap(p -> anchored ? Stream.of(p) : Stream.of(p, "*/" + p))
+          .map(p -> directory ? p + "/*" : p)
+          .map(p -> p.replace('/', '\\'))
+          .distinct()
+          .toList();
+    }
+
+    /**
+     * @param path      A '/'-separated relative path
+     * @param directory {@code true} if the path is a directory
+     * @return {@code true} if this rule matches the path or any of its parent directories
+     */
+    boolean matches(String path, boolean directory) {
+      if ((directory || !this.directory) && regex.matcher(path).matches()) {
+        return true;
+      }
+      for (int i = path.lastIndexOf('/'); i > 0; i = path.lastIndexOf('/', i - 1)) {
+        if (regex.matcher(path.substring(0, i)).matches()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private final List<Rule> includes;
+  private final List<Rule> excludes;
+
+  /**
+   * @param includes Patterns for the files to accept. Empty to accept everything that is not
+   *                 excluded
+   * @param excludes Patterns for the files to reject
+   */
+  public Filter(List<String> includes, List<String> excludes) {
+    this.includes = includes.stream().map(Rule::of).toList();
+    this.excludes = excludes.stream().map(Rule::of).toList();
+  }
+
+  /**
+   * @return The include patterns
+   */
+  public List<String> includes() {
+    return includes.stream().map(Rule::glob).toList();
+  }
+
+  /**
+   * @return The exclude patterns
+   */
+  public List<String> excludes() {
+    return excludes.stream().map(Rule::glob).toList();
+  }
+
+  /**
+   * @return {@code true} if this filter accepts everything
+   */
+  boolean all() {
+    return includes.isEmpty() && excludes.isEmpty();
+  }
+
+  /**
+   * @param path A '/'-separated file path, relative to the application directory
+   * @return {@code true} if the file should be deployed
+   */
+  boolean accepts(String path) {
+    return (includes.isEmpty() || includes.stream().anyMatch(r -> r.matches(path, false)))
+        && excludes.stream().noneMatch(r -> r.matches(path, false));
+  }
+
+  /**
+   * @param path A '/'-separated directory path, relative to the application directory
+   * @return {@code true} if nothing in the directory should be deployed
+   */
+  boolean prunes(String path) {
+    return excludes.stream().anyMatch(r -> r.matches(path, true));
+  }
+
+  /**
+   * Translates the exclusions into steam's <code>FileExclusion</code> syntax
+   *
+   * @return The exclusion patterns
+   */
+  List<String> steamExclusions() {
+    return excludes.stream()
+        .flatMap(rule -> rule.steam().stream())
+        .distinct()
+        .toList();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof Filter f
+        && includes().equals(f.includes())
+        && excludes().equals(f.excludes());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(includes(), excludes());
+  }
+
+  @Override
+  public String toString() {
+    return "includes" + includes() + " excludes" + excludes();
+  }
+}
@@ -0,0 +1,167 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the content of successful deployments, so that deployments that would upload nothing new
+ * can be skipped. Content hashes are cached against file size and modification time, so only files
+ * that have been touched since the last check need to be read.
+ */
+public class Fingerprint {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Fingerprint.class);
+
+  /**
+   * The last successful deployment
+   *
+   * @param fingerprint The fingerprint of what was deployed
+   * @param time        When the deployment completed
+   * @param duration    How long the deployment took
+   */
+  public record Deployment(String fingerprint, Instant time, Duration duration) {
+
+  }
+
+  private final Path directory;
+  private int parallelism = 1;
+
+  /**
+   * @param directory Where to store fingerprints and hash caches
+   */
+  public Fingerprint(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * @return Fingerprint storage in the user's home directory
+   */
+  public static Fingerprint machineWide() {
+    return new Fingerprint(
+        Paths.get(System.getProperty("user.home"), ".steamdeploy", "fingerprints"));
+  }
+
+  /**
+   * @param parallelism How many files to hash concurrently
+   * @return {@code this}
+   */
+  public Fingerprint parallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive, not " + parallelism);
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Computes the fingerprint of a deployment
+   *
+   * @param key         Identifies the deployment target, e.g.: the app and depot IDs
+   * @param application The application directory
+   * @param extras      Other files that affect the deployment, e.g.: a custom build script
+   * @return The fingerprint of the application content and the extra files
+   */
+  public String compute(String key, Path application, Path... extras) {
+    return compute(key, application, Filter.ALL, extras);
+  }
+
+  /**
+   * Computes the fingerprint of a filtered deployment
+   *
+   * @param key         Identifies the deployment target, e.g.: the app and depot IDs
+   * @param application The application directory
+   * @param filter      Which application files are deployed
+   * @param extras      Other files that affect the deployment, e.g.: a custom build script
+   * @return The fingerprint of the filtered application content, the filter rules and the extra
+   * files
+   */
+  public String compute(String key, Path application, Filter filter, Path... extras) {
+    return compute(key, application, filter, Optional.empty(), extras);
+  }
+
+  /**
+   * Computes the fingerprint of a deployment to one depot of a multi-depot build
+   *
+   * @param key    Identifies the deployment target, e.g.: the app and depot IDs
+   * @param depot  The depot
+   * @param extras Other files that affect the deployment, e.g.: a custom build script
+   * @return The fingerprint of the filtered depot content, the depot's section of the generated
+   * build script (so that changes to the file mappings are noticed) and the extra files
+   */
+  public String compute(String key, Depot depot, Path... extras) {
+    return compute(key, depot.source(), depot.filter(),
+        Optional.of(InjectableFile.depotSection(depot).toString()), extras);
+  }
+
+  private String compute(String key, Path application, Filter filter,
+      Optional<String> configuration, Path... extras) {
+    Instant start = Instant.now();
+    Path cache = file(key, "hashes");
+    Manifest hashed = Manifest.scan(application, false, filter)
+        .hashed(application, Manifest.read(cache), Manifest.trusted(cache), parallelism);
+    QuietFiles.replace(cache, hashed::write);
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(hashed.digest().getBytes(UTF_8));
+      if (!filter.all()) {
+        digest.update(("\n" + filter).getBytes(UTF_8));
+      }
+      configuration.ifPresent(c -> digest.update(("\n" + c).getBytes(UTF_8)));
+      for (Path extra : extras) {
+        digest.update(("\n" + Manifest.hash(extra)).getBytes(UTF_8));
+      }
+      String fingerprint = HexFormat.of().formatHex(digest.digest());
+      LOG.info("Fingerprinted {} files in {} in {}",
+          hashed.entries().size(), application, Duration.between(start, Instant.now()));
+      return fingerprint;
+    } catch (NoSuchAlgorithmException nsae) {
+      throw new IllegalStateException(nsae);
+    }
+  }
+
+  /**
+   * @param key Identifies the deployment target
+   * @return The last successful deployment to that target, if there is one
+   */
+  public Optional<Deployment> last(String key) {
+    Path file = file(key, "last");
+    if (!Files.exists(file)) {
+      return Optional.empty();
+    }
+    String[] fields = new String(QuietFiles.readAllBytes(file), UTF_8).strip().split("\t");
+    if (fields.length != 3) {
+      LOG.warn("Ignoring malformed fingerprint record {}", file);
+      return Optional.empty();
+    }
+    return Optional.of(new Deployment(fields[0],
+        Instant.ofEpochMilli(Long.parseLong(fields[1])),
+        Duration.ofMillis(Long.parseLong(fields[2]))));
+  }
+
+  /**
+   * Records a successful deployment
+   *
+   * @param key        Identifies the deployment target
+   * @param deployment The deployment details
+   */
+  public void record(String key, Deployment deployment) {
+    QuietFiles.replace(file(key, "last"), f -> QuietFiles.write(f, (deployment.fingerprint()
+        + "\t" + deployment.time().toEpochMilli()
+        + "\t" + deployment.duration().toMillis() + "\n").getBytes(UTF_8)));
+  }
+
+  private Path file(String key, String suffix) {
+    return directory.resolve(QuietFiles.checkName(key, "fingerprint key") + "." + suffix);
+  }
+}
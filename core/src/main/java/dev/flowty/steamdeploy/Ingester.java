@@ -0,0 +1,280 @@
+package dev.flowty.steamdeploy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stages application files into a content directory
+ */
+class Ingester {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Ingester.class);
+
+  /**
+   * Summarises an ingestion
+   *
+   * @param copied       The number of files copied
+   * @param copiedBytes  The number of bytes copied
+   * @param skipped      The number of unchanged files that were not copied
+   * @param skippedBytes The number of bytes in unchanged files
+   * @param removed      The number of files and directories removed from the content directory
+   */
+  record Stats(int copied, long copiedBytes, int skipped, long skippedBytes, int removed) {
+
+  }
+
+  private final Ingestion settings;
+  private final Platform platform;
+
+  /**
+   * @param settings How to ingest
+   * @param platform The current platform
+   */
+  Ingester(Ingestion settings, Platform platform) {
+    this.settings = settings;
+    this.platform = platform;
+  }
+
+  /**
+   * Makes the content directory match the application directory
+   *
+   * @param appDir       The application files
+   * @param content      The directory to populate
+   * @param manifestFile Where to persist the manifest of the content directory
+   * @return ingestion statistics
+   */
+  Stats ingest(Path appDir, Path content, Path manifestFile) {
+    return ingest(appDir, content, manifestFile, settings.filter());
+  }
+
+  /**
+   * Makes the content directory match the filtered application directory
+   *
+   * @param appDir       The application files
+   * @param content      The directory to populate
+   * @param manifestFile Where to persist the manifest of the content directory
+   * @param filter       Which application files to stage
+   * @return ingestion statistics
+   */
+  Stats ingest(Path appDir, Path content, Path manifestFile, Filter filter) {
+    // clean up after earlier runs that didn't finish deleting
+    QuietFiles.reapTombstones(content.toAbsolutePath().getParent());
+
+    Instant start = Instant.now();
+    Events.Ingest event = new Events.Ingest();
+    event.begin();
+    Stager stager = new Stager(settings.staging(), platform);
+    Stats stats = settings.incremental()
+        ? sync(appDir, content, manifestFile, stager, filter)
+        : replace(appDir, content, manifestFile, stager, filter);
+    if (event.shouldCommit()) {
+      event.source = appDir.toString();
+      event.destination = content.toString();
+      event.incremental = settings.incremental();
+      event.staging = settings.staging().name();
+      event.copied = stats.copied();
+      event.copiedBytes = stats.copiedBytes();
+      event.skipped = stats.skipped();
+      event.skippedBytes = stats.skippedBytes();
+      event.removed = stats.removed();
+      event.commit();
+    }
+    LOG.info("Ingested {} in {}: staged {} files ({} bytes) {}, "
+            + "skipped {} unchanged files ({} bytes), removed {}",
+        appDir, Duration.between(start, Instant.now()),
+        stats.copied(), stats.copiedBytes(), stager.summary(),
+        stats.skipped(), stats.skippedBytes(),
+        stats.removed());
+    return stats;
+  }
+
+  private Stats replace(Path appDir, Path content, Path manifestFile, Stager stager,
+      Filter filter) {
+    QuietFiles.recursiveDelete(manifestFile);
+    delete(content);
+    LOG.info("Copying application to {}", content);
+    Manifest current = Manifest.scan(appDir, false, filter);
+
+    List<Task> tasks = new ArrayList<>();
+    QuietFiles.createDirectories(content);
+    for (Map.Entry<String, Manifest.Entry> e : current.entries().entrySet()) {
+      Path sink = content.resolve(e.getKey());
+      if (e.getValue().isDirectory()) {
+        QuietFiles.createDirectories(sink);
+      } else {
+        tasks.add(new Task(appDir.resolve(e.getKey()), sink, e.getValue().size()));
+      }
+    }
+    stageAll(tasks, stager);
+    return new Stats(tasks.size(), tasks.stream().mapToLong(Task::size).sum(), 0, 0, 0);
+  }
+
+  private Stats sync(Path appDir, Path content, Path manifestFile, Stager stager,
+      Filter filter) {
+    Manifest previous = Files.exists(content)
+        ? Manifest.read(manifestFile)
+        : Manifest.empty();
+    if (previous.entries().isEmpty()) {
+      // we've got no idea what's in there, so start from scratch
+      delete(content);
+    }
+    // if we fail partway through then the manifest will not reflect the content, so get rid of it
+    // until we're done
+    QuietFiles.recursiveDelete(manifestFile);
+
+    LOG.info("Synchronising application to {}", content);
+    Manifest current = Manifest.scan(appDir, settings.hashing(), filter);
+
+    int removed = 0;
+    for (Map.Entry<String, Manifest.Entry> old
+        : new TreeMap<>(previous.entries()).descendingMap().entrySet()) {
+      Manifest.Entry now = current.entries().get(old.getKey());
+      if (now == null || now.isDirectory() != old.getValue().isDirectory()) {
+        Path sink = content.resolve(old.getKey());
+        LOG.trace("removing {}", sink);
+        QuietFiles.recursiveDelete(sink);
+        removed++;
+      }
+    }
+
+    List<Task> tasks = new ArrayList<>();
+    int skipped = 0;
+    long skippedBytes = 0;
+    QuietFiles.createDirectories(content);
+    for (Map.Entry<String, Manifest.Entry> e : current.entries().entrySet()) {
+      Path sink = content.resolve(e.getKey());
+      if (e.getValue().isDirectory()) {
+        QuietFiles.createDirectories(sink);
+        continue;
+      }
+      Manifest.Entry old = previous.entries().get(e.getKey());
+      if (old != null && old.matches(e.getValue()) && Files.exists(sink)) {
+        skipped++;
+        skippedBytes += e.getValue().size();
+      } else {
+        tasks.add(new Task(appDir.resolve(e.getKey()), sink, e.getValue().size()));
+      }
+    }
+    stageAll(tasks, stager);
+
+    current.write(manifestFile);
+    return new Stats(
+        tasks.size(), tasks.stream().mapToLong(Task::size).sum(),
+        skipped, skippedBytes,
+        removed);
+  }
+
+  private void delete(Path path) {
+    Events.Delete event = new Events.Delete();
+    event.begin();
+    if (settings.asyncDelete()) {
+      QuietFiles.reap(path);
+    } else {
+      QuietFiles.recursiveDelete(path);
+    }
+    event.path = path.toString();
+    event.async = settings.asyncDelete();
+    event.commit();
+  }
+
+  /**
+   * A file that needs to be staged
+   *
+   * @param source The application file
+   * @param sink   Where it should be staged
+   * @param size   The size of the file
+   */
+  private record Task(Path source, Path sink, long size) {
+
+  }
+
+  /**
+   * Applies a staging action to files, on a worker pool if so configured
+   *
+   * @param tasks    The files
+   * @param failures Where to record files for which the action failed
+   * @param action   Returns {@code true} if the file still needs to be staged
+   * @return The files that still need to be staged
+   */
+  private List<Task> forEach(List<Task> tasks, Map<Path, RuntimeException> failures,
+      Predicate<Task> action) {
+    Queue<Task> remaining = new ConcurrentLinkedQueue<>();
+    Consumer<Task> stage = task -> {
+      try {
+        if (action.test(task)) {
+          remaining.add(task);
+        }
+      } catch (RuntimeException e) {
+        failures.put(task.source(), e);
+      }
+    };
+
+    if (settings.parallelism() > 1 && tasks.size() > 1) {
+      try (ExecutorService pool = Executors.newFixedThreadPool(
+          settings.parallelism(),
+          Thread.ofPlatform().name("ingest-", 0).daemon().factory())) {
+        tasks.forEach(task -> pool.execute(() -> stage.accept(task)));
+      }
+    } else {
+      tasks.forEach(stage);
+    }
+    return new ArrayList<>(remaining);
+  }
+
+  /**
+   * Stages files: links where possible, then clones, then copies. All files are attempted even if
+   * some fail, and failures are reported in path order so the outcome does not depend on thread
+   * scheduling.
+   *
+   * @param tasks  The files to stage. Their parent directories must already exist
+   * @param stager How to stage them
+   */
+  private void stageAll(List<Task> tasks, Stager stager) {
+    Instant start = Instant.now();
+    Map<Path, RuntimeException> failures = new ConcurrentSkipListMap<>();
+    List<Task> unlinked = forEach(tasks, failures, task -> {
+      LOG.trace("staging\n  {}\n  {}", task.source(), task.sink());
+      return !stager.link(task.source(), task.sink());
+    });
+    List<Task> uncloned = stager.clone(unlinked, Task::source, Task::sink);
+    forEach(uncloned, failures, task -> {
+      stager.copy(task.source(), task.sink());
+      return false;
+    });
+
+    if (!failures.isEmpty()) {
+      Iterator<Map.Entry<Path, RuntimeException>> itr = failures.entrySet().iterator();
+      Map.Entry<Path, RuntimeException> first = itr.next();
+      IllegalStateException ise = new IllegalStateException(String.format(
+          "Failed to stage %d of %d files, starting with %s",
+          failures.size(), tasks.size(), first.getKey()),
+          first.getValue());
+      itr.forEachRemaining(e -> ise.addSuppressed(e.getValue()));
+      throw ise;
+    }
+
+    // only the staging itself, so that throughput isn't diluted by scanning and manifest writing
+    Duration elapsed = Duration.between(start, Instant.now());
+    double seconds = Math.max(elapsed.toNanos(), 1) / 1e9;
+    long bytes = tasks.stream().mapToLong(Task::size).sum();
+    LOG.info("Staged {} files ({} bytes) in {} with parallelism {} ({} files/s, {} bytes/s)",
+        tasks.size(), bytes, elapsed, settings.parallelism(),
+        Math.round(tasks.size() / seconds), Math.round(bytes / seconds));
+  }
+}
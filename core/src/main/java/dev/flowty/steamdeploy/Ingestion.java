@@ -0,0 +1,90 @@
+package dev.flowty.steamdeploy;
+
+/**
+ * Controls how the application files are staged into the steamcmd installation prior to upload
+ */
+public class Ingestion {
+
+  private boolean incremental = false;
+  private boolean hashing = false;
+  private Staging staging = Staging.COPY;
+  private int parallelism = 1;
+  private boolean asyncDelete = false;
+  private Filter filter = Filter.ALL;
+
+  boolean incremental() {
+    return incremental;
+  }
+
+  /**
+   * @param incremental {@code true} to keep a manifest of the staged content and only copy the
+   *                    files that have changed since the last deployment. {@code false} to delete
+   *                    and re-copy the entire application on every deployment.
+   */
+  public void incremental(boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  boolean hashing() {
+    return hashing;
+  }
+
+  /**
+   * @param hashing {@code true} to compare file content hashes as well as sizes and modification
+   *                times when deciding if a file has changed. This is slower, but necessary if
+   *                your build produces files with fixed timestamps.
+   */
+  public void hashing(boolean hashing) {
+    this.hashing = hashing;
+  }
+
+  Staging staging() {
+    return staging;
+  }
+
+  /**
+   * @param staging How to get files into the staging area
+   */
+  public void staging(Staging staging) {
+    this.staging = staging;
+  }
+
+  int parallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @param parallelism How many files to stage concurrently. Values greater than 1 can make much
+   *                    better use of fast storage when the application has many files.
+   */
+  public void parallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive, not " + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+
+  boolean asyncDelete() {
+    return asyncDelete;
+  }
+
+  /**
+   * @param asyncDelete {@code true} to move previously-staged content out of the way and delete it
+   *                    in the background, rather than waiting for the deletion to complete
+   */
+  public void asyncDelete(boolean asyncDelete) {
+    this.asyncDelete = asyncDelete;
+  }
+
+  Filter filter() {
+    return filter;
+  }
+
+  /**
+   * @param filter Which application files to stage. Excluded files are never copied, and excluded
+   *               directories are not even scanned.
+   */
+  public void filter(Filter filter) {
+    this.filter = filter;
+  }
+}
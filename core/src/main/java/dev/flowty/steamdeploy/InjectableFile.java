@@ -2,12 +2,16 @@ package dev.flowty.steamdeploy;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * File content that can be injected into a file structure
@@ -46,6 +50,24 @@ public interface InjectableFile {
     };
   }
 
+  /**
+   * @param content file content
+   * @return VDF file that may be written to the file system. The content is rendered straight to
+   * the file
+   */
+  static InjectableFile of(VDF content) {
+    return destination -> {
+      try {
+        Files.createDirectories(destination.getParent());
+        try (Writer out = Files.newBufferedWriter(destination)) {
+          content.writeTo(out);
+        }
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    };
+  }
+
   /**
    * Handles a common usecase for authentication VDF files, where they get stored in base64-encoded
    * form as an environment variable in CI
@@ -62,7 +84,9 @@ public interface InjectableFile {
   }
 
   /**
-   * Builds a simple <code>AppBuild</code> VDF file
+   * Builds a simple <code>AppBuild</code> VDF file, which expects to be written to the
+   * <code>scripts</code> directory of a steamcmd installation and for the application files to have
+   * been staged into the <code>content</code> directory.
    *
    * @param appId       The steam application ID
    * @param description A description for the build
@@ -73,29 +97,178 @@ public interface InjectableFile {
    */
   static InjectableFile appBuild(
       int appId, String description, boolean verbose, boolean preview, int depotId) {
-    return of(new VDF("AppBuild")
+    return appBuild(appId, description, verbose, preview, depotId, Filter.ALL);
+  }
+
+  /**
+   * As {@link #appBuild(int, String, boolean, boolean, int)}, with the filter's exclusions emitted
+   * as <code>FileExclusion</code> entries
+   *
+   * @param appId       The steam application ID
+   * @param description A description for the build
+   * @param verbose     {@code true} to enable more build logs
+   * @param preview     {@code true} to build the app but not actually upload it
+   * @param depotId     The depot ID to upload to
+   * @param filter      Which application files to upload
+   * @return <code>AppBuild</code> VDF content
+   */
+  static InjectableFile appBuild(
+      int appId, String description, boolean verbose, boolean preview, int depotId,
+      Filter filter) {
+    return appBuild(appId, description, verbose, preview,
+        // relative to location of this file
+        Optional.of("..\\content\\"), "..\\output\\",
+        ds -> ds.o(String.valueOf(depotId), d -> {
+          mapping(d, Mapping.ALL);
+          exclusions(d, filter);
+        }));
+  }
+
+  /**
+   * Builds a simple <code>AppBuild</code> VDF file that uploads the application files from where
+   * they are, with no need to stage them first.
+   *
+   * @param appId       The steam application ID
+   * @param description A description for the build
+   * @param verbose     {@code true} to enable more build logs
+   * @param preview     {@code true} to build the app but not actually upload it
+   * @param depotId     The depot ID to upload to
+   * @param contentRoot The directory that holds the application files
+   * @param buildOutput The directory where build logs and cache files should be written
+   * @return <code>AppBuild</code> VDF content
+   */
+  static InjectableFile appBuild(
+      int appId, String description, boolean verbose, boolean preview, int depotId,
+      Path contentRoot, Path buildOutput) {
+    return appBuild(appId, description, verbose, preview, depotId, contentRoot, buildOutput,
+        Filter.ALL);
+  }
+
+  /**
+   * As {@link #appBuild(int, String, boolean, boolean, int, Path, Path)}, with the filter's
+   * exclusions emitted as <code>FileExclusion</code> entries. Only exclusions can be expressed in
+   * the build script, so includes are not applied.
+   *
+   * @param appId       The steam application ID
+   * @param description A description for the build
+   * @param verbose     {@code true} to enable more build logs
+   * @param preview     {@code true} to build the app but not actually upload it
+   * @param depotId     The depot ID to upload to
+   * @param contentRoot The directory that holds the application files
+   * @param buildOutput The directory where build logs and cache files should be written
+   * @param filter      Which application files to upload
+   * @return <code>AppBuild</code> VDF content
+   */
+  static InjectableFile appBuild(
+      int appId, String description, boolean verbose, boolean preview, int depotId,
+      Path contentRoot, Path buildOutput, Filter filter) {
+    return appBuild(appId, description, verbose, preview,
+        Optional.of(directory(contentRoot)), directory(buildOutput),
+        ds -> ds.o(String.valueOf(depotId), d -> {
+          mapping(d, Mapping.ALL);
+          exclusions(d, filter);
+        }));
+  }
+
+  /**
+   * Builds an <code>AppBuild</code> VDF file that uploads several depots in one build. It expects
+   * to be written to the <code>scripts</code> directory of a workspace and for the content of each
+   * depot to have been staged into {@link Workspace#content(int)}, as is done by
+   * {@link SteamCMD#deploy(Auth, List, InjectableFile, Workspace)}
+   *
+   * @param appId       The steam application ID
+   * @param description A description for the build
+   * @param verbose     {@code true} to enable more build logs
+   * @param preview     {@code true} to build the app but not actually upload it
+   * @param depots      The depots to upload
+   * @return <code>AppBuild</code> VDF content
+   */
+  static InjectableFile appBuild(
+      int appId, String description, boolean verbose, boolean preview, List<Depot> depots) {
+    return appBuild(appId, description, verbose, preview,
+        Optional.of("..\\content\\"), "..\\output\\",
+        ds -> depots.forEach(depot -> ds.o(String.valueOf(depot.id()), d -> {
+          d.v("ContentRoot", "..\\content\\" + depot.id() + "\\");
+          depot(d, depot);
+        })));
+  }
+
+  /**
+   * Builds an <code>AppBuild</code> VDF file that uploads several depots in one build, from where
+   * their content is, with no need to stage it first.
+   *
+   * @param appId       The steam application ID
+   * @param description A description for the build
+   * @param verbose     {@code true} to enable more build logs
+   * @param preview     {@code true} to build the app but not actually upload it
+   * @param depots      The depots to upload
+   * @param buildOutput The directory where build logs and cache files should be written
+   * @return <code>AppBuild</code> VDF content
+   */
+  static InjectableFile appBuild(
+      int appId, String description, boolean verbose, boolean preview, List<Depot> depots,
+      Path buildOutput) {
+    return appBuild(appId, description, verbose, preview,
+        Optional.empty(), directory(buildOutput),
+        ds -> depots.forEach(depot -> ds.o(String.valueOf(depot.id()), d -> {
+          d.v("ContentRoot", directory(depot.source()));
+          depot(d, depot);
+        })));
+  }
+
+  /**
+   * The section of an <code>AppBuild</code> VDF file that describes a depot, minus the content
+   * root as that depends on where the build runs. This lets us notice when a depot's configuration
+   * changes.
+   *
+   * @param depot The depot
+   * @return The depot's file mappings and exclusions
+   */
+  static VDF depotSection(Depot depot) {
+    VDF section = new VDF(String.valueOf(depot.id()));
+    depot(section, depot);
+    return section;
+  }
+
+  private static void depot(VDF section, Depot depot) {
+    depot.mappings().forEach(m -> mapping(section, m));
+    exclusions(section, depot.filter());
+  }
+
+  private static String directory(Path path) {
+    return path.toAbsolutePath().normalize() + File.separator;
+  }
+
+  private static void mapping(VDF depot, Mapping mapping) {
+    depot.o("FileMapping", f -> f
+        // which files from the content root
+        .v("LocalPath", mapping.localPath())
+        // where they go in the depot
+        .v("DepotPath", mapping.depotPath())
+        // whether to include subfolders
+        .v("recursive", mapping.recursive() ? "1" : "0"));
+  }
+
+  private static void exclusions(VDF depot, Filter filter) {
+    // files that steamcmd should ignore, in case they have not been filtered out already
+    filter.steamExclusions().forEach(e -> depot.v("FileExclusion", e));
+  }
+
+  private static InjectableFile appBuild(
+      int appId, String description, boolean verbose, boolean preview,
+      Optional<String> contentRoot, String buildOutput, Consumer<VDF> depots) {
+    VDF vdf = new VDF("AppBuild")
         .v("AppId", String.valueOf(appId))
         .v("Desc", description)
         // spew more build details in console
         .v("verbose", verbose ? "1" : "0")
         // make this a preview build only, nothing is uploaded
-        .v("preview", preview ? "1" : "0")
-        // root content folder, relative to location of this file
-        .v("ContentRoot", "..\\content\\")
-        // build output folder for build logs and build cache files
-        .v("BuildOutput", "..\\output\\")
-        .o("Depots", ds -> ds
-            .o(String.valueOf(depotId), d -> d
-                .o("FileMapping", f -> f
-                    // all files from contentroot folder
-                    .v("LocalPath", "*")
-                    // mapped into the root of the depot
-                    .v("DepotPath", ".")
-                    // include all subfolders
-                    .v("recursive", "1")
-                )
-            )
-        )
-        .toString());
+        .v("preview", preview ? "1" : "0");
+    // root content folder
+    contentRoot.ifPresent(root -> vdf.v("ContentRoot", root));
+    // build output folder for build logs and build cache files
+    return of(vdf
+        .v("BuildOutput", buildOutput)
+        .o("Depots", depots));
   }
 }
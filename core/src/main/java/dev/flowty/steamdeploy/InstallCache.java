@@ -0,0 +1,373 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import dev.flowty.steamdeploy.Download.Validators;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A machine-wide cache of steamcmd SDK archives and their extracted content, so that new
+ * installations don't have to download anything. Entries are keyed by platform and source URL.
+ * Each entry holds the last few versions of the archive along with the validators that the server
+ * supplied for them, and the source is revalidated with a conditional request before each
+ * installation, unless it was validated within the {@link #revalidatingAfter(Duration) revalidation
+ * window}: if the archive has not changed then nothing is transferred. Archives and extracted
+ * trees are verified against recorded checksums before use, and interrupted downloads are resumed
+ * by the next installation.
+ */
+public class InstallCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(InstallCache.class);
+
+  private static final String LOCK = ".lock";
+  private static final String INDEX = "index";
+  private static final String DOWNLOAD = "download";
+  private static final String ARCHIVE = "archive";
+  private static final String TREE = "tree";
+  private static final String TREE_SUM = "tree.sha256";
+  private static final String NO_VALUE = "-";
+
+  /**
+   * File locks are held by the whole JVM, so threads that share a cache entry must also take turns
+   * on one of these
+   */
+  private static final ConcurrentMap<Path, ReentrantLock> ENTRY_LOCKS = new ConcurrentHashMap<>();
+
+  /**
+   * A cached version of the archive
+   *
+   * @param sha256     The SHA-256 hash of the archive
+   * @param validated  When we last confirmed that this is the current version
+   * @param validators What the server told us about this version
+   */
+  private record Version(String sha256, Instant validated, Validators validators) {
+
+    /**
+     * @return The name of the directory that holds this version
+     */
+    String dir() {
+      return sha256.substring(0, 16);
+    }
+  }
+
+  private final Path root;
+  private Optional<String> expectedArchive = Optional.empty();
+  private int connections = 1;
+  private int retained = 3;
+  private Duration revalidation = Duration.ZERO;
+
+  /**
+   * @param root The cache directory
+   */
+  public InstallCache(Path root) {
+    this.root = root;
+  }
+
+  /**
+   * @return A cache in the user's home directory
+   */
+  public static InstallCache machineWide() {
+    return new InstallCache(Paths.get(System.getProperty("user.home"), ".steamdeploy", "cache"));
+  }
+
+  /**
+   * Pins the SDK archive content. Downloads that do not match will be rejected.
+   *
+   * @param sha256 The expected SHA-256 hash of the downloaded archive, in hex
+   * @return {@code this}
+   */
+  public InstallCache expectingArchive(String sha256) {
+    expectedArchive = Optional.of(sha256.toLowerCase());
+    return this;
+  }
+
+  /**
+   * Controls how many versions of the archive are kept for each source
+   *
+   * @param versions The number of versions to keep
+   * @return {@code this}
+   */
+  public InstallCache retaining(int versions) {
+    retained = Math.max(1, versions);
+    return this;
+  }
+
+  /**
+   * Controls how often the source is checked for a new version of the archive
+   *
+   * @param window How long after a successful validation the cached version is used without
+   *               checking again. Defaults to zero, so the source is checked for every installation.
+   * @return {@code this}
+   */
+  public InstallCache revalidatingAfter(Duration window) {
+    revalidation = window;
+    return this;
+  }
+
+  /**
+   * Allows the SDK archive to be downloaded in segments over several concurrent connections, if the
+   * server supports it
+   *
+   * @param connections The maximum number of concurrent connections
+   * @return {@code this}
+   */
+  public InstallCache downloadConnections(int connections) {
+    this.connections = connections;
+    return this;
+  }
+
+  /**
+   * Populates a directory with the extracted SDK, downloading and caching it if necessary
+   *
+   * @param platform    The current platform
+   * @param source      The SDK download URL, if the platform default is not to be used
+   * @param destination The directory to populate. This must not exist.
+   */
+  void installTo(Platform platform, Optional<URL> source, Path destination) {
+    URL url = source.orElse(platform.source);
+    Path entry = root.resolve(key(platform, url));
+    QuietFiles.createDirectories(entry);
+    QuietFiles.reapTombstones(entry);
+
+    ReentrantLock local = ENTRY_LOCKS.computeIfAbsent(
+        entry.toAbsolutePath().normalize(), k -> new ReentrantLock());
+    local.lock();
+    try (FileChannel channel = FileChannel.open(entry.resolve(LOCK),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = channel.lock()) {
+      Path tree = refresh(platform, url, entry).resolve(TREE);
+
+      LOG.info("Attaching cached SDK from {}", tree);
+      QuietFiles.createDirectories(destination);
+      for (Map.Entry<String, Manifest.Entry> e
+          : Manifest.scan(tree, false).entries().entrySet()) {
+        Path sink = destination.resolve(e.getKey());
+        if (e.getValue().isDirectory()) {
+          QuietFiles.createDirectories(sink);
+        } else {
+          QuietFiles.copy(tree.resolve(e.getKey()), sink);
+        }
+      }
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    } finally {
+      local.unlock();
+    }
+  }
+
+  /**
+   * Brings a cache entry up to date with the source
+   *
+   * @param platform The current platform
+   * @param url      The SDK download URL
+   * @param entry    The cache entry directory
+   * @return The directory of the current version
+   */
+  private Path refresh(Platform platform, URL url, Path entry) {
+    List<Version> index = readIndex(entry.resolve(INDEX));
+    Optional<Version> current = index.stream()
+        .filter(v -> expectedArchive.map(v.sha256()::equals).orElse(true))
+        .filter(v -> {
+          Path archive = entry.resolve(v.dir()).resolve(ARCHIVE);
+          if (Files.exists(archive) && Manifest.hash(archive).equals(v.sha256())) {
+            return true;
+          }
+          LOG.warn("Discarding corrupt cached archive {}", archive);
+          return false;
+        })
+        .findFirst();
+
+    Optional<Validators> fetched = Optional.empty();
+    boolean validated = false;
+    if (current.isPresent()
+        && current.get().validated().plus(revalidation).isAfter(Instant.now())) {
+      LOG.info("Using cached version {}, validated at {}",
+          current.get().dir(), current.get().validated());
+    } else {
+      try {
+        fetched = new Download(url)
+            .connections(connections)
+            .ifChanged(current.map(Version::validators).orElse(Validators.NONE))
+            .to(entry.resolve(DOWNLOAD));
+        validated = true;
+      } catch (RuntimeException re) {
+        if (current.isEmpty()) {
+          throw re;
+        }
+        LOG.warn("Failed to revalidate {}, using the cached version: {}", url, re.toString());
+      }
+    }
+
+    Version version;
+    if (fetched.isPresent()) {
+      version = store(url, entry, fetched.get());
+    } else if (validated) {
+      version = current
+          .map(v -> new Version(v.sha256(), Instant.now(), v.validators()))
+          .orElseThrow(() -> new IllegalStateException(
+              "Nothing cached for unmodified " + url));
+    } else {
+      // not confirmed, so the validation time stands
+      version = current.orElseThrow();
+    }
+
+    Path dir = entry.resolve(version.dir());
+    if (!verify(dir)) {
+      extract(platform, dir);
+    }
+
+    List<Version> updated = new ArrayList<>();
+    updated.add(version);
+    index.stream()
+        .filter(v -> !v.sha256().equals(version.sha256()))
+        .forEach(updated::add);
+    while (updated.size() > retained) {
+      Version pruned = updated.remove(updated.size() - 1);
+      LOG.info("Pruning cached version {}", pruned.dir());
+      QuietFiles.reap(entry.resolve(pruned.dir()));
+    }
+    writeIndex(entry.resolve(INDEX), updated);
+
+    return dir;
+  }
+
+  /**
+   * Moves a freshly-downloaded archive into the cache
+   *
+   * @param url        Where it came from
+   * @param entry      The cache entry directory
+   * @param validators What the server told us about the archive
+   * @return The new version
+   */
+  private Version store(URL url, Path entry, Validators validators) {
+    Path download = entry.resolve(DOWNLOAD);
+    Version version = new Version(Manifest.hash(download), Instant.now(), validators);
+    if (expectedArchive.isPresent() && !expectedArchive.get().equals(version.sha256())) {
+      QuietFiles.recursiveDelete(download);
+      throw new IllegalStateException(String.format(
+          "Archive from %s has checksum %s, expected %s",
+          url, version.sha256(), expectedArchive.get()));
+    }
+
+    Path dir = entry.resolve(version.dir());
+    if (Files.exists(dir.resolve(ARCHIVE))
+        && Manifest.hash(dir.resolve(ARCHIVE)).equals(version.sha256())) {
+      LOG.info("Archive from {} matches cached version {}", url, version.dir());
+      QuietFiles.recursiveDelete(download);
+    } else {
+      LOG.info("Caching SDK version {} from {}", version.dir(), url);
+      QuietFiles.reap(dir);
+      QuietFiles.createDirectories(dir);
+      QuietFiles.move(download, dir.resolve(ARCHIVE), StandardCopyOption.ATOMIC_MOVE);
+    }
+    return version;
+  }
+
+  /**
+   * Extracts a cached archive. The extracted tree is assembled in a temporary directory and then
+   * atomically renamed into place, so a partially-extracted tree is never visible.
+   *
+   * @param platform The current platform
+   * @param dir      The version directory
+   */
+  private static void extract(Platform platform, Path dir) {
+    Path temp = dir.resolve(TREE + ".tmp-" + UUID.randomUUID());
+    try {
+      QuietFiles.recursiveDelete(dir.resolve(TREE_SUM));
+      QuietFiles.reap(dir.resolve(TREE));
+      platform.extract(dir.resolve(ARCHIVE), temp);
+      QuietFiles.move(temp, dir.resolve(TREE), StandardCopyOption.ATOMIC_MOVE);
+      QuietFiles.write(dir.resolve(TREE_SUM),
+          Manifest.scan(dir.resolve(TREE), true).digest().getBytes(UTF_8));
+    } finally {
+      QuietFiles.reap(temp);
+    }
+  }
+
+  private static boolean verify(Path dir) {
+    Path sum = dir.resolve(TREE_SUM);
+    if (!Files.exists(sum) || !Files.isDirectory(dir.resolve(TREE))) {
+      return false;
+    }
+    if (!read(sum).equals(Manifest.scan(dir.resolve(TREE), true).digest())) {
+      LOG.warn("Discarding corrupt cached SDK {}", dir.resolve(TREE));
+      return false;
+    }
+    return true;
+  }
+
+  private static List<Version> readIndex(Path file) {
+    List<Version> versions = new ArrayList<>();
+    if (Files.exists(file)) {
+      try (Stream<String> lines = QuietFiles.lines(file)) {
+        lines.filter(line -> !line.isEmpty())
+            .forEach(line -> {
+              String[] fields = line.split("\t", 4);
+              if (fields.length != 4) {
+                throw new IllegalStateException("Malformed index line in " + file + " : " + line);
+              }
+              versions.add(new Version(
+                  fields[0],
+                  Instant.ofEpochMilli(Long.parseLong(fields[1])),
+                  new Validators(
+                      Optional.of(fields[2]).filter(v -> !NO_VALUE.equals(v)),
+                      Optional.of(fields[3]).filter(v -> !NO_VALUE.equals(v)))));
+            });
+      }
+    }
+    return versions;
+  }
+
+  private static void writeIndex(Path file, List<Version> versions) {
+    StringBuilder sb = new StringBuilder();
+    for (Version v : versions) {
+      sb.append(v.sha256())
+          .append("\t").append(v.validated().toEpochMilli())
+          .append("\t").append(v.validators().etag().orElse(NO_VALUE))
+          .append("\t").append(v.validators().lastModified().orElse(NO_VALUE))
+          .append("\n");
+    }
+    QuietFiles.replace(file, temp -> QuietFiles.write(temp, sb.toString().getBytes(UTF_8)));
+  }
+
+  private static String read(Path file) {
+    return Files.exists(file)
+        ? new String(QuietFiles.readAllBytes(file), UTF_8).trim()
+        : "";
+  }
+
+  private static String key(Platform platform, URL url) {
+    try {
+      return platform.name().toLowerCase() + "-" + HexFormat.of().formatHex(
+          MessageDigest.getInstance("SHA-256").digest(url.toString().getBytes(UTF_8)),
+          0, 8);
+    } catch (NoSuchAlgorithmException nsae) {
+      throw new IllegalStateException(nsae);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the auth VDF that was last injected into a steam home directory, and when a login with
+ * it last succeeded. This allows unchanged auth content to be left in place, where steamcmd may
+ * have refreshed it, and recent logins to be trusted without repeating them.
+ */
+class LoginCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LoginCache.class);
+
+  /**
+   * The cached login state
+   *
+   * @param injected  The hash of the last-injected auth VDF content, or empty if none has been
+   * @param user      The user that last logged in successfully, or empty if the current auth
+   *                  content has not been used yet
+   * @param validated When that login happened
+   */
+  record State(Optional<String> injected, Optional<String> user, Instant validated) {
+
+    private static final State NONE = new State(Optional.empty(), Optional.empty(), Instant.MIN);
+  }
+
+  private final Path config;
+  private final Path record;
+  private final InstantSource clock;
+
+  /**
+   * @param config The <code>config.vdf</code> file
+   * @param clock  The source of time
+   */
+  LoginCache(Path config, InstantSource clock) {
+    this.config = config;
+    record = config.resolveSibling(config.getFileName() + ".steamdeploy");
+    this.clock = clock;
+  }
+
+  /**
+   * Writes the auth VDF, unless the same content has already been injected. This is done via a
+   * temporary file and an atomic move so that concurrent deployments never see a partially-written
+   * file.
+   *
+   * @param vdf The auth VDF content
+   * @return {@code true} if the file was written
+   */
+  synchronized boolean inject(InjectableFile vdf) {
+    Optional<String> current = Files.exists(config) ? state().injected() : Optional.empty();
+    AtomicReference<String> hash = new AtomicReference<>();
+    boolean changed = QuietFiles.replace(config, vdf::writeTo, temp -> {
+      hash.set(Manifest.hash(temp));
+      return !current.equals(Optional.of(hash.get()));
+    });
+    if (!changed) {
+      LOG.info("Auth VDF unchanged at {}", config);
+      return false;
+    }
+    LOG.info("Injected auth VDF to {}", config);
+    write(new State(Optional.of(hash.get()), Optional.empty(), Instant.MIN));
+    return true;
+  }
+
+  /**
+   * Records a successful login
+   *
+   * @param user The user that logged in
+   */
+  synchronized void validated(String user) {
+    write(new State(state().injected(), Optional.of(user), clock.instant()));
+  }
+
+  /**
+   * @param user      A user
+   * @param freshness How long a successful login can be trusted for
+   * @return {@code true} if that user logged in successfully with the current auth content within
+   * the freshness window
+   */
+  synchronized boolean fresh(String user, Duration freshness) {
+    State state = state();
+    return state.user().filter(user::equals).isPresent()
+        && !state.validated().isBefore(clock.instant().minus(freshness));
+  }
+
+  /**
+   * @return The recorded state
+   */
+  State state() {
+    if (!Files.exists(record)) {
+      return State.NONE;
+    }
+    String[] fields = new String(QuietFiles.readAllBytes(record), UTF_8).strip().split("\t");
+    if (fields.length != 3) {
+      LOG.warn("Ignoring malformed login record {}", record);
+      return State.NONE;
+    }
+    return new State(
+        Optional.of(fields[0]).filter(f -> !f.equals("-")),
+        Optional.of(fields[1]).filter(f -> !f.equals("-")),
+        fields[2].equals("-") ? Instant.MIN : Instant.ofEpochMilli(Long.parseLong(fields[2])));
+  }
+
+  private void write(State state) {
+    QuietFiles.replace(record, f -> QuietFiles.write(f, (state.injected().orElse("-")
+        + "\t" + state.user().orElse("-")
+        + "\t" + (state.validated().equals(Instant.MIN)
+        ? "-"
+        : String.valueOf(state.validated().toEpochMilli()))
+        + "\n").getBytes(UTF_8)));
+  }
+}
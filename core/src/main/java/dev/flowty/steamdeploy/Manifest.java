@@ -0,0 +1,359 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A record of the files in a directory tree, used to work out what has changed between
+ * deployments. Persisted as lines of tab-separated <code>size, mtime, hash, path</code>.
+ */
+class Manifest {
+
+  /**
+   * Allows for coarse modification time resolution on some filesystems
+   */
+  private static final Duration RACY = Duration.ofSeconds(2);
+
+  /**
+   * The size value used for directories
+   */
+  private static final long DIRECTORY = -1;
+
+  private static final String NO_HASH = "-";
+
+  /**
+   * The state of a single file
+   *
+   * @param size  The file size in bytes, or {@code -1} for directories
+   * @param mtime The last-modified time in milliseconds since the epoch
+   * @param hash  The content hash, if one was computed
+   */
+  record Entry(long size, long mtime, Optional<String> hash) {
+
+    boolean isDirectory() {
+      return size == DIRECTORY;
+    }
+
+    /**
+     * @param other Another entry
+     * @return {@code true} if we are confident that the two entries describe the same content
+     */
+    boolean matches(Entry other) {
+      if (isDirectory() || other.isDirectory()) {
+        return isDirectory() && other.isDirectory();
+      }
+      if (size != other.size || mtime != other.mtime) {
+        return false;
+      }
+      if (hash.isPresent() || other.hash.isPresent()) {
+        return hash.equals(other.hash);
+      }
+      return true;
+    }
+  }
+
+  private final Map<String, Entry> entries;
+
+  private Manifest(Map<String, Entry> entries) {
+    this.entries = Collections.unmodifiableMap(entries);
+  }
+
+  /**
+   * @return A manifest with no entries
+   */
+  static Manifest empty() {
+    return new Manifest(new TreeMap<>());
+  }
+
+  /**
+   * @return The entries in this manifest, keyed by '/'-separated relative path
+   */
+  Map<String, Entry> entries() {
+    return entries;
+  }
+
+  /**
+   * Builds a manifest of a directory tree
+   *
+   * @param root    The directory to scan
+   * @param hashing {@code true} to compute content hashes
+   * @return The manifest of that directory
+   */
+  static Manifest scan(Path root, boolean hashing) {
+    Map<String, Entry> entries = new TreeMap<>();
+    try (Stream<Path> paths = QuietFiles.walk(root)) {
+      paths.filter(p -> !p.equals(root))
+          .forEach(p -> entries.put(key(root, p), entry(p, hashing)));
+    }
+    return new Manifest(entries);
+  }
+
+  /**
+   * Builds a manifest of the parts of a directory tree that pass a filter. Excluded directories are
+   * not descended into.
+   *
+   * @param root    The directory to scan
+   * @param hashing {@code true} to compute content hashes
+   * @param filter  Which files to include
+   * @return The manifest of that directory
+   */
+  static Manifest scan(Path root, boolean hashing, Filter filter) {
+    if (filter.all()) {
+      return scan(root, hashing);
+    }
+    Map<String, Entry> entries = new TreeMap<>();
+    QuietFiles.wrap(() -> Files.walkFileTree(root, new SimpleFileVisitor<>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        if (dir.equals(root)) {
+          return FileVisitResult.CONTINUE;
+        }
+        String key = key(root, dir);
+        if (filter.prunes(key)) {
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        entries.put(key, entry(dir, hashing));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        String key = key(root, file);
+        if (filter.accepts(key)) {
+          entries.put(key, entry(file, hashing));
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    }));
+    return new Manifest(entries);
+  }
+
+  /**
+   * Fills in content hashes, reusing those from a previous manifest where the size and modification
+   * time of a file are unchanged
+   *
+   * @param root        The directory that this manifest describes
+   * @param known       A manifest with previously-computed hashes
+   * @param trusted     Known hashes are only reused for files last modified before this time, in
+   *                    milliseconds since the epoch. Files modified shortly before their hash was
+   *                    computed could have changed again without changing the modification time.
+   * @param parallelism How many files to hash concurrently
+   * @return A copy of this manifest with hashes for every file
+   */
+  Manifest hashed(Path root, Manifest known, long trusted, int parallelism) {
+    Map<String, Entry> hashed = new ConcurrentHashMap<>();
+    List<String> unknown = new ArrayList<>();
+    entries.forEach((path, entry) -> {
+      Entry previous = known.entries.get(path);
+      if (entry.isDirectory() || entry.hash().isPresent()) {
+        hashed.put(path, entry);
+      } else if (previous != null && previous.hash().isPresent() && previous.mtime() < trusted
+          && previous.size() == entry.size() && previous.mtime() == entry.mtime()) {
+        hashed.put(path, previous);
+      } else {
+        unknown.add(path);
+      }
+    });
+    Consumer<String> hash = path -> {
+      Entry entry = entries.get(path);
+      hashed.put(path, new Entry(entry.size(), entry.mtime(),
+          Optional.of(hash(root.resolve(path)))));
+    };
+    inParallel(unknown, parallelism, "hash-", hash);
+    return new Manifest(new TreeMap<>(hashed));
+  }
+
+  /**
+   * @param cache A file of previously-computed hashes
+   * @return The time before which files must have last been modified for their hashes in that file
+   * to be trusted, in milliseconds since the epoch. We can't trust hashes of files that were
+   * modified around the time that they were hashed.
+   */
+  static long trusted(Path cache) {
+    return Files.exists(cache)
+        ? QuietFiles.wrap(() -> Files.getLastModifiedTime(cache)).toMillis() - RACY.toMillis()
+        : 0;
+  }
+
+  /**
+   * Runs hashing tasks
+   *
+   * @param tasks       The tasks
+   * @param parallelism How many tasks to run concurrently
+   * @param threads     The prefix of the names of the hashing threads
+   * @param hash        Runs a task
+   * @param <T>         The task type
+   */
+  static <T> void inParallel(List<T> tasks, int parallelism, String threads, Consumer<T> hash) {
+    if (parallelism > 1 && tasks.size() > 1) {
+      try (ExecutorService pool = Executors.newFixedThreadPool(
+          parallelism, Thread.ofPlatform().name(threads, 0).daemon().factory())) {
+        List<Future<?>> futures = tasks.stream()
+            .<Future<?>>map(task -> pool.submit(() -> hash.accept(task)))
+            .toList();
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } catch (ExecutionException ee) {
+        if (ee.getCause() instanceof RuntimeException re) {
+          throw re;
+        }
+        throw new IllegalStateException(ee.getCause());
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while hashing", ie);
+      }
+    } else {
+      tasks.forEach(hash);
+    }
+  }
+
+  /**
+   * @param root A directory
+   * @param path A path within that directory
+   * @return The manifest key for that path
+   */
+  static String key(Path root, Path path) {
+    return root.relativize(path).toString().replace('\\', '/');
+  }
+
+  /**
+   * @param path    A file or directory
+   * @param hashing {@code true} to compute the content hash
+   * @return The manifest entry for that path
+   */
+  static Entry entry(Path path, boolean hashing) {
+    BasicFileAttributes attr = QuietFiles.wrap(() -> Files.readAttributes(
+        path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+    if (attr.isDirectory()) {
+      return new Entry(DIRECTORY, 0, Optional.empty());
+    }
+    return new Entry(
+        attr.size(),
+        attr.lastModifiedTime().toMillis(),
+        hashing ? Optional.of(hash(path)) : Optional.empty());
+  }
+
+  /**
+   * @param path A file
+   * @return The SHA-256 hash of the file content
+   */
+  static String hash(Path path) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] buffer = new byte[64 * 1024];
+      QuietFiles.wrap(() -> {
+        try (InputStream in = Files.newInputStream(path)) {
+          int read;
+          while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+          }
+        }
+        return null;
+      });
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException nsae) {
+      throw new IllegalStateException(nsae);
+    }
+  }
+
+  /**
+   * Reads a persisted manifest
+   *
+   * @param file The manifest file
+   * @return The manifest content, or an empty manifest if the file does not exist
+   */
+  static Manifest read(Path file) {
+    Map<String, Entry> entries = new TreeMap<>();
+    if (Files.exists(file)) {
+      try (Stream<String> lines = QuietFiles.lines(file)) {
+        lines.filter(line -> !line.isEmpty())
+            .forEach(line -> {
+              String[] fields = line.split("\t", 4);
+              if (fields.length != 4) {
+                throw new IllegalStateException("Malformed manifest line in " + file + " : " + line);
+              }
+              entries.put(fields[3], new Entry(
+                  Long.parseLong(fields[0]),
+                  Long.parseLong(fields[1]),
+                  Optional.of(fields[2]).filter(h -> !NO_HASH.equals(h))));
+            });
+      }
+    }
+    return new Manifest(entries);
+  }
+
+  /**
+   * Persists this manifest
+   *
+   * @param file The file to write to
+   */
+  void write(Path file) {
+    QuietFiles.createDirectories(file.getParent());
+    QuietFiles.write(file, entries.entrySet().stream()
+        .map(e -> e.getValue().size()
+            + "\t" + e.getValue().mtime()
+            + "\t" + e.getValue().hash().orElse(NO_HASH)
+            + "\t" + e.getKey())
+        .collect(joining("\n", "", "\n"))
+        .getBytes(UTF_8));
+  }
+
+  /**
+   * @return A SHA-256 digest of the paths, sizes and hashes in this manifest. Modification times
+   * are not included.
+   */
+  String digest() {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      entries.forEach((path, entry) -> digest.update(
+          (path + "\t" + entry.size() + "\t" + entry.hash().orElse(NO_HASH) + "\n")
+              .getBytes(UTF_8)));
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException nsae) {
+      throw new IllegalStateException(nsae);
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    return entries.equals(((Manifest) o).entries);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(entries);
+  }
+}
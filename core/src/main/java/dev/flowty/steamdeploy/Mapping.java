@@ -0,0 +1,17 @@
+package dev.flowty.steamdeploy;
+
+/**
+ * Maps depot content files into a depot
+ *
+ * @param localPath Which files to include, relative to the depot content directory. Wildcards are
+ *                  allowed, e.g.: <code>bin/*.dll</code>
+ * @param depotPath Where the files should go in the depot, relative to the depot root
+ * @param recursive {@code true} to include files in subdirectories
+ */
+public record Mapping(String localPath, String depotPath, boolean recursive) {
+
+  /**
+   * All files, mapped into the root of the depot
+   */
+  public static final Mapping ALL = new Mapping("*", ".", true);
+}
@@ -0,0 +1,234 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects process output with bounded memory usage. The most recent lines are held in memory, and
+ * the complete output is streamed to a gzipped log file. If no log file is specified then output is
+ * only written to disk once it outgrows the in-memory buffer, and that spill file is deleted once
+ * the {@link Result}s that refer to it are no longer reachable. If the log file can't be written
+ * then we carry on with just the in-memory tail.
+ */
+class OutputCapture implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OutputCapture.class);
+
+  /**
+   * The default number of lines to hold in memory
+   */
+  static final int TAIL_LINES = 200;
+  /**
+   * The default number of characters to hold in memory
+   */
+  static final int TAIL_CHARS = 64 * 1024;
+
+  /**
+   * Deletes spill files once their results are unreachable
+   */
+  private static final Cleaner CLEANER = Cleaner.create();
+  /**
+   * The names of spill files that have yet to be deleted, which we'll clean up on exit. Names
+   * rather than paths, so as not to keep the paths reachable
+   */
+  private static final Set<String> SPILLS = ConcurrentHashMap.newKeySet();
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(
+        () -> SPILLS.forEach(OutputCapture::discard), "spill-cleanup"));
+  }
+
+  private final int maxLines;
+  private final int maxChars;
+  private final Path spills;
+  private final Deque<String> tail = new ArrayDeque<>();
+  private int tailChars = 0;
+  private long total = 0;
+  private Optional<Path> log;
+  private Writer writer;
+  private Optional<Path> spill = Optional.empty();
+  private boolean failed = false;
+  private boolean closed = false;
+
+  /**
+   * Captures to the default in-memory limits, spilling to a temporary file when they're exceeded
+   */
+  OutputCapture() {
+    this(TAIL_LINES, TAIL_CHARS, Optional.empty());
+  }
+
+  /**
+   * @param maxLines The maximum number of lines to hold in memory
+   * @param maxChars The maximum number of characters to hold in memory
+   * @param log      Where to write the complete output. If this is empty then output is written to
+   *                 a temporary file once the memory limits are exceeded
+   */
+  OutputCapture(int maxLines, int maxChars, Optional<Path> log) {
+    this(maxLines, maxChars, log, Paths.get(System.getProperty("java.io.tmpdir")));
+  }
+
+  /**
+   * @param maxLines The maximum number of lines to hold in memory
+   * @param maxChars The maximum number of characters to hold in memory
+   * @param log      Where to write the complete output. If this is empty then output is written to
+   *                 a file in <code>spills</code> once the memory limits are exceeded
+   * @param spills   The directory in which to write the complete output if <code>log</code> is
+   *                 empty
+   */
+  OutputCapture(int maxLines, int maxChars, Optional<Path> log, Path spills) {
+    this.maxLines = maxLines;
+    this.maxChars = maxChars;
+    this.log = log;
+    this.spills = spills;
+    log.ifPresent(file -> {
+      try {
+        open(file);
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    });
+  }
+
+  /**
+   * @param line A line of output. This is ignored if the capture has been closed.
+   */
+  synchronized void add(String line) {
+    if (closed) {
+      LOG.debug("Discarding output after capture: {}", line);
+      return;
+    }
+    total++;
+    if (writer != null) {
+      write(line);
+    }
+    tail.addLast(line);
+    tailChars += line.length();
+    while (tail.size() > maxLines || tailChars > maxChars && tail.size() > 1) {
+      if (writer == null && !failed) {
+        spill();
+      }
+      tailChars -= tail.removeFirst().length();
+    }
+  }
+
+  /**
+   * Finishes the log file
+   *
+   * @param status The process exit status
+   * @return The captured output
+   */
+  synchronized Result result(int status) {
+    finish();
+    Result result = new Result(status, new ArrayList<>(tail), total, log);
+    // tied to the path rather than the result, as copies of the result share the path
+    spill.ifPresent(file -> {
+      String name = file.toString();
+      CLEANER.register(file, () -> discard(name));
+      // the result owns it now
+      log = Optional.empty();
+    });
+    spill = Optional.empty();
+    return result;
+  }
+
+  @Override
+  public synchronized void close() {
+    finish();
+    // there's no result to refer to the spill file, so we don't need it
+    spill.ifPresent(file -> discard(file.toString()));
+    spill = Optional.empty();
+  }
+
+  private void finish() {
+    closed = true;
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException ioe) {
+        fail(ioe);
+      }
+      writer = null;
+    }
+  }
+
+  private void spill() {
+    try {
+      Path temp = Files.createTempFile(spills, "steamdeploy-", ".log.gz");
+      SPILLS.add(temp.toString());
+      spill = Optional.of(temp);
+      log = spill;
+      LOG.debug("Output exceeds {} lines or {} characters, spilling to {}", maxLines, maxChars,
+          temp);
+      open(temp);
+    } catch (IOException ioe) {
+      fail(ioe);
+      return;
+    }
+    // nothing has been evicted yet, so the buffer holds everything so far
+    tail.forEach(this::write);
+  }
+
+  private void open(Path file) throws IOException {
+    QuietFiles.createDirectories(file.toAbsolutePath().getParent());
+    writer = new BufferedWriter(new OutputStreamWriter(
+        new GZIPOutputStream(Files.newOutputStream(file)), UTF_8));
+  }
+
+  private void write(String line) {
+    if (writer == null) {
+      return;
+    }
+    try {
+      writer.write(line);
+      writer.write('\n');
+    } catch (IOException ioe) {
+      fail(ioe);
+    }
+  }
+
+  /**
+   * Abandons the log file, as we can't trust it to hold the complete output. This is called on the
+   * thread that reads the process output, so it mustn't throw.
+   *
+   * @param ioe The cause of the failure
+   */
+  private void fail(IOException ioe) {
+    LOG.warn("Failed to write output to {}, only the last {} lines will be kept: {}",
+        log.orElse(spills), maxLines, ioe.toString());
+    failed = true;
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException suppressed) {
+        LOG.debug("Failed to close {}", log.orElse(spills), suppressed);
+      }
+      writer = null;
+    }
+    spill.ifPresent(file -> discard(file.toString()));
+    spill = Optional.empty();
+    log = Optional.empty();
+  }
+
+  private static void discard(String file) {
+    QuietFiles.recursiveDelete(Paths.get(file));
+    SPILLS.remove(file);
+  }
+}
@@ -12,8 +12,10 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
@@ -28,6 +30,7 @@ import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
  *   <li>Where the executable lives inside the download</li>
  *   <li>How to prepare the executable for use</li>
  *   <li>Where to look for the config file where authentication is cached</li>
+ *   <li>How to make copy-on-write clones of files</li>
  * </ul>
  */
 enum Platform {
@@ -51,6 +54,11 @@ enum Platform {
       return Paths.get(System.getProperty("user.home"))
           .resolve(".steam", "steam");
     }
+
+    @Override
+    public Optional<String[]> cloneCommand(List<Path> sources, Path directory) {
+      return Optional.of(cp(List.of("--reflink=always"), sources, directory));
+    }
   },
 
   MAC("https://steamcdn-a.akamaihd.net/client/installer/steamcmd_osx.tar.gz",
@@ -68,6 +76,12 @@ enum Platform {
     public Path steamHome(Path installation) {
       return Paths.get(System.getProperty("user.home"), "Library", "Application Support", "Steam");
     }
+
+    @Override
+    public Optional<String[]> cloneCommand(List<Path> sources, Path directory) {
+      // clonefile(2) on APFS
+      return Optional.of(cp(List.of("-c"), sources, directory));
+    }
   },
 
   WINDOWS("https://steamcdn-a.akamaihd.net/client/installer/steamcmd.zip",
@@ -90,7 +104,7 @@ enum Platform {
   };
 
   public final URL source;
-  private final BiConsumer<URL, Path> extractor;
+  private final BiConsumer<InputStream, Path> extractor;
   public final Path steamCmd;
 
   Platform(String source,
@@ -105,7 +119,53 @@ enum Platform {
   }
 
   public void installTo(Optional<URL> source, Path destination) {
-    extractor.accept(source.orElse(this.source), destination);
+    installTo(source, destination, 1);
+  }
+
+  /**
+   * Downloads and extracts steamcmd
+   *
+   * @param source      The download URL, if the platform default is not to be used
+   * @param destination Where to extract it to
+   * @param connections The maximum number of concurrent connections to download with
+   */
+  public void installTo(Optional<URL> source, Path destination, int connections) {
+    Path archive = destination.resolveSibling(destination.getFileName() + ".archive");
+    try {
+      new Download(source.orElse(this.source))
+          .connections(connections)
+          .to(archive);
+      extract(archive, destination);
+    } finally {
+      QuietFiles.recursiveDelete(archive);
+      Download.discard(archive);
+    }
+  }
+
+  /**
+   * @param archive     A previously-downloaded archive
+   * @param destination Where to extract it to
+   */
+  public void extract(Path archive, Path destination) {
+    Events.Extract event = new Events.Extract();
+    event.begin();
+    try (InputStream in = Files.newInputStream(archive)) {
+      extractor.accept(in, destination);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    if (event.shouldCommit()) {
+      event.archive = archive.toString();
+      event.archiveBytes = QuietFiles.wrap(() -> Files.size(archive));
+      event.destination = destination.toString();
+      Manifest.scan(destination, false).entries().values().stream()
+          .filter(e -> !e.isDirectory())
+          .forEach(e -> {
+            event.files++;
+            event.bytes += e.size();
+          });
+      event.commit();
+    }
   }
 
   /**
@@ -118,6 +178,26 @@ enum Platform {
     // default to no-op
   }
 
+  /**
+   * @param sources   The files to clone
+   * @param directory Where the clones should be created, with the same names as the sources
+   * @return The command that creates copy-on-write clones of the source files, or empty if we don't
+   * know how to do that on this platform
+   */
+  public Optional<String[]> cloneCommand(List<Path> sources, Path directory) {
+    return Optional.empty();
+  }
+
+  private static String[] cp(List<String> options, List<Path> sources, Path directory) {
+    return Stream.of(
+            Stream.of("cp"),
+            options.stream(),
+            sources.stream().map(s -> s.toAbsolutePath().toString()),
+            Stream.of(directory.toAbsolutePath().toString()))
+        .flatMap(s -> s)
+        .toArray(String[]::new);
+  }
+
   public static Platform fromOsName() {
     String osName = System.getProperty("os.name");
     for (Platform p : values()) {
@@ -128,7 +208,7 @@ enum Platform {
     throw new IllegalStateException("Failed to detect platform from os.name '" + osName + "'");
   }
 
-  private static BiConsumer<URL, Path> extractorFor(String source) {
+  private static BiConsumer<InputStream, Path> extractorFor(String source) {
     if (source.endsWith(".zip")) {
       return Platform::extractZip;
     } else if (source.endsWith(".tar.gz")) {
@@ -137,9 +217,8 @@ enum Platform {
     throw new IllegalStateException("Failed to determine extractor for " + source);
   }
 
-  private static void extractZip(URL zip, Path destination) {
-    try (InputStream in = zip.openStream();
-        ZipInputStream zin = new ZipInputStream(in)) {
+  private static void extractZip(InputStream in, Path destination) {
+    try (ZipInputStream zin = new ZipInputStream(in)) {
       String canonDestination = destination.toFile().getCanonicalPath() + File.separator;
       ZipEntry ze;
       while ((ze = zin.getNextEntry()) != null) {
@@ -161,9 +240,8 @@ enum Platform {
     }
   }
 
-  private static void extractTarGz(URL targz, Path destination) {
-    try (InputStream in = targz.openStream();
-        GzipCompressorInputStream gz = new GzipCompressorInputStream(in);
+  private static void extractTarGz(InputStream in, Path destination) {
+    try (GzipCompressorInputStream gz = new GzipCompressorInputStream(in);
         TarArchiveInputStream tar = new TarArchiveInputStream(gz)) {
       String canonDestination = destination.toFile().getCanonicalPath() + File.separator;
       TarArchiveEntry tae;
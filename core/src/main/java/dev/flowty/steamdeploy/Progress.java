@@ -0,0 +1,72 @@
+package dev.flowty.steamdeploy;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Structured events parsed from steamcmd's console output as it arrives. The console format is
+ * undocumented, so parsing is best-effort: lines that aren't recognised are simply not reported.
+ *
+ * @see SteamCMD#withListener(java.util.function.Consumer)
+ */
+public sealed interface Progress {
+
+  /**
+   * A login attempt has concluded
+   *
+   * @param user    The user name
+   * @param success {@code true} if login succeeded
+   * @param status  The status that steamcmd reported, e.g.: <code>OK</code> or
+   *                <code>FAILED (Invalid Password)</code>
+   */
+  record Login(String user, boolean success, String status) implements Progress {
+
+  }
+
+  /**
+   * steamcmd has started building a depot
+   *
+   * @param depotId The depot ID
+   */
+  record Depot(long depotId) implements Progress {
+
+  }
+
+  /**
+   * The phases of depot building that report progress
+   */
+  enum Phase {
+    /**
+     * Content is being scanned and chunked
+     */
+    SCANNING,
+    /**
+     * Content chunks are being uploaded
+     */
+    UPLOADING
+  }
+
+  /**
+   * Depot content is being processed
+   *
+   * @param phase          What is being done
+   * @param bytes          How many bytes have been processed, as reported by steamcmd
+   * @param percent        How complete the phase is, as reported by steamcmd
+   * @param bytesPerSecond The average rate of processing since we first saw this phase
+   * @param eta            The estimated time until the phase is complete, if it can be estimated
+   */
+  record Transfer(Phase phase, long bytes, double percent, double bytesPerSecond,
+                  Optional<Duration> eta) implements Progress {
+
+  }
+
+  /**
+   * An app build has completed successfully
+   *
+   * @param appId   The app ID
+   * @param buildId The ID of the new build
+   */
+  record Build(long appId, long buildId) implements Progress {
+
+  }
+}
@@ -0,0 +1,120 @@
+package dev.flowty.steamdeploy;
+
+import dev.flowty.steamdeploy.Progress.Phase;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Turns lines of steamcmd output into {@link Progress} events
+ */
+class ProgressParser implements Consumer<String> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProgressParser.class);
+
+  private static final Pattern ANSI = Pattern.compile("\u001B\\[[0-9;]*[A-Za-z]");
+  private static final Pattern LOGIN = Pattern.compile(
+      "Logging in user '([^']*)'.*?\\.\\.\\.\\s*(OK|FAILED.*)$");
+  private static final Pattern DEPOT = Pattern.compile("Building depot (\\d+)");
+  private static final Pattern TRANSFER = Pattern.compile(
+      "(Scanning|Uploading|Uploaded) content\\s+([\\d,]+(?:\\.\\d+)?)\\s*([KMGT]?B|bytes)"
+          + "\\s*:\\s*(\\d+(?:\\.\\d+)?)\\s*%",
+      Pattern.CASE_INSENSITIVE);
+  private static final Pattern BUILD = Pattern.compile(
+      "Successfully finished AppID (\\d+) build \\(BuildID (\\d+)\\)");
+
+  private final Consumer<Progress> listener;
+  private final InstantSource clock;
+
+  private Phase phase;
+  private Instant phaseStart;
+  private long phaseStartBytes;
+
+  /**
+   * @param listener Where to send events
+   * @param clock    The source of time, for rate and ETA calculations
+   */
+  ProgressParser(Consumer<Progress> listener, InstantSource clock) {
+    this.listener = listener;
+    this.clock = clock;
+  }
+
+  @Override
+  public void accept(String raw) {
+    String line = ANSI.matcher(raw).replaceAll("").strip();
+    Progress event = parse(line);
+    if (event != null) {
+      try {
+        listener.accept(event);
+      } catch (RuntimeException re) {
+        LOG.warn("Progress listener failed on {}", event, re);
+      }
+    }
+  }
+
+  private Progress parse(String line) {
+    Matcher m = TRANSFER.matcher(line);
+    if (m.find()) {
+      return transfer(
+          m.group(1).toLowerCase(Locale.ROOT).startsWith("scan") ? Phase.SCANNING : Phase.UPLOADING,
+          bytes(m.group(2), m.group(3)),
+          Double.parseDouble(m.group(4)));
+    }
+    m = DEPOT.matcher(line);
+    if (m.find()) {
+      phase = null;
+      return new Progress.Depot(Long.parseLong(m.group(1)));
+    }
+    m = LOGIN.matcher(line);
+    if (m.find()) {
+      return new Progress.Login(m.group(1), "OK".equals(m.group(2)), m.group(2));
+    }
+    m = BUILD.matcher(line);
+    if (m.find()) {
+      return new Progress.Build(Long.parseLong(m.group(1)), Long.parseLong(m.group(2)));
+    }
+    return null;
+  }
+
+  private Progress transfer(Phase p, long bytes, double percent) {
+    Instant now = clock.instant();
+    if (p != phase) {
+      phase = p;
+      phaseStart = now;
+      phaseStartBytes = bytes;
+    }
+    double seconds = Duration.between(phaseStart, now).toNanos() / 1e9;
+    double rate = seconds > 0 ? (bytes - phaseStartBytes) / seconds : 0;
+    Optional<Duration> eta = Optional.empty();
+    if (seconds > 0 && percent > 0 && percent < 100) {
+      eta = Optional.of(Duration.ofMillis((long) (seconds * 1000 * (100 - percent) / percent)));
+    } else if (percent >= 100) {
+      eta = Optional.of(Duration.ZERO);
+    }
+    return new Progress.Transfer(p, bytes, percent, rate, eta);
+  }
+
+  /**
+   * @param amount The numeric part of a size, e.g.: <code>1,234.5</code>
+   * @param unit   The unit of the size, e.g.: <code>MB</code>
+   * @return The size in bytes
+   */
+  static long bytes(String amount, String unit) {
+    double value = Double.parseDouble(amount.replace(",", ""));
+    int power = switch (unit.toUpperCase(Locale.ROOT)) {
+      case "KB" -> 1;
+      case "MB" -> 2;
+      case "GB" -> 3;
+      case "TB" -> 4;
+      default -> 0;
+    };
+    return (long) (value * Math.pow(1024, power));
+  }
+}
@@ -8,8 +8,22 @@ import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileAttribute;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A wildly successful copypasta in my codebases: wrappers around {@link Files} methods that convert
@@ -18,6 +32,24 @@ import java.util.stream.Stream;
  */
 public class QuietFiles {
 
+  private static final Logger LOG = LoggerFactory.getLogger(QuietFiles.class);
+
+  /**
+   * Infixed into the names of files that are awaiting deletion
+   */
+  private static final String TOMBSTONE = ".tombstone-";
+
+  /**
+   * Deletes tombstones in the background
+   */
+  private static final ForkJoinPool REAPER = new ForkJoinPool(
+      Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+
+  /**
+   * The tombstones that are currently being deleted
+   */
+  private static final Set<Path> REAPING = ConcurrentHashMap.newKeySet();
+
   /**
    * An operation that can throw an {@link IOException}
    *
@@ -75,6 +107,170 @@ public class QuietFiles {
     }
   }
 
+  /**
+   * Deletes a file or directory in the background. The path is atomically renamed to a tombstone
+   * and this method returns immediately, leaving the tombstone to be deleted on another thread. If
+   * the rename fails then the path is deleted synchronously.
+   * <p>
+   * Tombstones that were orphaned by an earlier process exiting before deletion completed can be
+   * found and deleted with {@link #reapTombstones(Path)}.
+   * </p>
+   *
+   * @param path The path of the file/dir to delete
+   */
+  public static void reap(Path path) {
+    if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+      return;
+    }
+    Path tombstone = path.resolveSibling(path.getFileName() + TOMBSTONE + UUID.randomUUID());
+    try {
+      Files.move(path, tombstone, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException ioe) {
+      LOG.warn("Failed to tombstone {}, deleting synchronously: {}", path, ioe.toString());
+      recursiveDelete(path);
+      return;
+    }
+    bury(tombstone);
+  }
+
+  /**
+   * Deletes, in the background, any tombstones that have been left behind in a directory
+   *
+   * @param dir The directory to search for tombstones
+   */
+  public static void reapTombstones(Path dir) {
+    if (!Files.isDirectory(dir)) {
+      return;
+    }
+    try (Stream<Path> children = list(dir)) {
+      children
+          .filter(child -> child.getFileName().toString().contains(TOMBSTONE))
+          .forEach(QuietFiles::bury);
+    }
+  }
+
+  /**
+   * Waits for background deletions to complete
+   *
+   * @param timeout How long to wait for
+   * @return {@code true} if all deletions are complete
+   */
+  static boolean awaitReaping(Duration timeout) {
+    Instant deadline = Instant.now().plus(timeout);
+    while (!REAPING.isEmpty()) {
+      if (Instant.now().isAfter(deadline)) {
+        return false;
+      }
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void bury(Path tombstone) {
+    Path key = tombstone.toAbsolutePath().normalize();
+    if (!REAPING.add(key)) {
+      // already on it
+      return;
+    }
+    LOG.debug("Reaping {}", tombstone);
+    REAPER.execute(() -> {
+      try {
+        new Reap(tombstone).invoke();
+      } catch (RuntimeException e) {
+        // it'll get picked up by reapTombstones() next time
+        LOG.warn("Failed to reap {}", tombstone, e);
+      } finally {
+        REAPING.remove(key);
+      }
+    });
+  }
+
+  /**
+   * Deletes a directory tree, with subdirectories deleted in parallel
+   */
+  private static class Reap extends RecursiveAction {
+
+    private final Path path;
+
+    Reap(Path path) {
+      this.path = path;
+    }
+
+    @Override
+    protected void compute() {
+      if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+        List<Reap> subdirs = new ArrayList<>();
+        try (Stream<Path> children = list(path)) {
+          for (Path child : (Iterable<Path>) children::iterator) {
+            if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+              subdirs.add(new Reap(child));
+            } else {
+              wrap(() -> Files.deleteIfExists(child));
+            }
+          }
+        }
+        invokeAll(subdirs);
+      }
+      wrap(() -> Files.deleteIfExists(path));
+    }
+  }
+
+  /**
+   * Writes a file via a temporary sibling and an atomic move, so that concurrent readers never see
+   * a partially-written file
+   *
+   * @param file   The file to write
+   * @param writer Writes the content to the path that it is given
+   */
+  static void replace(Path file, Consumer<Path> writer) {
+    replace(file, writer, temp -> true);
+  }
+
+  /**
+   * Writes a file via a temporary sibling and an atomic move, so that concurrent readers never see
+   * a partially-written file
+   *
+   * @param file   The file to write
+   * @param writer Writes the content to the path that it is given
+   * @param wanted Decides, given the written content, whether to go ahead with the replacement
+   * @return {@code true} if the file was replaced
+   */
+  static boolean replace(Path file, Consumer<Path> writer, Predicate<Path> wanted) {
+    createDirectories(file.toAbsolutePath().getParent());
+    Path temp = file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+    try {
+      writer.accept(temp);
+      if (!wanted.test(temp)) {
+        return false;
+      }
+      move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    } finally {
+      recursiveDelete(temp);
+    }
+  }
+
+  /**
+   * Checks that a name is safe to use as a single path element
+   *
+   * @param name A name, e.g.: of a workspace
+   * @param what What is named, for the error message
+   * @return The name
+   * @throws IllegalArgumentException if the name contains anything but word characters, dots and
+   *                                  hyphens, or is nothing but dots
+   */
+  static String checkName(String name, String what) {
+    if (!name.matches("[\\w.-]+") || name.matches("\\.+")) {
+      throw new IllegalArgumentException("Bad " + what + " '" + name + "'");
+    }
+    return name;
+  }
+
   /**
    * @param dir  the directory to create
    * @param attr an optional list of file attributes to set atomically when creating the directory
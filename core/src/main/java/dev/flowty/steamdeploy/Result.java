@@ -1,7 +1,97 @@
 package dev.flowty.steamdeploy;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The outcome of a command
+ *
+ * @param status The exit status
+ * @param tail   The last lines of output
+ * @param lines  The total number of lines of output
+ * @param log    A gzipped file that holds the complete output, if it was too large to hold in
+ *               memory or was explicitly captured
+ */
+public record Result(int status, List<String> tail, long lines, Optional<Path> log) {
+
+  /**
+   * @param status The exit status
+   * @param stdOut The complete output
+   */
+  public Result(int status, List<String> stdOut) {
+    this(status, stdOut, stdOut.size(), Optional.empty());
+  }
+
+  /**
+   * @param status The new exit status
+   * @return A copy of this result with a different status. It shares the {@link #log()}, which
+   * will not be deleted while either result is reachable
+   */
+  public Result withStatus(int status) {
+    return new Result(status, tail, lines, log);
+  }
+
+  /**
+   * @return {@code true} if {@link #tail()} does not hold all of the output
+   */
+  public boolean truncated() {
+    return lines > tail.size();
+  }
+
+  /**
+   * @return The tail of the output, formatted for logging
+   */
+  public String abbreviated() {
+    StringBuilder sb = new StringBuilder();
+    if (truncated()) {
+      sb.append("  ... ").append(lines - tail.size()).append(" earlier lines");
+      log.ifPresent(l -> sb.append(", complete output in ").append(l.toAbsolutePath()));
+      sb.append("\n");
+    }
+    tail.forEach(line -> sb.append("  ").append(line).append("\n"));
+    return sb.toString();
+  }
 
-public record Result(int status, List<String> stdOut) {
+  /**
+   * Note that this reads the entire output into memory, which could be large. Prefer
+   * {@link #tail()} or {@link #output()} where possible.
+   *
+   * @return The complete output
+   */
+  public List<String> stdOut() {
+    try (Stream<String> output = output()) {
+      return output.toList();
+    }
+  }
 
+  /**
+   * Streams the complete output without holding it all in memory
+   *
+   * @return The complete output, which must be closed after use
+   */
+  public Stream<String> output() {
+    if (!truncated() || log.isEmpty()) {
+      return tail.stream();
+    }
+    try {
+      BufferedReader br = new BufferedReader(new InputStreamReader(
+          new GZIPInputStream(Files.newInputStream(log.get())), UTF_8));
+      return br.lines().onClose(() -> QuietFiles.wrap(() -> {
+        br.close();
+        return null;
+      }));
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
 }
@@ -0,0 +1,92 @@
+package dev.flowty.steamdeploy;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.random.RandomGenerator;
+import java.util.stream.Collectors;
+
+/**
+ * Controls how failed steamcmd commands are retried. Delays grow exponentially between attempts,
+ * with a random reduction so that concurrent builds don't retry in lockstep.
+ */
+public class Retry {
+
+  private int attempts = 1;
+  private Duration delay = Duration.ofSeconds(30);
+  private Duration maxDelay = Duration.ofMinutes(10);
+  private double jitter = 0.5;
+  private Set<Failure> on = Arrays.stream(Failure.values())
+      .filter(Failure::retryable)
+      .collect(Collectors.toCollection(() -> EnumSet.noneOf(Failure.class)));
+
+  int attempts() {
+    return attempts;
+  }
+
+  /**
+   * @param attempts How many times to run a command before giving up. The default of 1 means that
+   *                 failures are not retried
+   */
+  public void attempts(int attempts) {
+    if (attempts < 1) {
+      throw new IllegalArgumentException("attempts must be positive, not " + attempts);
+    }
+    this.attempts = attempts;
+  }
+
+  /**
+   * @param delay How long to wait before the first retry. Each subsequent wait is twice as long
+   */
+  public void delay(Duration delay) {
+    this.delay = delay;
+  }
+
+  /**
+   * @param maxDelay The longest that we'll wait between attempts
+   */
+  public void maxDelay(Duration maxDelay) {
+    this.maxDelay = maxDelay;
+  }
+
+  /**
+   * @param jitter The maximum proportion, between 0 and 1, by which each delay is randomly reduced
+   */
+  public void jitter(double jitter) {
+    if (jitter < 0 || jitter > 1) {
+      throw new IllegalArgumentException("jitter must be between 0 and 1, not " + jitter);
+    }
+    this.jitter = jitter;
+  }
+
+  /**
+   * @param failures The categories of failure to retry. Defaults to those that are
+   *                 {@link Failure#retryable()}
+   */
+  public void on(Failure... failures) {
+    on = EnumSet.noneOf(Failure.class);
+    on.addAll(Arrays.asList(failures));
+  }
+
+  /**
+   * @param failure The failure of an attempt
+   * @param attempt How many attempts have been made
+   * @return {@code true} if another attempt should be made
+   */
+  boolean retries(Failure failure, int attempt) {
+    return attempt < attempts && on.contains(failure);
+  }
+
+  /**
+   * @param attempt How many attempts have been made
+   * @param random  The source of jitter
+   * @return How long to wait before the next attempt
+   */
+  Duration backoff(int attempt, RandomGenerator random) {
+    // cap the exponent so the arithmetic can't overflow
+    Duration exponential = delay.multipliedBy(1L << Math.min(attempt - 1, 30));
+    Duration capped = exponential.compareTo(maxDelay) > 0 ? maxDelay : exponential;
+    return Duration.ofMillis(Math.round(capped.toMillis() * (1 - jitter * random.nextDouble())));
+  }
+}
@@ -0,0 +1,329 @@
+package dev.flowty.steamdeploy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A long-lived, logged-in steamcmd process. We drive the interactive console, detecting command
+ * completion by the reappearance of the <code>Steam&gt;</code> prompt.
+ */
+public class Session implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Session.class);
+
+  private static final String PROMPT = "Steam>";
+  private static final Pattern ANSI = Pattern.compile("\u001B\\[[0-9;]*[A-Za-z]");
+  private static final Pattern LEADING_ANSI = Pattern.compile("^(" + ANSI.pattern() + ")+");
+  private static final Pattern BUILD_SUCCESS = Pattern.compile(
+      "Successfully finished AppID \\d+ build");
+  private static final Consumer<Progress> NO_TAP = p -> {
+    // nothing to do outside of deployments
+  };
+
+  /**
+   * The things that can happen on the process' output
+   */
+  private enum Kind {
+    LINE, PROMPT, END
+  }
+
+  private record Output(Kind kind, String line) {
+
+  }
+
+  private final SteamCMD steamCMD;
+  private final Timeouts timeouts;
+  private final Process process;
+  private final Writer stdin;
+  private final BlockingQueue<Output> output = new LinkedBlockingQueue<>();
+  private final ProgressParser progress;
+  /**
+   * Receives progress events during a deployment
+   */
+  private volatile Consumer<Progress> tap = NO_TAP;
+
+  /**
+   * Starts steamcmd and waits for login to complete
+   *
+   * @param steamCMD The installation
+   * @param auth     How to authenticate to steam
+   * @param timeouts Command timeout thresholds
+   */
+  Session(SteamCMD steamCMD, Auth auth, Timeouts timeouts) {
+    this.steamCMD = steamCMD;
+    this.timeouts = timeouts;
+    progress = steamCMD.progressParser(p -> tap.accept(p));
+    steamCMD.injectAuth(auth);
+
+    LOG.info("Starting session");
+    String[] cmd = Stream.of(
+            steamCMD.executable().toAbsolutePath().toString(),
+            "+login", auth.username(), auth.password().orElse(null))
+        .filter(Objects::nonNull)
+        .toArray(String[]::new);
+    try {
+      process = new ProcessBuilder(cmd)
+          .redirectErrorStream(true)
+          .start();
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    stdin = process.outputWriter();
+    Thread.ofVirtual().name("steamcmd-session").start(this::read);
+
+    Result login = awaitPrompt("login", new OutputCapture());
+    if (login.status() != 0
+        || login.stdOut().stream().map(Session::strip).anyMatch(l -> l.contains("FAILED"))) {
+      close();
+      throw new IllegalStateException("login failed with status " + login.status() + "\n"
+          + login.abbreviated());
+    }
+    steamCMD.validated(auth, login);
+  }
+
+  /**
+   * Runs a console command
+   *
+   * @param command The command and its arguments
+   * @return The output of the command. The status will be zero unless the command timed out or the
+   * steamcmd process exited
+   */
+  public Result run(String... command) {
+    return run(new OutputCapture(), command);
+  }
+
+  private synchronized Result run(OutputCapture capture, String... command) {
+    if (!process.isAlive()) {
+      throw new IllegalStateException("session has ended");
+    }
+    String line = Stream.of(command)
+        .map(arg -> arg.matches(".*\\s.*") ? "\"" + arg + "\"" : arg)
+        .collect(Collectors.joining(" "));
+    LOG.debug("Running {}", line);
+    try {
+      stdin.write(line);
+      stdin.write("\n");
+      stdin.flush();
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    return awaitPrompt(command[0], capture);
+  }
+
+  /**
+   * Runs an app deployment
+   *
+   * @param source    The directory that contains the application files
+   * @param appBuild  The application build script
+   * @param workspace Where to stage the application
+   * @return command results
+   */
+  public Result deploy(Path source, InjectableFile appBuild, Workspace workspace) {
+    BuildReport br = steamCMD.newReport();
+    br.time("ingest", () -> steamCMD.ingestApplication(source, workspace));
+    return deploy(appBuild, workspace, br);
+  }
+
+  /**
+   * Runs a deployment of several depots in a single build
+   *
+   * @param depots    The depots to stage
+   * @param appBuild  The application build script
+   * @param workspace Where to stage the depots
+   * @return command results
+   * @see SteamCMD#deploy(Auth, List, InjectableFile, Workspace)
+   */
+  public Result deploy(List<Depot> depots, InjectableFile appBuild, Workspace workspace) {
+    BuildReport br = steamCMD.newReport();
+    br.time("ingest", () -> steamCMD.ingestDepots(depots, workspace));
+    return deploy(appBuild, workspace, br);
+  }
+
+  /**
+   * Runs an app deployment without staging the application files
+   *
+   * @param appBuild  The application build script
+   * @param workspace Where to write the build script
+   * @return command results
+   * @see SteamCMD#deploy(Auth, InjectableFile)
+   */
+  public Result deploy(InjectableFile appBuild, Workspace workspace) {
+    return deploy(appBuild, workspace, steamCMD.newReport());
+  }
+
+  private synchronized Result deploy(InjectableFile appBuild, Workspace workspace,
+      BuildReport br) {
+    Path script = br.time("script", () -> SteamCMD.generateBuildScript(appBuild, workspace));
+    steamCMD.prepareReport(br, script, workspace);
+    LOG.info("Building app");
+    Result result;
+    tap = br;
+    try {
+      result = br.time("build", () -> run(
+          new OutputCapture(OutputCapture.TAIL_LINES, OutputCapture.TAIL_CHARS,
+              Optional.of(workspace.log())),
+          "run_app_build", script.toAbsolutePath().toString()));
+    } finally {
+      tap = NO_TAP;
+    }
+    // the success message is at the very end of the build output
+    boolean success = result.tail().stream()
+        .map(Session::strip)
+        .anyMatch(l -> BUILD_SUCCESS.matcher(l).find());
+    if (result.status() == 0 && !success) {
+      result = result.withStatus(1);
+    }
+    steamCMD.writeReport(br, result);
+    return SteamCMD.checkBuild(result);
+  }
+
+  /**
+   * Quits steamcmd
+   */
+  @Override
+  public synchronized void close() {
+    if (process.isAlive()) {
+      LOG.info("Ending session");
+      try {
+        stdin.write("quit\n");
+        stdin.flush();
+        if (!process.waitFor(timeouts.inactivity().toMillis(), TimeUnit.MILLISECONDS)) {
+          LOG.warn("steamcmd failed to quit");
+        }
+      } catch (IOException ioe) {
+        LOG.warn("Failed to quit", ioe);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      } finally {
+        process.destroyForcibly();
+      }
+    }
+  }
+
+  private void read() {
+    StringBuilder line = new StringBuilder();
+    boolean afterPrompt = false;
+    boolean afterReturn = false;
+    try (Reader r = process.inputReader()) {
+      int c;
+      while ((c = r.read()) != -1) {
+        if (c == '\n' && afterReturn && line.isEmpty()) {
+          // the second half of a CRLF
+          afterReturn = false;
+        } else if (c == '\n' || c == '\r') {
+          // progress updates are rewritten in place with a bare carriage return
+          afterReturn = c == '\r';
+          if (afterPrompt) {
+            // formatting codes that trail the prompt belong to the prompt
+            String stripped = LEADING_ANSI.matcher(line).replaceFirst("");
+            line.setLength(0);
+            line.append(stripped);
+            afterPrompt = false;
+          }
+          emit(Kind.LINE, line);
+        } else {
+          afterReturn = false;
+          line.append((char) c);
+          // the prompt is not followed by a newline, so we have to check as we go
+          if ((c == '>' || c == 'm') && strip(line.toString()).endsWith(PROMPT)) {
+            String preceding = line.substring(0, line.lastIndexOf(PROMPT));
+            if (!strip(preceding).isBlank()) {
+              emit(Kind.LINE, new StringBuilder(preceding));
+            }
+            line.setLength(0);
+            emit(Kind.PROMPT, line);
+            afterPrompt = true;
+          }
+        }
+      }
+    } catch (IOException ioe) {
+      LOG.error("Failed to stream session output", ioe);
+    } finally {
+      if (!line.isEmpty()) {
+        emit(Kind.LINE, line);
+      }
+      emit(Kind.END, line);
+    }
+  }
+
+  private void emit(Kind kind, StringBuilder line) {
+    output.add(new Output(kind, line.toString()));
+    line.setLength(0);
+  }
+
+  private Result awaitPrompt(String command, OutputCapture capture) {
+    Events.Command event = new Events.Command();
+    event.begin();
+    long start = System.nanoTime();
+    Result result = awaitOutput(command, capture);
+    if (event.shouldCommit()) {
+      event.command = command;
+      event.status = result.status();
+      event.lines = result.lines();
+      // we do nothing but wait while a session command runs
+      event.waited = System.nanoTime() - start;
+      event.commit();
+    }
+    return result;
+  }
+
+  private Result awaitOutput(String command, OutputCapture capture) {
+    Instant deadline = Instant.now().plus(timeouts.total());
+    try {
+      while (true) {
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        Duration wait = remaining.compareTo(timeouts.inactivity()) < 0
+            ? remaining
+            : timeouts.inactivity();
+        Output o = wait.isNegative()
+            ? null
+            : output.poll(wait.toMillis(), TimeUnit.MILLISECONDS);
+        if (o == null) {
+          LOG.error("Killing session due to timeout on {}", command);
+          process.destroyForcibly();
+          return capture.result(-1);
+        }
+        switch (o.kind()) {
+          case LINE -> {
+            LOG.debug("\t{}", o.line());
+            capture.add(o.line());
+            progress.accept(o.line());
+          }
+          case PROMPT -> {
+            return capture.result(0);
+          }
+          case END -> {
+            int status = process.waitFor();
+            LOG.error("steamcmd exited with status {} during {}", status, command);
+            return capture.result(status != 0 ? status : -1);
+          }
+        }
+      }
+    } catch (InterruptedException ie) {
+      capture.close();
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("unexpected", ie);
+    }
+  }
+
+  private static String strip(String line) {
+    return ANSI.matcher(line).replaceAll("");
+  }
+}
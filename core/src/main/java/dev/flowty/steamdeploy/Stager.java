@@ -0,0 +1,161 @@
+package dev.flowty.steamdeploy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Puts files into the staging area according to a {@link Staging} strategy. Hard links are made
+ * file by file, and abandoned for the rest of the ingestion if one fails, as that means the
+ * filesystem doesn't support them. Clones are made by one process per batch of files in the same
+ * directory, and a failed batch is copied instead.
+ */
+class Stager {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Stager.class);
+
+  /**
+   * The most files that we'll clone in a single command, to keep within argument length limits
+   */
+  private static final int CLONE_BATCH = 256;
+
+  /**
+   * The ways in which a file can be staged
+   */
+  enum Technique {
+    LINK, CLONE, COPY
+  }
+
+  private final Platform platform;
+  private volatile boolean link;
+  private boolean clone;
+  private boolean cloned;
+  private final Map<Technique, LongAdder> counts = new EnumMap<>(Technique.class);
+
+  /**
+   * @param staging  The staging strategy
+   * @param platform The current platform
+   */
+  Stager(Staging staging, Platform platform) {
+    this.platform = platform;
+    link = staging.link;
+    clone = staging.clone;
+    for (Technique t : Technique.values()) {
+      counts.put(t, new LongAdder());
+    }
+  }
+
+  /**
+   * Removes any existing file at the destination and tries to hard-link the source there
+   *
+   * @param source The file to stage
+   * @param sink   Where to stage it
+   * @return {@code true} if the file was linked, {@code false} if it still needs to be staged
+   */
+  boolean link(Path source, Path sink) {
+    QuietFiles.wrap(() -> Files.deleteIfExists(sink));
+
+    if (link) {
+      try {
+        Files.createLink(sink, source);
+        counts.get(Technique.LINK).increment();
+        return true;
+      } catch (IOException | UnsupportedOperationException e) {
+        LOG.warn("Failed to link {}, falling back for the remaining files: {}", source, e.toString());
+        link = false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Clones files, batching those that share source and destination directories into a single
+   * command
+   *
+   * @param files  The files to stage
+   * @param source Extracts the source path of a file
+   * @param sink   Extracts the destination path of a file
+   * @param <T>    The file type
+   * @return The files that were not cloned, and still need to be staged
+   */
+  <T> List<T> clone(List<T> files, Function<T, Path> source, Function<T, Path> sink) {
+    if (!clone || files.isEmpty()) {
+      return files;
+    }
+    Map<List<Path>, List<T>> batches = new LinkedHashMap<>();
+    List<T> remaining = new ArrayList<>();
+    for (T file : files) {
+      Path src = source.apply(file);
+      Path dst = sink.apply(file);
+      if (src.getFileName().equals(dst.getFileName())) {
+        batches.computeIfAbsent(List.of(src.toAbsolutePath().getParent(),
+                dst.toAbsolutePath().getParent()), k -> new ArrayList<>())
+            .add(file);
+      } else {
+        remaining.add(file);
+      }
+    }
+
+    for (Map.Entry<List<Path>, List<T>> batch : batches.entrySet()) {
+      List<T> group = batch.getValue();
+      for (int i = 0; i < group.size(); i += CLONE_BATCH) {
+        List<T> chunk = group.subList(i, Math.min(group.size(), i + CLONE_BATCH));
+        if (!clone) {
+          remaining.addAll(chunk);
+          continue;
+        }
+        Optional<String[]> command = platform.cloneCommand(
+            chunk.stream().map(source).toList(), batch.getKey().get(1));
+        if (command.isPresent() && CommandLine.here().run(command.get()).status() == 0) {
+          counts.get(Technique.CLONE).add(chunk.size());
+          cloned = true;
+          continue;
+        }
+        if (cloned) {
+          LOG.warn("Failed to clone {} files into {}, copying them instead",
+              chunk.size(), batch.getKey().get(1));
+        } else {
+          // it's never worked, so it's probably not supported
+          LOG.warn("Failed to clone into {}, falling back for the remaining files",
+              batch.getKey().get(1));
+          clone = false;
+        }
+        remaining.addAll(chunk);
+      }
+    }
+    return remaining;
+  }
+
+  /**
+   * Copies a file, replacing any partial clone at the destination
+   *
+   * @param source The file to stage
+   * @param sink   Where to stage it
+   */
+  void copy(Path source, Path sink) {
+    QuietFiles.copy(source, sink, StandardCopyOption.REPLACE_EXISTING);
+    counts.get(Technique.COPY).increment();
+  }
+
+  /**
+   * @return A human-readable summary of how files were staged
+   */
+  String summary() {
+    return counts.entrySet().stream()
+        .filter(e -> e.getValue().sum() > 0)
+        .map(e -> e.getKey().name().toLowerCase() + "=" + e.getValue().sum())
+        .collect(Collectors.joining(", ", "[", "]"));
+  }
+}
@@ -0,0 +1,39 @@
+package dev.flowty.steamdeploy;
+
+/**
+ * Strategies for getting application files into the staging area
+ */
+public enum Staging {
+
+  /**
+   * Byte-for-byte copies. Slow and doubles the disk footprint of the application, but works
+   * everywhere.
+   */
+  COPY(false, false),
+
+  /**
+   * Hard links, falling back to copies if the application and the staging area are not on the same
+   * filesystem. Staged files share storage with the application files, so this is very fast and
+   * uses no extra disk space.
+   */
+  LINK(true, false),
+
+  /**
+   * Copy-on-write clones, on filesystems that support them (e.g. btrfs, XFS, APFS), falling back to
+   * copies otherwise.
+   */
+  REFLINK(false, true),
+
+  /**
+   * Hard links if possible, then clones, then copies
+   */
+  AUTO(true, true);
+
+  final boolean link;
+  final boolean clone;
+
+  Staging(boolean link, boolean clone) {
+    this.link = link;
+    this.clone = clone;
+  }
+}
@@ -4,9 +4,18 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.InstantSource;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,12 +28,19 @@ public class SteamCMD {
 
   private static final Logger LOG = LoggerFactory.getLogger(SteamCMD.class);
 
-  private static final Path CONTENT_SUBDIR = Paths.get("content");
-  private static final Path SCRIPTS_SUBDIR = Paths.get("scripts");
+  private static final Path WORKSPACES_SUBDIR = Paths.get("workspaces");
+  static final Path INSTALLED_MARKER = Paths.get(".steamdeploy-installed");
 
   private final Platform platform;
   private final Path directory;
+  private final Workspace defaultWorkspace;
+  private final LoginCache logins;
   private final Timeouts timeouts = new Timeouts();
+  private final Retry retry = new Retry();
+  private final Ingestion ingestion = new Ingestion();
+  private final List<Consumer<Progress>> listeners = new CopyOnWriteArrayList<>();
+  private Optional<Path> report = Optional.empty();
+  private Duration loginFreshness = Duration.ZERO;
 
   /**
    * Builds a new steam console client, downloading the executables from the standard source URLs if
@@ -43,8 +59,27 @@ public class SteamCMD {
    * @param destination The installation directory
    */
   public SteamCMD(Optional<URL> source, Path destination) {
+    this(source, destination, Optional.empty());
+  }
+
+  /**
+   * Builds a new steam console client, populating it from a cache of SDK downloads if necessary
+   *
+   * @param source      The download URL
+   * @param destination The installation directory
+   * @param cache       The SDK download cache
+   */
+  public SteamCMD(Optional<URL> source, Path destination, InstallCache cache) {
+    this(source, destination, Optional.of(cache));
+  }
+
+  private SteamCMD(Optional<URL> source, Path destination, Optional<InstallCache> cache) {
     platform = Platform.fromOsName();
-    directory = installTo(source, destination);
+    directory = installTo(source, destination, cache);
+    defaultWorkspace = new Workspace(directory);
+    logins = new LoginCache(
+        platform.steamHome(directory).resolve("config", "config.vdf"),
+        InstantSource.system());
   }
 
   /**
@@ -58,6 +93,150 @@ public class SteamCMD {
     return this;
   }
 
+  /**
+   * Controls how failed logins and builds are retried. Retried builds reuse the content that has
+   * already been staged.
+   *
+   * @param r How to set the retry behaviour
+   * @return {@code this}
+   */
+  public SteamCMD withRetry(Consumer<Retry> r) {
+    r.accept(retry);
+    return this;
+  }
+
+  /**
+   * Controls how application files are staged for upload
+   *
+   * @param i How to set the ingestion behaviour
+   * @return {@code this}
+   */
+  public SteamCMD withIngestion(Consumer<Ingestion> i) {
+    i.accept(ingestion);
+    return this;
+  }
+
+  /**
+   * Adds a listener that will be notified of progress as steamcmd runs. Listeners are called on the
+   * thread that consumes steamcmd's output, so should return promptly.
+   *
+   * @param listener Will receive progress events
+   * @return {@code this}
+   */
+  public SteamCMD withListener(Consumer<Progress> listener) {
+    listeners.add(listener);
+    return this;
+  }
+
+  /**
+   * Writes a JSON summary of each deployment: the build ID, phase timings, and per-depot file and
+   * byte counts compared with the previous build. The depot details are read from the
+   * <code>BuildOutput</code> directory of the build script.
+   *
+   * @param file Where to write the report
+   * @return {@code this}
+   */
+  public SteamCMD withReport(Path file) {
+    report = Optional.of(file);
+    return this;
+  }
+
+  /**
+   * Allows {@link #loginAndQuit(Auth)} to trust a recent successful login rather than repeating
+   * it. Logins are recorded against the injected auth VDF, so changing that content invalidates
+   * them. Auths that supply a password are always checked.
+   *
+   * @param freshness How long a successful login can be trusted for
+   * @return {@code this}
+   */
+  public SteamCMD withLoginFreshness(Duration freshness) {
+    loginFreshness = freshness;
+    return this;
+  }
+
+  /**
+   * @return A fresh parser that feeds the progress listeners
+   */
+  ProgressParser progressParser() {
+    return progressParser(event -> {
+      // no-op
+    });
+  }
+
+  /**
+   * @param also An additional listener
+   * @return A fresh parser that feeds the progress listeners and the additional listener
+   */
+  ProgressParser progressParser(Consumer<Progress> also) {
+    return new ProgressParser(
+        event -> {
+          listeners.forEach(l -> l.accept(event));
+          also.accept(event);
+        },
+        InstantSource.system());
+  }
+
+  /**
+   * @return A report of a new deployment
+   */
+  BuildReport newReport() {
+    return new BuildReport(InstantSource.system());
+  }
+
+  /**
+   * Writes the deployment report, if one has been requested. Failure to do so is logged rather
+   * than thrown, so as not to obscure the build result.
+   *
+   * @param report The deployment report
+   * @param result The build result
+   */
+  void writeReport(BuildReport report, Result result) {
+    this.report.ifPresent(file -> {
+      try {
+        report.write(file, result);
+      } catch (RuntimeException re) {
+        LOG.warn("Failed to write build report {}", file, re);
+      }
+    });
+  }
+
+  /**
+   * Prepares a deployment report, if one has been requested. Failure to do so is logged rather than
+   * thrown, so as not to prevent the build.
+   *
+   * @param report    The deployment report
+   * @param script    The build script
+   * @param workspace The deployment workspace
+   */
+  void prepareReport(BuildReport report, Path script, Workspace workspace) {
+    if (this.report.isPresent()) {
+      try {
+        report.prepare(script, workspace);
+      } catch (RuntimeException re) {
+        LOG.warn("Failed to prepare build report", re);
+      }
+    }
+  }
+
+  /**
+   * @return The default workspace, which is the installation directory itself
+   */
+  public Workspace workspace() {
+    return defaultWorkspace;
+  }
+
+  /**
+   * Gets a named workspace in this installation. Deployments that use different workspaces can be
+   * run concurrently.
+   *
+   * @param name The workspace name
+   * @return The workspace
+   */
+  public Workspace workspace(String name) {
+    return new Workspace(directory.resolve(WORKSPACES_SUBDIR)
+        .resolve(QuietFiles.checkName(name, "workspace name")));
+  }
+
   /**
    * Checks auth validity
    *
@@ -65,26 +244,37 @@ public class SteamCMD {
    * @return command results
    */
   public Result loginAndQuit(Auth auth) {
-    auth.vdf().ifPresent(vdf -> {
-      Path destination = platform.steamHome(directory).resolve("config", "config.vdf");
-      LOG.info("INJECTING AUTH VDF TO {}", destination);
-      vdf.writeTo(destination);
-    });
-    LOG.info("Logging in");
-    Path full = directory.resolve(platform.steamCmd);
-    if (!Files.exists(full)) {
-      throw new IllegalStateException(full.toString());
+    injectAuth(auth);
+    if (auth.password().isEmpty()
+        && loginFreshness.isPositive()
+        && logins.fresh(auth.username(), loginFreshness)) {
+      LOG.info("Trusting login as {} within {}", auth.username(), loginFreshness);
+      return new Result(0, List.of("Login as " + auth.username() + " is fresh"));
     }
-    return CommandLine.here()
+    LOG.info("Logging in");
+    Path full = executable();
+    return validated(auth, retrying("Login", () -> CommandLine.here()
         .failingAfter(timeouts.total())
         .toleratingInactivityOf(timeouts.inactivity())
+        .onLine(progressParser())
         .run(Stream.of(
                 full.toAbsolutePath().toString(),
                 "+login", auth.username(), auth.password().orElse(null),
                 "+quit")
             .filter(Objects::nonNull)
             .toArray(String[]::new)
-        );
+        ), SteamCMD::sleep).result());
+  }
+
+  /**
+   * Starts a persistent steamcmd process and logs in. Commands can then be run on that session
+   * without paying the costs of process startup and login for each one.
+   *
+   * @param auth How to authenticate to steam
+   * @return The logged-in session, which should be closed when no longer required
+   */
+  public Session session(Auth auth) {
+    return new Session(this, auth, timeouts);
   }
 
   /**
@@ -96,56 +286,227 @@ public class SteamCMD {
    * @return command results
    */
   public Result deploy(Auth auth, Path source, InjectableFile appBuild) {
-    ingestApplication(source);
-    return build(auth, generateBuildScript(appBuild));
+    return deploy(auth, source, appBuild, defaultWorkspace);
+  }
+
+  /**
+   * Runs an app deployment in a particular workspace
+   *
+   * @param auth      How to authenticate to steam
+   * @param source    The directory that contains the application files
+   * @param appBuild  The application build script
+   * @param workspace Where to stage the application
+   * @return command results
+   * @see #workspace(String)
+   */
+  public Result deploy(Auth auth, Path source, InjectableFile appBuild, Workspace workspace) {
+    BuildReport br = newReport();
+    br.time("ingest", () -> ingestApplication(source, workspace));
+    return build(auth, br.time("script", () -> generateBuildScript(appBuild, workspace)),
+        workspace, br);
+  }
+
+  /**
+   * Runs a deployment of several depots in a single build, staging the content of each into
+   * {@link Workspace#content(int)}
+   *
+   * @param auth      How to authenticate to steam
+   * @param depots    The depots to stage
+   * @param appBuild  The application build script, e.g.: as produced by
+   *                  {@link InjectableFile#appBuild(int, String, boolean, boolean, List)}
+   * @param workspace Where to stage the depots
+   * @return command results
+   */
+  public Result deploy(Auth auth, List<Depot> depots, InjectableFile appBuild,
+      Workspace workspace) {
+    BuildReport br = newReport();
+    br.time("ingest", () -> ingestDepots(depots, workspace));
+    return build(auth, br.time("script", () -> generateBuildScript(appBuild, workspace)),
+        workspace, br);
+  }
+
+  /**
+   * Runs an app deployment without staging the application files. The build script is responsible
+   * for pointing steamcmd at the application files, e.g.: with an absolute <code>ContentRoot</code>
+   * as produced by
+   * {@link InjectableFile#appBuild(int, String, boolean, boolean, int, Path, Path)}
+   *
+   * @param auth     How to authenticate to steam
+   * @param appBuild The application build script
+   * @return command results
+   */
+  public Result deploy(Auth auth, InjectableFile appBuild) {
+    return deploy(auth, appBuild, defaultWorkspace);
   }
 
-  private Path installTo(Optional<URL> source, Path destination) {
+  /**
+   * Runs an app deployment without staging the application files
+   *
+   * @param auth      How to authenticate to steam
+   * @param appBuild  The application build script
+   * @param workspace Where to write the build script
+   * @return command results
+   * @see #deploy(Auth, InjectableFile)
+   */
+  public Result deploy(Auth auth, InjectableFile appBuild, Workspace workspace) {
+    BuildReport br = newReport();
+    return build(auth, br.time("script", () -> generateBuildScript(appBuild, workspace)),
+        workspace, br);
+  }
+
+  private static boolean isEmptyDirectory(Path path) {
+    if (!Files.isDirectory(path)) {
+      return false;
+    }
+    try (Stream<Path> children = QuietFiles.list(path)) {
+      return children.findAny().isEmpty();
+    }
+  }
+
+  private Path installTo(Optional<URL> source, Path destination, Optional<InstallCache> cache) {
+    Events.Install event = new Events.Install();
+    event.begin();
+    event.directory = destination.toString();
+    event.cached = cache.isPresent();
+    Path marker = destination.resolve(INSTALLED_MARKER);
+    if (Files.exists(destination) && !Files.exists(marker)) {
+      if (Files.exists(destination.resolve(platform.steamCmd))) {
+        // e.g.: a run that was interrupted before the installation was prepared
+        LOG.info("Adopting existing installation at {}", destination);
+        prepare(destination);
+        QuietFiles.write(marker, new byte[0]);
+      } else if (isEmptyDirectory(destination)) {
+        // nothing to lose, e.g.: created ahead of time by the user
+        QuietFiles.wrap(() -> {
+          Files.delete(destination);
+          return null;
+        });
+      } else {
+        // we didn't create it, so it's not ours to delete
+        throw new IllegalStateException(String.format(
+            "%s is neither empty nor a steamcmd installation. Remove it or choose another "
+                + "installation directory", destination.toAbsolutePath()));
+      }
+    }
+
     if (!Files.exists(destination)) {
-      LOG.info("Extracting SDK to {}", destination);
-      platform.installTo(source, destination);
-      platform.prepCMD(destination);
+      // extract to the side and then move into place, so an interrupted extraction can't be
+      // mistaken for a complete installation
+      Path temp = destination.toAbsolutePath().resolveSibling(
+          destination.getFileName() + ".installing-" + UUID.randomUUID());
+      try {
+        LOG.info("Extracting SDK to {}", destination);
+        if (cache.isPresent()) {
+          cache.get().installTo(platform, source, temp);
+        } else {
+          platform.installTo(source, temp);
+        }
+        QuietFiles.move(temp, destination, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        QuietFiles.recursiveDelete(temp);
+      }
+      prepare(destination);
+      QuietFiles.write(marker, new byte[0]);
     } else {
       LOG.info("Reusing existing installation at {}", destination);
+      event.reused = true;
     }
+    event.commit();
     return destination;
   }
 
-  private void ingestApplication(Path appDir) {
-    Path content = directory.resolve(CONTENT_SUBDIR);
-    QuietFiles.recursiveDelete(content);
-    LOG.info("Copying application to {}", content);
-    try (Stream<Path> files = QuietFiles.walk(appDir)) {
-      files.forEach(source -> {
-        Path sink = content.resolve(appDir.relativize(source));
-        LOG.trace("copying\n  {}\n  {}", source, sink);
-        QuietFiles.copy(source, sink);
-      });
+  /**
+   * Makes the steamcmd executable runnable and lets it update itself
+   *
+   * @param destination The installation directory
+   */
+  private void prepare(Path destination) {
+    Events.Prepare prep = new Events.Prepare();
+    prep.begin();
+    platform.prepCMD(destination);
+    prep.directory = destination.toString();
+    prep.commit();
+  }
+
+  void ingestApplication(Path appDir, Workspace workspace) {
+    new Ingester(ingestion, platform).ingest(
+        appDir,
+        workspace.content(),
+        workspace.manifest());
+  }
+
+  void ingestDepots(List<Depot> depots, Workspace workspace) {
+    Ingester ingester = new Ingester(ingestion, platform);
+    for (Depot depot : depots) {
+      ingester.ingest(
+          depot.source(),
+          workspace.content(depot.id()),
+          workspace.manifest(depot.id()),
+          depot.filter());
     }
   }
 
-  private Path generateBuildScript(InjectableFile appBuild) {
-    Path buildScript = directory.resolve(SCRIPTS_SUBDIR).resolve("script.vdf");
+  static Path generateBuildScript(InjectableFile appBuild, Workspace workspace) {
+    Events.Script event = new Events.Script();
+    event.begin();
+    Path buildScript = workspace.script();
     LOG.info("generating build script to {}", buildScript);
+    QuietFiles.recursiveDelete(buildScript);
     appBuild.writeTo(buildScript);
+    if (event.shouldCommit()) {
+      event.path = buildScript.toString();
+      event.bytes = QuietFiles.wrap(() -> Files.size(buildScript));
+      event.commit();
+    }
     return buildScript;
   }
 
-  private Result build(Auth auth, Path script) {
-    auth.vdf().ifPresent(vdf -> {
-      Path destination = platform.steamHome(directory).resolve("config", "config.vdf");
-      LOG.info("Injecting auth VDF to {}", destination);
-      vdf.writeTo(destination);
-    });
+  /**
+   * Writes the auth VDF, if there is one and it differs from what was injected last time
+   *
+   * @param auth How to authenticate to steam
+   */
+  void injectAuth(Auth auth) {
+    auth.vdf().ifPresent(logins::inject);
+  }
 
-    LOG.info("Building app");
+  /**
+   * Records a successful login, so that it can be trusted within the freshness window
+   *
+   * @param auth   How steam was authenticated
+   * @param result The result of a command that logged in
+   * @return The result
+   * @see #withLoginFreshness(Duration)
+   */
+  Result validated(Auth auth, Result result) {
+    if (result.status() == 0 && auth.password().isEmpty()) {
+      logins.validated(auth.username());
+    }
+    return result;
+  }
+
+  /**
+   * @return The steamcmd executable
+   */
+  Path executable() {
     Path full = directory.resolve(platform.steamCmd);
     if (!Files.exists(full)) {
       throw new IllegalStateException(full.toString());
     }
-    Result result = CommandLine.here()
+    return full;
+  }
+
+  private Result build(Auth auth, Path script, Workspace workspace, BuildReport br) {
+    injectAuth(auth);
+    prepareReport(br, script, workspace);
+
+    LOG.info("Building app");
+    Path full = executable();
+    Attempt attempt = retrying("Build", () -> br.time("build", () -> CommandLine.here()
         .failingAfter(timeouts.total())
         .toleratingInactivityOf(timeouts.inactivity())
+        .loggingTo(workspace.log())
+        .onLine(progressParser(br))
         .run(Stream.of(
                 full.toAbsolutePath().toString(),
                 "+login", auth.username(), auth.password().orElse(null),
@@ -154,16 +515,78 @@ public class SteamCMD {
                 "+quit")
             .filter(Objects::nonNull)
             .toArray(String[]::new)
-        );
+        )),
+        wait -> br.time("retry", () -> sleep(wait)));
+    writeReport(br, attempt.result());
+    return checkBuild(validated(auth, attempt.result()), attempt.failure());
+  }
 
+  /**
+   * The final attempt at a command
+   *
+   * @param result  The result of the command
+   * @param failure How the command failed, if it did
+   */
+  private record Attempt(Result result, Optional<Failure> failure) {
+
+  }
+
+  /**
+   * Runs a command, retrying according to the {@link Retry} settings
+   *
+   * @param what    What the command does, for logging
+   * @param command Runs the command
+   * @param sleeper Waits for the supplied number of milliseconds
+   * @return The last attempt
+   */
+  private Attempt retrying(String what, Supplier<Result> command, LongConsumer sleeper) {
+    for (int attempt = 1; ; attempt++) {
+      Result result = command.get();
+      Optional<Failure> failure = Failure.classify(result);
+      if (failure.isEmpty() || !retry.retries(failure.get(), attempt)) {
+        return new Attempt(result, failure);
+      }
+      Duration wait = retry.backoff(attempt, ThreadLocalRandom.current());
+      LOG.warn("{} attempt {} failed with status {} ({}), retrying in {}",
+          what, attempt, result.status(), failure.get(), wait);
+      sleeper.accept(wait.toMillis());
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("unexpected", ie);
+    }
+  }
+
+  /**
+   * Logs build results, throwing if the build failed
+   *
+   * @param result The build results
+   * @return the build results
+   */
+  static Result checkBuild(Result result) {
+    return checkBuild(result, Failure.classify(result));
+  }
+
+  /**
+   * Logs build results, throwing if the build failed
+   *
+   * @param result     The build results
+   * @param classified The {@link Failure#classify(Result) classification} of those results
+   * @return the build results
+   */
+  private static Result checkBuild(Result result, Optional<Failure> classified) {
     if (result.status() == 0) {
-      LOG.error("Build success!\n  {}",
-          String.join("\n  ", result.stdOut()));
+      LOG.error("Build success!\n{}", result.abbreviated());
     } else {
-      LOG.error("Build failure! {}\n  {}",
-          result.status(),
-          String.join("\n  ", result.stdOut()));
-      throw new IllegalStateException("build failed with status " + result.status());
+      Failure failure = classified.orElseThrow();
+      LOG.error("Build failure! {} ({})\n{}", result.status(), failure, result.abbreviated());
+      throw new IllegalStateException(
+          "build failed with status " + result.status() + " (" + failure + ")");
     }
     return result;
   }
@@ -1,24 +1,39 @@
 package dev.flowty.steamdeploy;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
- * Convenient builder API for Valve Data File content
+ * Convenient builder API for Valve Data File content. The content is held as a tree and rendered
+ * straight to a {@link Writer}, with indentation generated as it goes.
  */
 public class VDF {
 
-  private final List<String> lines = new ArrayList<>();
+  private static final String INDENT = "  ";
+
+  /**
+   * A name/value pair
+   */
+  private record Value(String name, String value) {
+  }
+
+  private final String name;
+  /**
+   * {@link Value}s and child {@link VDF}s, in order of addition
+   */
+  private final List<Object> entries = new ArrayList<>();
 
   /**
    * @param name The root node name
    */
   public VDF(String name) {
-    lines.add("\"" + name + "\"");
-    lines.add("{");
+    this.name = name;
   }
 
   /**
@@ -26,7 +41,7 @@ public class VDF {
    * @return {@code this}
    */
   public VDF v(String name, String value) {
-    lines.add("  \"" + name + "\" \"" + value + "\"");
+    entries.add(new Value(name, value));
     return this;
   }
 
@@ -39,18 +54,142 @@ public class VDF {
   public VDF o(String name, Consumer<VDF> content) {
     VDF child = new VDF(name);
     content.accept(child);
-    child.lines()
-        .map(line -> "  " + line)
-        .forEach(lines::add);
+    entries.add(child);
     return this;
   }
 
-  private Stream<String> lines() {
-    return Stream.concat(lines.stream(), Stream.of("}"));
+  /**
+   * @return The node name
+   */
+  public String name() {
+    return name;
+  }
+
+  /**
+   * @param name A value name, compared case-insensitively as steam does
+   * @return The first value of that name
+   */
+  public Optional<String> value(String name) {
+    return entries.stream()
+        .filter(e -> e instanceof Value v && v.name().equalsIgnoreCase(name))
+        .map(e -> ((Value) e).value())
+        .findFirst();
+  }
+
+  /**
+   * @param name A child name, compared case-insensitively as steam does
+   * @return The first child object of that name
+   */
+  public Optional<VDF> object(String name) {
+    return entries.stream()
+        .filter(e -> e instanceof VDF o && o.name.equalsIgnoreCase(name))
+        .map(VDF.class::cast)
+        .findFirst();
+  }
+
+  /**
+   * Renders the content without escape sequences, as expected in steamcmd build scripts.
+   * Backslashes are written verbatim, so Windows paths need no special treatment.
+   *
+   * @param out Where to write the content
+   * @throws IllegalArgumentException if a name or value contains a double quote or line break,
+   *                                  which cannot be represented without escapes
+   */
+  public void writeTo(Writer out) {
+    writeTo(out, false);
+  }
+
+  /**
+   * @param out     Where to write the content
+   * @param escaped {@code true} to escape backslashes, double quotes, tabs and line breaks, as
+   *                found in steam's own configuration files. {@code false} to write content
+   *                verbatim, as in {@link #writeTo(Writer)}
+   */
+  public void writeTo(Writer out, boolean escaped) {
+    try {
+      write(out, 0, escaped);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  private void write(Writer out, int depth, boolean escaped) throws IOException {
+    indent(out, depth);
+    quote(out, name, escaped);
+    out.write('\n');
+    indent(out, depth);
+    out.write("{\n");
+    for (Object entry : entries) {
+      if (entry instanceof Value v) {
+        indent(out, depth + 1);
+        quote(out, v.name(), escaped);
+        out.write(' ');
+        quote(out, v.value(), escaped);
+        out.write('\n');
+      } else {
+        ((VDF) entry).write(out, depth + 1, escaped);
+      }
+    }
+    indent(out, depth);
+    out.write("}\n");
+  }
+
+  private static void indent(Writer out, int depth) throws IOException {
+    for (int i = 0; i < depth; i++) {
+      out.write(INDENT);
+    }
+  }
+
+  private static void quote(Writer out, String s, boolean escaped) throws IOException {
+    out.write('"');
+    if (plain(s)) {
+      out.write(s);
+      out.write('"');
+      return;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      String escape = switch (c) {
+        case '\\' -> "\\\\";
+        case '"' -> "\\\"";
+        case '\t' -> "\\t";
+        case '\n' -> "\\n";
+        case '\r' -> "\\r";
+        default -> null;
+      };
+      if (escape == null) {
+        out.write(c);
+      } else if (escaped) {
+        out.write(escape);
+      } else if (c == '\\') {
+        out.write(c);
+      } else {
+        throw new IllegalArgumentException(
+            "Cannot represent " + escape + " in unescaped VDF content '" + s + "'");
+      }
+    }
+    out.write('"');
+  }
+
+  /**
+   * @return {@code true} if the string can be written without escaping
+   */
+  private static boolean plain(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      switch (s.charAt(i)) {
+        case '\\', '"', '\t', '\n', '\r':
+          return false;
+        default:
+          // carry on
+      }
+    }
+    return true;
   }
 
   @Override
   public String toString() {
-    return lines().collect(Collectors.joining("\n", "", "\n")) ;
+    StringWriter out = new StringWriter();
+    writeTo(out);
+    return out.toString();
   }
 }
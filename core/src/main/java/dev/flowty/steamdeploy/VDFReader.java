@@ -0,0 +1,295 @@
+package dev.flowty.steamdeploy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * Pull parser for Valve Data File content, e.g.: <code>config.vdf</code> or build output
+ * manifests. Content is tokenised straight from the underlying {@link Reader}, so files of any
+ * size can be read without holding them in memory:
+ * <pre>
+ * try (VDFReader r = new VDFReader(Files.newBufferedReader(path), true)) {
+ *   for (Event e = r.next(); e != Event.END_DOCUMENT; e = r.next()) {
+ *     if (e == Event.VALUE &amp;&amp; r.name().equals("AccountName")) {
+ *       ...
+ *     }
+ *   }
+ * }
+ * </pre>
+ * Comments and platform conditionals are skipped, unquoted strings are accepted.
+ */
+public class VDFReader implements Closeable {
+
+  /**
+   * The structural elements of VDF content
+   */
+  public enum Event {
+    /**
+     * An object has started, its name is available from {@link #name()}
+     */
+    START_OBJECT,
+    /**
+     * A name/value pair, available from {@link #name()} and {@link #value()}
+     */
+    VALUE,
+    /**
+     * The current object has ended
+     */
+    END_OBJECT,
+    /**
+     * There is no more content
+     */
+    END_DOCUMENT
+  }
+
+  private enum Token {
+    STRING, OPEN, CLOSE, EOF
+  }
+
+  private final Reader in;
+  private final boolean escaped;
+  private final char[] buffer = new char[8192];
+  private int position;
+  private int limit;
+  private int pushback = -1;
+  private int line = 1;
+
+  private final StringBuilder text = new StringBuilder();
+  private int depth;
+  private Event event;
+  private String name;
+  private String value;
+
+  /**
+   * @param in      The content to read
+   * @param escaped {@code true} to interpret backslash escape sequences in quoted strings, as found
+   *                in steam's own configuration files. {@code false} to take backslashes
+   *                literally, as in steamcmd build scripts
+   */
+  public VDFReader(Reader in, boolean escaped) {
+    this.in = in;
+    this.escaped = escaped;
+  }
+
+  /**
+   * Parses a complete document
+   *
+   * @param in      The content to read
+   * @param escaped Whether to interpret escape sequences, see
+   *                {@link #VDFReader(Reader, boolean)}
+   * @return The first root object in the content
+   */
+  public static VDF parse(Reader in, boolean escaped) {
+    try (VDFReader reader = new VDFReader(in, escaped)) {
+      if (reader.next() != Event.START_OBJECT) {
+        throw new IllegalStateException("No root object found at line " + reader.line);
+      }
+      return reader.object();
+    }
+  }
+
+  /**
+   * Advances to the next element of the content
+   *
+   * @return The type of that element
+   * @throws IllegalStateException if the content is malformed
+   */
+  public Event next() {
+    name = null;
+    value = null;
+    Token token = token();
+    if (token == Token.EOF) {
+      if (depth > 0) {
+        throw new IllegalStateException(
+            "Unexpected end of content with " + depth + " unclosed objects");
+      }
+      return event = Event.END_DOCUMENT;
+    }
+    if (token == Token.CLOSE) {
+      if (depth == 0) {
+        throw new IllegalStateException("Unbalanced '}' at line " + line);
+      }
+      depth--;
+      return event = Event.END_OBJECT;
+    }
+    if (token != Token.STRING) {
+      throw new IllegalStateException("Expected a name at line " + line + ", found " + token);
+    }
+    name = text.toString();
+    token = token();
+    if (token == Token.OPEN) {
+      depth++;
+      return event = Event.START_OBJECT;
+    }
+    if (token != Token.STRING) {
+      throw new IllegalStateException(
+          "Expected a value for '" + name + "' at line " + line + ", found " + token);
+    }
+    value = text.toString();
+    return event = Event.VALUE;
+  }
+
+  /**
+   * @return The name of the current object or value
+   */
+  public String name() {
+    return name;
+  }
+
+  /**
+   * @return The current value
+   */
+  public String value() {
+    return value;
+  }
+
+  /**
+   * @return The number of objects that we are currently inside
+   */
+  public int depth() {
+    return depth;
+  }
+
+  /**
+   * Reads the remainder of the object that has just started
+   *
+   * @return The object content
+   * @throws IllegalStateException if the last event was not {@link Event#START_OBJECT}
+   */
+  public VDF object() {
+    if (event != Event.START_OBJECT) {
+      throw new IllegalStateException("Not at the start of an object");
+    }
+    VDF vdf = new VDF(name);
+    fill(vdf);
+    return vdf;
+  }
+
+  private void fill(VDF vdf) {
+    for (Event e = next(); e != Event.END_OBJECT; e = next()) {
+      if (e == Event.VALUE) {
+        vdf.v(name, value);
+      } else {
+        vdf.o(name, this::fill);
+      }
+    }
+  }
+
+  private Token token() {
+    int c = skipInsignificant();
+    switch (c) {
+      case -1:
+        return Token.EOF;
+      case '{':
+        return Token.OPEN;
+      case '}':
+        return Token.CLOSE;
+      case '"':
+        quoted();
+        return Token.STRING;
+      default:
+        unquoted(c);
+        return Token.STRING;
+    }
+  }
+
+  /**
+   * Skips whitespace, comments and conditionals
+   *
+   * @return The first significant character
+   */
+  private int skipInsignificant() {
+    while (true) {
+      int c = read();
+      if (c == '/') {
+        int d = read();
+        if (d == '/') {
+          while (c != '\n' && c != -1) {
+            c = read();
+          }
+          continue;
+        }
+        pushback = d;
+        return c;
+      }
+      if (c == '[') {
+        while (c != ']' && c != -1) {
+          c = read();
+        }
+        continue;
+      }
+      if (c == -1 || !Character.isWhitespace(c)) {
+        return c;
+      }
+    }
+  }
+
+  private void quoted() {
+    text.setLength(0);
+    for (int c = read(); c != '"'; c = read()) {
+      if (c == -1) {
+        throw new IllegalStateException("Unterminated string at line " + line);
+      }
+      if (c == '\\' && escaped) {
+        int d = read();
+        switch (d) {
+          case 'n' -> text.append('\n');
+          case 't' -> text.append('\t');
+          case 'r' -> text.append('\r');
+          case '\\', '"' -> text.append((char) d);
+          case -1 -> throw new IllegalStateException("Unterminated string at line " + line);
+          default -> text.append('\\').append((char) d);
+        }
+      } else {
+        text.append((char) c);
+      }
+    }
+  }
+
+  private void unquoted(int first) {
+    text.setLength(0);
+    int c = first;
+    while (c != -1 && c != '"' && c != '{' && c != '}' && !Character.isWhitespace(c)) {
+      text.append((char) c);
+      c = read();
+    }
+    pushback = c;
+  }
+
+  private int read() {
+    int c;
+    if (pushback != -1) {
+      c = pushback;
+      pushback = -1;
+      return c;
+    }
+    if (position == limit) {
+      try {
+        limit = in.read(buffer);
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+      position = 0;
+      if (limit <= 0) {
+        limit = 0;
+        return -1;
+      }
+    }
+    c = buffer[position++];
+    if (c == '\n') {
+      line++;
+    }
+    return c;
+  }
+
+  @Override
+  public void close() {
+    try {
+      in.close();
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package dev.flowty.steamdeploy;
+
+import java.nio.file.Path;
+
+/**
+ * The files for a single deployment: staged content, build script and build output. Deployments
+ * that use different workspaces can run concurrently against the same steamcmd installation.
+ */
+public class Workspace {
+
+  private final Path root;
+
+  /**
+   * @param root The workspace directory
+   */
+  Workspace(Path root) {
+    this.root = root;
+  }
+
+  /**
+   * @return The workspace directory
+   */
+  public Path root() {
+    return root;
+  }
+
+  /**
+   * @return Where application files are staged
+   */
+  public Path content() {
+    return root.resolve("content");
+  }
+
+  /**
+   * @param depotId A depot ID
+   * @return Where the content of that depot is staged in a multi-depot deployment
+   */
+  public Path content(int depotId) {
+    return content().resolve(String.valueOf(depotId));
+  }
+
+  /**
+   * @return Where the build script is written
+   */
+  public Path script() {
+    return root.resolve("scripts").resolve("script.vdf");
+  }
+
+  /**
+   * @return Where steamcmd writes build logs and cache files, assuming that the build script uses
+   * the default <code>BuildOutput</code> location
+   */
+  public Path output() {
+    return root.resolve("output");
+  }
+
+  /**
+   * @return Where the complete gzipped steamcmd output of the most recent build is written
+   */
+  public Path log() {
+    return root.resolve("logs").resolve("steamcmd.log.gz");
+  }
+
+  /**
+   * @return Where the manifest of the staged content is stored
+   */
+  Path manifest() {
+    return root.resolve("content.manifest");
+  }
+
+  /**
+   * @param depotId A depot ID
+   * @return Where the manifest of that depot's staged content is stored
+   */
+  Path manifest(int depotId) {
+    return root.resolve("content-" + depotId + ".manifest");
+  }
+
+  @Override
+  public String toString() {
+    return root.toString();
+  }
+}
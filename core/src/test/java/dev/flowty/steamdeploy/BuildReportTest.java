@@ -0,0 +1,190 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link BuildReport}
+ */
+class BuildReportTest {
+
+  private static final Path ROOT = Paths.get("target", "BuildReportTest");
+  private final Workspace workspace = new Workspace(ROOT);
+  private Instant now = Instant.EPOCH;
+  private final BuildReport report = new BuildReport(() -> now);
+
+  @BeforeEach
+  void clean() {
+    QuietFiles.recursiveDelete(ROOT);
+  }
+
+  /**
+   * Compares the new depot manifest with the previous one
+   */
+  @Test
+  void report() {
+    manifest(1001, """
+        Content Manifest for Depot 1001
+
+        Manifest ID / date     : 1111 / 10/17/2026 12:00:00
+        Total number of files  : 3
+        Total number of chunks : 4
+        Total bytes on disk    : 3072
+        Total bytes compressed : 1024
+
+
+                  Size Chunks File SHA                                 Flags Name
+                  1024      1 aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa     0 same.txt
+                  1024      2 bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb     0 changed.txt
+                  1024      1 cccccccccccccccccccccccccccccccccccccccc     0 removed.txt
+        """);
+    Path script = SteamCMD.generateBuildScript(
+        InjectableFile.appBuild(1000, "test", false, false, 1001), workspace);
+    report.time("script", () -> tick(1));
+    report.prepare(script, workspace);
+
+    report.time("build", () -> {
+      feed(0, new Progress.Depot(1001));
+      feed(3, new Progress.Transfer(
+          Progress.Phase.SCANNING, 1, 50, 0, Optional.empty()));
+      feed(2, new Progress.Transfer(
+          Progress.Phase.UPLOADING, 1, 50, 0, Optional.empty()));
+      manifest(1001, """
+          Content Manifest for Depot 1001
+
+          Manifest ID / date     : 2222 / 10/18/2026 12:00:00
+          Total number of files  : 4
+          Total number of chunks : 5
+          Total bytes on disk    : 4096
+          Total bytes compressed : 2048
+
+
+                    Size Chunks File SHA                                 Flags Name
+                     0      0 0000000000000000000000000000000000000000    64 dir
+                  1024      1 aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa     0 same.txt
+                  2048      2 dddddddddddddddddddddddddddddddddddddddd     0 changed.txt
+                  1024      2 eeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeee     0 dir\\new.txt
+          """);
+      feed(4, new Progress.Build(1000, 8675309));
+    });
+    report.write(ROOT.resolve("report.json"), new Result(0, List.of()));
+
+    Assertions.assertEquals("""
+            {
+              "appId": 1000,
+              "buildId": 8675309,
+              "status": 0,
+              "output": "%s",
+              "phaseMillis": {
+                "script": 1000,
+                "build": 9000
+              },
+              "depots": [
+                {
+                  "depotId": 1001,
+                  "manifestId": "2222",
+                  "files": 3,
+                  "chunks": 5,
+                  "bytes": 4096,
+                  "compressedBytes": 2048,
+                  "newFiles": 1,
+                  "newBytes": 1024,
+                  "changedFiles": 1,
+                  "changedBytes": 2048,
+                  "unchangedFiles": 1,
+                  "unchangedBytes": 1024,
+                  "removedFiles": 1,
+                  "chunkReuse": 0.2000,
+                  "scanMillis": 5000,
+                  "uploadMillis": 4000
+                }
+              ]
+            }
+            """.formatted(workspace.output().toAbsolutePath().normalize()
+            .toString().replace("\\", "\\\\")),
+        new String(QuietFiles.readAllBytes(ROOT.resolve("report.json")), UTF_8));
+  }
+
+  /**
+   * Doesn't report the manifest of an earlier build as the result of a failed one
+   */
+  @Test
+  void stale() {
+    manifest(1001, """
+        Manifest ID / date     : 1111 / 10/17/2026 12:00:00
+
+                  Size Chunks File SHA                                 Flags Name
+                  1024      1 aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa     0 same.txt
+        """);
+    Path script = SteamCMD.generateBuildScript(
+        InjectableFile.appBuild(1000, "test", false, false, 1001), workspace);
+    report.prepare(script, workspace);
+
+    feed(0, new Progress.Depot(1001));
+    feed(2, new Progress.Transfer(
+        Progress.Phase.SCANNING, 1, 50, 0, Optional.empty()));
+    report.write(ROOT.resolve("report.json"), new Result(6, List.of()));
+
+    Assertions.assertEquals("""
+            {
+              "appId": 1000,
+              "buildId": null,
+              "status": 6,
+              "output": "%s",
+              "phaseMillis": {},
+              "depots": [
+                {
+                  "depotId": 1001,
+                  "scanMillis": 2000,
+                  "uploadMillis": 0
+                }
+              ]
+            }
+            """.formatted(workspace.output().toAbsolutePath().normalize()
+            .toString().replace("\\", "\\\\")),
+        new String(QuietFiles.readAllBytes(ROOT.resolve("report.json")), UTF_8));
+  }
+
+  /**
+   * Copes with a build that produced nothing
+   */
+  @Test
+  void empty() {
+    report.write(ROOT.resolve("report.json"), new Result(5, List.of()));
+
+    Assertions.assertEquals("""
+            {
+              "appId": null,
+              "buildId": null,
+              "status": 5,
+              "output": null,
+              "phaseMillis": {},
+              "depots": []
+            }
+            """,
+        new String(QuietFiles.readAllBytes(ROOT.resolve("report.json")), UTF_8));
+  }
+
+  private void manifest(int depot, String content) {
+    QuietFiles.createDirectories(workspace.output());
+    QuietFiles.write(workspace.output().resolve("manifest_" + depot + ".txt"),
+        content.getBytes(UTF_8));
+  }
+
+  private void tick(int seconds) {
+    now = now.plusSeconds(seconds);
+  }
+
+  private void feed(int seconds, Progress progress) {
+    tick(seconds);
+    report.accept(progress);
+  }
+}
@@ -0,0 +1,87 @@
+package dev.flowty.steamdeploy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+/**
+ * Exercises {@link CommandLine}
+ */
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class CommandLineTest {
+
+  /**
+   * Output and exit status are captured
+   */
+  @Test
+  void output() {
+    Result result = CommandLine.here().run("sh", "-c", "echo one; echo two >&2; exit 3");
+
+    Assertions.assertEquals(3, result.status());
+    Assertions.assertEquals("[one, two]", result.stdOut().toString());
+  }
+
+  /**
+   * The total deadline is enforced, even on a process that keeps producing output
+   */
+  @Test
+  void total() {
+    long start = System.nanoTime();
+    Result result = CommandLine.here()
+        .failingAfter(Duration.ofMillis(300))
+        .run("sh", "-c", "for i in $(seq 200); do echo tick; sleep 0.05; done; echo done");
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+    Assertions.assertEquals(-1, result.status());
+    Assertions.assertFalse(result.stdOut().isEmpty());
+    Assertions.assertFalse(result.stdOut().contains("done"), "killed before the loop finished");
+    // generous, so as not to be at the mercy of a busy machine
+    Assertions.assertTrue(elapsed.compareTo(Duration.ofSeconds(8)) < 0, elapsed::toString);
+  }
+
+  /**
+   * Silent processes are killed, but output holds off the inactivity deadline
+   */
+  @Test
+  void inactivity() {
+    long start = System.nanoTime();
+    Result result = CommandLine.here()
+        .toleratingInactivityOf(Duration.ofMillis(300))
+        .run("sh", "-c", "for i in 1 2 3 4 5; do echo $i; sleep 0.1; done; sleep 10; echo done");
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+    Assertions.assertEquals(-1, result.status());
+    // the output spans longer than the deadline, so it must have been held off
+    Assertions.assertEquals(List.of("1", "2", "3", "4", "5"),
+        result.stdOut().subList(0, Math.min(5, result.stdOut().size())));
+    Assertions.assertFalse(result.stdOut().contains("done"), "killed before the sleep finished");
+    // killed before the sleep finished, with generous allowance for a busy machine
+    Assertions.assertTrue(elapsed.compareTo(Duration.ofSeconds(8)) < 0, elapsed::toString);
+  }
+
+  /**
+   * Many commands can be supervised at once
+   */
+  @Test
+  void concurrent() throws Exception {
+    try (ExecutorService pool = Executors.newFixedThreadPool(16)) {
+      List<Future<Result>> results = IntStream.range(0, 32)
+          .mapToObj(i -> pool.submit(() -> CommandLine.here()
+              .run("sh", "-c", "for j in $(seq 100); do echo " + i + "-$j; done")))
+          .toList();
+      for (int i = 0; i < results.size(); i++) {
+        Result result = results.get(i).get();
+        Assertions.assertEquals(0, result.status());
+        Assertions.assertEquals(100, result.stdOut().size());
+        Assertions.assertEquals(i + "-100", result.stdOut().getLast());
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package dev.flowty.steamdeploy;
+
+import static dev.flowty.steamdeploy.ChunkIndex.CHUNK_SIZE;
+
+import dev.flowty.steamdeploy.DeltaEstimator.Change;
+import dev.flowty.steamdeploy.DeltaEstimator.Estimate;
+import dev.flowty.steamdeploy.DeltaEstimator.FileDelta;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link DeltaEstimator}
+ */
+class DeltaEstimatorTest {
+
+  private static final Path ROOT = Paths.get("target", "DeltaEstimatorTest");
+  private static final Path APP = ROOT.resolve("app");
+
+  private final DeltaEstimator estimator = new DeltaEstimator(ROOT.resolve("store"))
+      .parallelism(4);
+
+  @BeforeEach
+  void clean() {
+    QuietFiles.recursiveDelete(ROOT);
+    write("big.bin", chunks('a', 'b', 'c'), CHUNK_SIZE * 2 + 10);
+    write("dir/small.txt", chunks('d'), 100);
+  }
+
+  /**
+   * Without a recorded deployment, everything is uploaded
+   */
+  @Test
+  void baseline() {
+    Estimate estimate = estimator.estimate("app", APP, Filter.ALL);
+
+    Assertions.assertFalse(estimate.baseline());
+    Assertions.assertEquals(CHUNK_SIZE * 2 + 110, estimate.bytes());
+    Assertions.assertEquals(estimate.bytes(), estimate.uploadBytes());
+    Assertions.assertEquals(2, estimate.count(Change.NEW));
+    Assertions.assertEquals("big.bin", estimate.largest(1).get(0).path());
+  }
+
+  /**
+   * Only the chunks that have changed since the recorded deployment are counted
+   */
+  @Test
+  void delta() {
+    Assertions.assertThrows(IllegalStateException.class, () -> estimator.record("app"));
+    estimator.estimate("app", APP, Filter.ALL);
+    estimator.record("app");
+
+    Estimate unchanged = estimator.estimate("app", APP, Filter.ALL);
+    Assertions.assertTrue(unchanged.baseline());
+    Assertions.assertEquals(0, unchanged.uploadBytes());
+    Assertions.assertEquals(2, unchanged.count(Change.UNCHANGED));
+
+    // change the middle chunk, add a copy of an existing one, and remove a file
+    write("big.bin", chunks('a', 'x', 'c'), CHUNK_SIZE * 2 + 10);
+    write("copy.txt", chunks('d'), 100);
+    QuietFiles.recursiveDelete(APP.resolve("dir"));
+
+    Estimate changed = estimator.estimate("app", APP, Filter.ALL);
+    Assertions.assertEquals(CHUNK_SIZE, changed.uploadBytes());
+    Assertions.assertEquals(1, changed.removedFiles());
+    Assertions.assertEquals(List.of(
+            "big.bin CHANGED " + CHUNK_SIZE,
+            "copy.txt NEW 0"),
+        changed.files().stream()
+            .map(f -> f.path() + " " + f.change() + " " + f.uploadBytes())
+            .toList());
+
+    Assertions.assertEquals(CHUNK_SIZE, estimator.estimate("app", APP, Filter.ALL).uploadBytes(),
+        "unrecorded estimates don't change the baseline");
+    Assertions.assertEquals(estimator.estimate("other", APP, Filter.ALL).bytes(),
+        estimator.estimate("other", APP, Filter.ALL).uploadBytes(),
+        "baselines are per-key");
+  }
+
+  /**
+   * Repeated chunks are only uploaded once
+   */
+  @Test
+  void deduplicated() {
+    write("big.bin", chunks('a', 'a', 'a'), CHUNK_SIZE * 3);
+
+    Estimate estimate = estimator.estimate("app", APP, Filter.ALL);
+    Assertions.assertEquals(CHUNK_SIZE + 100, estimate.uploadBytes());
+  }
+
+  /**
+   * Filtered files are not counted
+   */
+  @Test
+  void filtered() {
+    Estimate estimate = estimator.estimate("app", APP, new Filter(List.of(), List.of("*.bin")));
+    Assertions.assertEquals(List.of("dir/small.txt"),
+        estimate.files().stream().map(FileDelta::path).toList());
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> estimator.estimate("../app", APP, Filter.ALL));
+  }
+
+  /**
+   * @param fill The byte value of each chunk
+   * @return Content made of uniform chunks
+   */
+  private static byte[] chunks(char... fill) {
+    byte[] content = new byte[fill.length * CHUNK_SIZE];
+    for (int i = 0; i < fill.length; i++) {
+      Arrays.fill(content, i * CHUNK_SIZE, (i + 1) * CHUNK_SIZE, (byte) fill[i]);
+    }
+    return content;
+  }
+
+  /**
+   * Writes a file and sets its modification time well into the past, as it would be for staged
+   * content
+   */
+  private static void write(String path, byte[] content, int length) {
+    Path file = APP.resolve(path);
+    QuietFiles.createDirectories(file.getParent());
+    QuietFiles.write(file, Arrays.copyOf(content, length));
+    QuietFiles.wrap(() -> Files.setLastModifiedTime(file,
+        FileTime.from(Instant.now().minusSeconds(60))));
+  }
+}
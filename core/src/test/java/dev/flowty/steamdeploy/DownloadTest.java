@@ -0,0 +1,292 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link Download} against a local HTTP stand-in
+ */
+class DownloadTest {
+
+  private static final Path ROOT = Paths.get("target", "DownloadTest");
+  private static final Path FILE = ROOT.resolve("download");
+  private static final Path PART = ROOT.resolve("download.part");
+  private static final Path VERSION = ROOT.resolve("download.part.version");
+  private static final String DATE = "Wed, 21 Oct 2015 07:28:00 GMT";
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+  private static final byte[] PAYLOAD = new byte[3 * 1024 * 1024 + 17];
+
+  static {
+    new Random(0).nextBytes(PAYLOAD);
+  }
+
+  private HttpServer server;
+  private boolean ranges = true;
+  private String etag;
+  private String lastModified;
+  private final AtomicInteger truncations = new AtomicInteger();
+  private final List<String> requests = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  void start() throws IOException {
+    QuietFiles.recursiveDelete(ROOT);
+    QuietFiles.createDirectories(ROOT);
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/sdk", this::serve);
+    server.start();
+  }
+
+  @AfterEach
+  void stop() {
+    server.stop(0);
+  }
+
+  /**
+   * A simple single-connection download
+   */
+  @Test
+  void single() {
+    new Download(url()).to(FILE);
+
+    Assertions.assertArrayEquals(PAYLOAD, QuietFiles.readAllBytes(FILE));
+    Assertions.assertFalse(Files.exists(PART));
+    Assertions.assertEquals("[HEAD, GET]", requests.toString());
+  }
+
+  /**
+   * A partial download left behind by an earlier attempt is completed
+   */
+  @Test
+  void resume() {
+    etag = "\"v1\"";
+    truncations.set(1);
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> new Download(url()).attempts(1).to(FILE));
+    Assertions.assertEquals(etag, new String(QuietFiles.readAllBytes(VERSION), UTF_8));
+    requests.clear();
+
+    new Download(url()).to(FILE);
+
+    Assertions.assertArrayEquals(PAYLOAD, QuietFiles.readAllBytes(FILE));
+    Assertions.assertFalse(Files.exists(VERSION));
+    Assertions.assertEquals("[HEAD, GET bytes=1048576- If-Range]", requests.toString());
+  }
+
+  /**
+   * The last-modified date identifies the version of a partial download when there is no strong
+   * entity tag
+   */
+  @Test
+  void resumeLastModified() {
+    etag = "W/\"weak\"";
+    lastModified = DATE;
+    QuietFiles.write(PART, Arrays.copyOf(PAYLOAD, 1000));
+    QuietFiles.write(VERSION, DATE.getBytes(UTF_8));
+
+    new Download(url()).to(FILE);
+
+    Assertions.assertArrayEquals(PAYLOAD, QuietFiles.readAllBytes(FILE));
+    Assertions.assertEquals("[HEAD, GET bytes=1000- If-Range]", requests.toString());
+  }
+
+  /**
+   * A partial download of an older version is discarded rather than spliced onto the new one
+   */
+  @Test
+  void resumeStale() {
+    etag = "\"v2\"";
+    QuietFiles.write(PART, new byte[1000]);
+    QuietFiles.write(VERSION, "\"v1\"".getBytes(UTF_8));
+
+    new Download(url()).to(FILE);
+
+    Assertions.assertArrayEquals(PAYLOAD, QuietFiles.readAllBytes(FILE));
+    Assertions.assertEquals("[HEAD, GET]", requests.toString());
+  }
+
+  /**
+   * A partial download is discarded if the server doesn't identify the version of its content
+   */
+  @Test
+  void resumeUnversioned() {
+    QuietFiles.write(PART, new byte[1000]);
+
+    new Download(url()).to(FILE);
+
+    Assertions.assertArrayEquals(PAYLOAD, QuietFiles.readAllBytes(FILE));
+    Assertions.assertEquals("[HEAD, GET]", requests.toString());
+  }
+
+  /**
+   * A partial download is discarded if the server can't serve the rest of it
+   */
+  @Test
+  void resumeUnsupported() {
+    ranges = false;
+    QuietFiles.write(PART, new byte[1000]);
+
+    new Download(url()).to(FILE);
+
+    Assertions.assertArrayEquals(PAYLOAD, QuietFiles.readAllBytes(FILE));
+    Assertions.assertEquals("[HEAD, GET]", requests.toString());
+  }
+
+  /**
+   * A dropped connection is resumed from where it left off
+   */
+  @Test
+  void interrupted() {
+    truncations.set(1);
+
+    new Download(url()).to(FILE);
+
+    Assertions.assertArrayEquals(PAYLOAD, QuietFiles.readAllBytes(FILE));
+    Assertions.assertEquals("[HEAD, GET, GET bytes=1048576-]", requests.toString());
+  }
+
+  /**
+   * Retries are limited
+   */
+  @Test
+  void abandoned() {
+    truncations.set(5);
+
+    IllegalStateException ise = Assertions.assertThrows(IllegalStateException.class,
+        () -> new Download(url()).attempts(2).to(FILE));
+
+    Assertions.assertEquals("Failed to download " + url(), ise.getMessage());
+    Assertions.assertFalse(Files.exists(FILE));
+  }
+
+  /**
+   * The download is split over several connections
+   */
+  @Test
+  void segmented() {
+    new Download(url()).connections(3).to(FILE);
+
+    Assertions.assertArrayEquals(PAYLOAD, QuietFiles.readAllBytes(FILE));
+    Assertions.assertEquals(
+        "[GET bytes=0-1048581, GET bytes=1048582-2097163, GET bytes=2097164-3145744, HEAD]",
+        requests.stream().sorted().toList().toString());
+  }
+
+  /**
+   * Dropped connections in a segmented download are resumed
+   */
+  @Test
+  void segmentedInterrupted() {
+    truncations.set(2);
+
+    new Download(url()).connections(2).to(FILE);
+
+    Assertions.assertArrayEquals(PAYLOAD, QuietFiles.readAllBytes(FILE));
+    Assertions.assertEquals(5, requests.size(), requests::toString);
+  }
+
+  /**
+   * Small downloads are not worth splitting, and servers that don't support ranges can't be split
+   */
+  @Test
+  void unsegmentable() {
+    ranges = false;
+
+    new Download(url()).connections(3).to(FILE);
+
+    Assertions.assertArrayEquals(PAYLOAD, QuietFiles.readAllBytes(FILE));
+    Assertions.assertEquals("[HEAD, GET]", requests.toString());
+  }
+
+  /**
+   * Non-HTTP sources are simply copied
+   */
+  @Test
+  void file() throws MalformedURLException {
+    Path source = ROOT.resolve("source");
+    QuietFiles.write(source, PAYLOAD);
+
+    new Download(source.toUri().toURL()).to(FILE);
+
+    Assertions.assertArrayEquals(PAYLOAD, QuietFiles.readAllBytes(FILE));
+  }
+
+  private URL url() {
+    try {
+      return URI.create("http://localhost:" + server.getAddress().getPort() + "/sdk").toURL();
+    } catch (MalformedURLException mue) {
+      throw new IllegalStateException(mue);
+    }
+  }
+
+  private void serve(HttpExchange exchange) throws IOException {
+    String range = exchange.getRequestHeaders().getFirst("Range");
+    String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+    requests.add(exchange.getRequestMethod() + (range != null ? " " + range : "")
+        + (ifRange != null ? " If-Range" : ""));
+    if (etag != null) {
+      exchange.getResponseHeaders().add("ETag", etag);
+    }
+    if (lastModified != null) {
+      exchange.getResponseHeaders().add("Last-Modified", lastModified);
+    }
+
+    int from = 0;
+    int to = PAYLOAD.length - 1;
+    Matcher m = range != null ? RANGE.matcher(range) : null;
+    boolean partial = ranges && m != null && m.matches()
+        && (ifRange == null || ifRange.equals(etag) || ifRange.equals(lastModified));
+    if (partial) {
+      from = Integer.parseInt(m.group(1));
+      if (!m.group(2).isEmpty()) {
+        to = Integer.parseInt(m.group(2));
+      }
+      exchange.getResponseHeaders().add("Content-Range",
+          "bytes " + from + "-" + to + "/" + PAYLOAD.length);
+    }
+    if (ranges) {
+      exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+    }
+    int length = to - from + 1;
+
+    if ("HEAD".equals(exchange.getRequestMethod())) {
+      exchange.getResponseHeaders().add("Content-Length", String.valueOf(length));
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+      return;
+    }
+
+    boolean truncate = truncations.getAndDecrement() > 0;
+    // a truncated response stands in for a dropped connection: we send a megabyte of the
+    // requested range, then end the response
+    exchange.sendResponseHeaders(partial ? 206 : 200, truncate ? 0 : length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(PAYLOAD, from, truncate ? 1024 * 1024 : length);
+    } finally {
+      exchange.close();
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+/**
+ * Exercises {@link Events} by recording deployment phases
+ */
+class EventsTest {
+
+  private static final Path ROOT = Paths.get("target", "EventsTest");
+  private static final Path APP = ROOT.resolve("app");
+
+  @BeforeEach
+  void clean() {
+    QuietFiles.recursiveDelete(ROOT);
+    QuietFiles.createDirectories(APP.resolve("dir"));
+    QuietFiles.write(APP.resolve("a.txt"), "a".getBytes(UTF_8));
+    QuietFiles.write(APP.resolve("dir/b.txt"), "bb".getBytes(UTF_8));
+  }
+
+  /**
+   * Staging emits delete and ingest events
+   */
+  @Test
+  void ingest() throws IOException {
+    List<RecordedEvent> events = record(() -> new Ingester(new Ingestion(), Platform.fromOsName())
+        .ingest(APP, ROOT.resolve("content"), ROOT.resolve("content.manifest")));
+
+    Assertions.assertEquals("""
+            dev.flowty.steamdeploy.Delete async=false
+            dev.flowty.steamdeploy.Ingest copied=2 copiedBytes=3 incremental=false staging=COPY""",
+        events.stream()
+            .map(e -> e.getEventType().getName() + switch (e.getEventType().getLabel()) {
+              case "Delete" -> " async=" + e.getBoolean("async");
+              case "Ingest" -> " copied=" + e.getInt("copied")
+                  + " copiedBytes=" + e.getLong("copiedBytes")
+                  + " incremental=" + e.getBoolean("incremental")
+                  + " staging=" + e.getString("staging");
+              default -> "";
+            })
+            .collect(Collectors.joining("\n")));
+  }
+
+  /**
+   * Commands are recorded without sensitive arguments
+   */
+  @Test
+  @EnabledOnOs({OS.LINUX, OS.MAC})
+  void command() throws IOException {
+    List<RecordedEvent> events = record(() -> CommandLine.here()
+        .run("/bin/sh", "-c", "echo secret; exit 2", "+login", "password"));
+
+    Assertions.assertEquals(1, events.size());
+    RecordedEvent event = events.get(0);
+    Assertions.assertEquals("sh -c +login", event.getString("command"));
+    Assertions.assertEquals(2, event.getInt("status"));
+    Assertions.assertEquals(1, event.getLong("lines"));
+    Assertions.assertNull(event.getString("killed"));
+    Assertions.assertTrue(event.getDuration("waited").toNanos() > 0);
+  }
+
+  private static List<RecordedEvent> record(Runnable action) throws IOException {
+    Path file = ROOT.resolve("recording.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(Events.Delete.class);
+      recording.enable(Events.Ingest.class);
+      recording.enable(Events.Command.class);
+      recording.start();
+      action.run();
+      recording.stop();
+      recording.dump(file);
+    }
+    return RecordingFile.readAllEvents(file);
+  }
+}
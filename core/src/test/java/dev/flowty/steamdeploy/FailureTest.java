@@ -0,0 +1,61 @@
+package dev.flowty.steamdeploy;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link Failure}
+ */
+class FailureTest {
+
+  /**
+   * Failures are classified by exit status and output
+   */
+  @Test
+  void classify() {
+    Assertions.assertEquals(Optional.empty(), classify(0, "anything"));
+    Assertions.assertEquals(Optional.of(Failure.TIMEOUT), classify(-1, "Logging in user"));
+    Assertions.assertEquals(Optional.of(Failure.RATE_LIMITED),
+        classify(5, "Logging in user 'bob' to Steam Public...FAILED (Rate Limit Exceeded)"));
+    Assertions.assertEquals(Optional.of(Failure.CREDENTIALS),
+        classify(5, "Logging in user 'bob' to Steam Public...FAILED (Invalid Password)"));
+    Assertions.assertEquals(Optional.of(Failure.CONFIGURATION),
+        classify(6, "ERROR! Failed to commit build for AppID 1234 : Failure",
+            "Access Denied"));
+    Assertions.assertEquals(Optional.of(Failure.NETWORK),
+        classify(6, "Uploading content...", "ERROR! Failed to upload chunk: Timeout"));
+    Assertions.assertEquals(Optional.of(Failure.SELF_UPDATE), classify(7, "Loading Steam API"));
+    Assertions.assertEquals(Optional.of(Failure.UNKNOWN), classify(1, "Something odd"));
+  }
+
+  /**
+   * Output that has been spilled from memory is classified in full, with the earliest-declared
+   * category winning
+   */
+  @Test
+  void spilled() {
+    OutputCapture capture = new OutputCapture(2, 100, Optional.empty());
+    Stream.of("ERROR! Failed to upload chunk: Timeout", "Access Denied", "a", "b", "c")
+        .forEach(capture::add);
+    Result result = capture.result(6);
+
+    Assertions.assertEquals("[b, c]", result.tail().toString());
+    Assertions.assertEquals(Optional.of(Failure.CONFIGURATION), Failure.classify(result));
+  }
+
+  /**
+   * Only some categories are worth retrying
+   */
+  @Test
+  void retryable() {
+    Assertions.assertEquals("[TIMEOUT, RATE_LIMITED, NETWORK, SELF_UPDATE]",
+        Stream.of(Failure.values()).filter(Failure::retryable).toList().toString());
+  }
+
+  private static Optional<Failure> classify(int status, String... output) {
+    return Failure.classify(new Result(status, List.of(output)));
+  }
+}
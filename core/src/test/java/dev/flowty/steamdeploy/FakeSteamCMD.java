@@ -0,0 +1,252 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A stand-in for the steamcmd executable, so that deployments can be exercised without steam
+ * credentials. Its behaviour is controlled by a scenario script of one instruction per line:
+ * <dl>
+ *   <dt><code>login [status]</code></dt>
+ *   <dd>Reports a login as the <code>+login</code> user, with the status defaulting to
+ *   <code>OK</code></dd>
+ *   <dt><code>print text</code></dt>
+ *   <dd>Prints a line, with <code>${user}</code> replaced by the login user</dd>
+ *   <dt><code>lines count length</code></dt>
+ *   <dd>Prints synthetic lines of the given length</dd>
+ *   <dt><code>replay file</code></dt>
+ *   <dd>Prints the lines of a recorded steamcmd output</dd>
+ *   <dt><code>progress bytes steps</code></dt>
+ *   <dd>Prints upload progress lines for the given amount of content</dd>
+ *   <dt><code>rate lines</code></dt>
+ *   <dd>Limits subsequent output to this many lines per second, or 0 for no limit</dd>
+ *   <dt><code>stall millis</code></dt>
+ *   <dd>Prints nothing for a while</dd>
+ *   <dt><code>build</code></dt>
+ *   <dd>Reads the <code>+run_app_build</code> script and reports building its depots. A missing
+ *   script is reported as steamcmd would, and ends the scenario with status 5</dd>
+ *   <dt><code>exit status</code></dt>
+ *   <dd>Ends the scenario with the given status. Scenarios otherwise end with status 0</dd>
+ * </dl>
+ * Blank lines and those starting with <code>#</code> are ignored. Only runs on platforms where the
+ * steamcmd executable is a shell script.
+ */
+final class FakeSteamCMD {
+
+  private static final Pattern APP_ID = Pattern.compile("\"AppId\"\\s+\"(\\d+)\"",
+      Pattern.CASE_INSENSITIVE);
+  private static final Pattern DEPOT = Pattern.compile("^\\s*\"(\\d+)\"\\s*$", Pattern.MULTILINE);
+
+  private final PrintStream out;
+  private final String user;
+  private final String script;
+  private long interval;
+  private long next = System.nanoTime();
+  private int builds;
+
+  private FakeSteamCMD(PrintStream out, String user, String script) {
+    this.out = out;
+    this.user = user;
+    this.script = script;
+  }
+
+  /**
+   * Installs the fake in place of the steamcmd executable, marking the installation as complete so
+   * that it is used as-is
+   *
+   * @param installation The steamcmd installation directory
+   * @param scenario     The scenario script
+   * @return The executable
+   */
+  static Path install(Path installation, String scenario) {
+    Path exe = installation.resolve(Platform.fromOsName().steamCmd);
+    Path file = installation.resolve("scenario.txt");
+    QuietFiles.createDirectories(installation);
+    QuietFiles.write(file, scenario.getBytes(UTF_8));
+    QuietFiles.write(exe, String.format("""
+            #!/bin/sh
+            exec '%s' -XX:TieredStopAtLevel=1 -cp '%s' %s '%s' "$@"
+            """,
+            Paths.get(System.getProperty("java.home"), "bin", "java"),
+            classpath(),
+            FakeSteamCMD.class.getName(),
+            file.toAbsolutePath())
+        .getBytes(UTF_8));
+    QuietFiles.wrap(() -> Files.setPosixFilePermissions(exe,
+        PosixFilePermissions.fromString("rwxr-xr-x")));
+    QuietFiles.write(installation.resolve(SteamCMD.INSTALLED_MARKER), new byte[0]);
+    return exe;
+  }
+
+  /**
+   * @return The location of this class, which is all that the fake needs at runtime
+   */
+  private static Path classpath() {
+    try {
+      return Paths.get(FakeSteamCMD.class.getProtectionDomain().getCodeSource().getLocation()
+          .toURI()).toAbsolutePath();
+    } catch (URISyntaxException use) {
+      throw new IllegalStateException(use);
+    }
+  }
+
+  /**
+   * @param args The scenario file, followed by the steamcmd arguments
+   */
+  public static void main(String[] args) throws IOException {
+    String user = "anonymous";
+    String script = null;
+    for (int i = 1; i < args.length - 1; i++) {
+      if ("+login".equals(args[i])) {
+        user = args[i + 1];
+      } else if ("+run_app_build".equals(args[i])) {
+        script = args[i + 1];
+      }
+    }
+    PrintStream out = new PrintStream(new BufferedOutputStream(
+        new FileOutputStream(FileDescriptor.out), 1 << 16), false, UTF_8);
+    int status = new FakeSteamCMD(out, user, script)
+        .run(Files.readAllLines(Paths.get(args[0]), UTF_8));
+    out.flush();
+    System.exit(status);
+  }
+
+  /**
+   * @param scenario The lines of the scenario script
+   * @return The exit status
+   */
+  private int run(List<String> scenario) throws IOException {
+    for (String line : scenario) {
+      String[] words = line.strip().split("\\s+", 2);
+      String arg = words.length > 1 ? words[1] : "";
+      switch (words[0].toLowerCase(Locale.ROOT)) {
+        case "" -> {
+          // ignored
+        }
+        case "login" -> print("Logging in user '" + user + "' to Steam Public..."
+            + (arg.isEmpty() ? "OK" : arg));
+        case "print" -> print(arg.replace("${user}", user));
+        case "lines" -> {
+          String[] counts = arg.split("\\s+");
+          int length = Integer.parseInt(counts[1]);
+          for (int i = 0, n = Integer.parseInt(counts[0]); i < n; i++) {
+            StringBuilder sb = new StringBuilder(length).append("line ").append(i).append(' ');
+            while (sb.length() < length) {
+              sb.append('x');
+            }
+            print(sb.toString());
+          }
+        }
+        case "replay" -> {
+          for (String recorded : Files.readAllLines(Paths.get(arg), UTF_8)) {
+            print(recorded);
+          }
+        }
+        case "progress" -> {
+          String[] counts = arg.split("\\s+");
+          long bytes = Long.parseLong(counts[0]);
+          int steps = Integer.parseInt(counts[1]);
+          for (int i = 1; i <= steps; i++) {
+            print(String.format(Locale.ROOT, "Uploading content %,d bytes : %.2f %%",
+                bytes * i / steps, 100.0 * i / steps));
+          }
+        }
+        case "rate" -> {
+          long rate = Long.parseLong(arg);
+          interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+          next = System.nanoTime();
+        }
+        case "stall" -> {
+          out.flush();
+          sleep(TimeUnit.MILLISECONDS.toNanos(Long.parseLong(arg)));
+          next = System.nanoTime();
+        }
+        case "build" -> {
+          if (!build()) {
+            return 5;
+          }
+        }
+        case "exit" -> {
+          return Integer.parseInt(arg);
+        }
+        default -> {
+          if (!words[0].startsWith("#")) {
+            throw new IllegalArgumentException("Unknown instruction '" + line + "'");
+          }
+        }
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * @return {@code false} if the build script could not be read
+   */
+  private boolean build() {
+    if (script == null || !Files.isRegularFile(Paths.get(script))) {
+      print("ERROR! Failed to load app build script file \"" + script + "\".");
+      return false;
+    }
+    String vdf;
+    try {
+      vdf = Files.readString(Paths.get(script), UTF_8);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    Matcher app = APP_ID.matcher(vdf);
+    String appId = app.find() ? app.group(1) : "0";
+    List<String> depots = new ArrayList<>();
+    Matcher depot = DEPOT.matcher(vdf);
+    while (depot.find()) {
+      depots.add(depot.group(1));
+    }
+    print("Building app " + appId);
+    for (String id : depots) {
+      print("Building depot " + id + "...");
+    }
+    print("Successfully finished AppID " + appId + " build (BuildID " + (1000 + builds++) + ").");
+    return true;
+  }
+
+  /**
+   * Prints a line, waiting as necessary to honour the rate limit
+   */
+  private void print(String line) {
+    if (interval > 0) {
+      sleep(next - System.nanoTime());
+      next = Math.max(next, System.nanoTime() - interval) + interval;
+      out.println(line);
+      out.flush();
+    } else {
+      out.println(line);
+    }
+  }
+
+  private static void sleep(long nanos) {
+    if (nanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("unexpected", ie);
+      }
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+/**
+ * Exercises {@link SteamCMD} deployments against {@link FakeSteamCMD}
+ */
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class FakeSteamCMDTest {
+
+  private static final Path ROOT = Paths.get("target", "FakeSteamCMDTest");
+  private static final Path INSTALL = ROOT.resolve("installation");
+  private static final Path APP = ROOT.resolve("app");
+
+  @BeforeEach
+  void clean() {
+    QuietFiles.recursiveDelete(ROOT);
+    QuietFiles.createDirectories(APP);
+    QuietFiles.write(APP.resolve("game.exe"), "content".getBytes(UTF_8));
+  }
+
+  /**
+   * An installation that was never marked as complete is prepared before it is used
+   */
+  @Test
+  void adopt() {
+    Path exe = FakeSteamCMD.install(INSTALL, """
+        login
+        """);
+    QuietFiles.recursiveDelete(INSTALL.resolve(SteamCMD.INSTALLED_MARKER));
+    QuietFiles.wrap(() -> Files.setPosixFilePermissions(exe,
+        PosixFilePermissions.fromString("rw-r--r--")));
+
+    new SteamCMD(INSTALL);
+
+    Assertions.assertTrue(Files.isExecutable(exe), "prepared");
+    Assertions.assertTrue(Files.exists(INSTALL.resolve(SteamCMD.INSTALLED_MARKER)), "marked");
+  }
+
+  /**
+   * A directory that holds something other than an installation is left alone
+   */
+  @Test
+  void foreign() {
+    QuietFiles.createDirectories(INSTALL);
+    QuietFiles.write(INSTALL.resolve("precious.txt"), "data".getBytes(UTF_8));
+
+    IllegalStateException ise = Assertions.assertThrows(IllegalStateException.class,
+        () -> new SteamCMD(INSTALL));
+
+    Assertions.assertTrue(ise.getMessage().contains("is neither empty nor a steamcmd installation"),
+        ise.getMessage());
+    Assertions.assertTrue(Files.exists(INSTALL.resolve("precious.txt")), "preserved");
+  }
+
+  /**
+   * Voluminous output is captured, progress is parsed and the build script is consumed
+   */
+  @Test
+  void deploy() {
+    FakeSteamCMD.install(INSTALL, """
+        login
+        lines 5000 120
+        progress 1048576 4
+        build
+        """);
+    List<Progress> events = new ArrayList<>();
+
+    Result result = new SteamCMD(INSTALL)
+        .withListener(events::add)
+        .deploy(new Auth("user"), APP, InjectableFile.appBuild(1234, "", false, false, 5678));
+
+    Assertions.assertEquals(0, result.status());
+    Assertions.assertEquals(5008, result.stdOut().size());
+    Assertions.assertEquals("Logging in user 'user' to Steam Public...OK",
+        result.stdOut().getFirst());
+    Assertions.assertEquals(List.of(
+            "Building app 1234",
+            "Building depot 5678...",
+            "Successfully finished AppID 1234 build (BuildID 1000)."),
+        result.stdOut().subList(5005, 5008));
+    Assertions.assertTrue(events.stream().anyMatch(e -> e instanceof Progress.Login),
+        events::toString);
+  }
+
+  /**
+   * Failing to write the report doesn't hide the build result
+   */
+  @Test
+  void report() {
+    FakeSteamCMD.install(INSTALL, """
+        login
+        build
+        """);
+    // a file where the report directory should be
+    QuietFiles.write(ROOT.resolve("reports"), new byte[0]);
+
+    Result result = new SteamCMD(INSTALL)
+        .withReport(ROOT.resolve("reports").resolve("report.json"))
+        .deploy(new Auth("user"), APP, InjectableFile.appBuild(1234, "", false, false, 5678));
+
+    Assertions.assertEquals(0, result.status());
+  }
+
+  /**
+   * Stalled builds are killed promptly after the inactivity timeout
+   */
+  @Test
+  void stall() {
+    FakeSteamCMD.install(INSTALL, """
+        login
+        rate 20
+        lines 10 20
+        stall 30000
+        build
+        """);
+
+    long start = System.nanoTime();
+    SteamCMD steamCMD = new SteamCMD(INSTALL)
+        .withTimeouts(t -> t.inactivity(Duration.ofMillis(500)));
+    IllegalStateException ise = Assertions.assertThrows(IllegalStateException.class,
+        () -> steamCMD.deploy(new Auth("user"), APP,
+            InjectableFile.appBuild(1234, "", false, false, 5678)));
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+    Assertions.assertEquals("build failed with status -1 (TIMEOUT)", ise.getMessage());
+    // ten lines at 20 per second, then the inactivity timeout
+    Assertions.assertTrue(elapsed.compareTo(Duration.ofMillis(1000)) > 0, elapsed::toString);
+    Assertions.assertTrue(elapsed.compareTo(Duration.ofSeconds(10)) < 0, elapsed::toString);
+  }
+
+  /**
+   * Failures are classified from the exit status and output, and transient ones are retried
+   */
+  @Test
+  void failure() {
+    FakeSteamCMD.install(INSTALL, """
+        login
+        print ERROR! Rate Limit Exceeded
+        exit 6
+        """);
+    List<Progress> events = new ArrayList<>();
+
+    IllegalStateException ise = Assertions.assertThrows(IllegalStateException.class,
+        () -> new SteamCMD(INSTALL)
+            .withListener(events::add)
+            .withRetry(r -> {
+              r.attempts(2);
+              r.delay(Duration.ofMillis(10));
+            })
+            .deploy(new Auth("user"), APP,
+                InjectableFile.appBuild(1234, "", false, false, 5678)));
+
+    Assertions.assertEquals("build failed with status 6 (RATE_LIMITED)", ise.getMessage());
+    Assertions.assertEquals(2, events.stream().filter(e -> e instanceof Progress.Login).count(),
+        "retried once");
+  }
+}
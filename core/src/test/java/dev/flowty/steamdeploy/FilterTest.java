@@ -0,0 +1,140 @@
+package dev.flowty.steamdeploy;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link Filter}
+ */
+class FilterTest {
+
+  private static final List<String> FILES = List.of(
+      "game.exe",
+      "game.pdb",
+      "bin/tool.exe",
+      "bin/tool.pdb",
+      "bin/cache/x.bin",
+      "data/cache",
+      "data/levels/1.dat");
+
+  /**
+   * Unanchored patterns match at any depth, anchored ones only from the root, and directory
+   * patterns exclude everything inside the directory
+   */
+  @Test
+  void excludes() {
+    assertAccepted(List.of(), List.of("*.pdb"),
+        "game.exe bin/tool.exe bin/cache/x.bin data/cache data/levels/1.dat");
+    assertAccepted(List.of(), List.of("/*.pdb"),
+        "game.exe bin/tool.exe bin/tool.pdb bin/cache/x.bin data/cache data/levels/1.dat");
+    assertAccepted(List.of(), List.of("cache/"),
+        "game.exe game.pdb bin/tool.exe bin/tool.pdb data/cache data/levels/1.dat");
+    assertAccepted(List.of(), List.of("cache"),
+        "game.exe game.pdb bin/tool.exe bin/tool.pdb data/levels/1.dat");
+    assertAccepted(List.of(), List.of("data/**/*.dat", "bin"),
+        "game.exe game.pdb data/cache");
+  }
+
+  /**
+   * Only included files are accepted, less any that are excluded
+   */
+  @Test
+  void includes() {
+    assertAccepted(List.of("*.exe"), List.of(),
+        "game.exe bin/tool.exe");
+    assertAccepted(List.of("bin/", "game.*"), List.of("*.pdb"),
+        "game.exe bin/tool.exe bin/cache/x.bin");
+    assertAccepted(List.of("data/**"), List.of(),
+        "data/cache data/levels/1.dat");
+  }
+
+  /**
+   * Directories are pruned by excludes but not by includes
+   */
+  @Test
+  void prunes() {
+    Filter filter = new Filter(List.of("*.exe"), List.of("cache/"));
+    Assertions.assertTrue(filter.prunes("bin/cache"));
+    Assertions.assertFalse(filter.prunes("bin"));
+    Assertions.assertFalse(filter.prunes("data"));
+  }
+
+  /**
+   * Exclusions are translated into steam's syntax, preserving whether they match at any depth
+   */
+  @Test
+  void steamExclusions() {
+    Assertions.assertEquals("[*.pdb, *\\*.pdb, cache\\*, *\\cache\\*, bin\\*.map]",
+        new Filter(List.of(), List.of("*.pdb", "cache/", "/bin/*.map"))
+            .steamExclusions().toString());
+    Assertions.assertEquals("[*.tmp, *\\*.tmp]",
+        new Filter(List.of(), List.of("**/*.tmp"))
+            .steamExclusions().toString());
+    Assertions.assertEquals("[foo\\bar, foo\\*\\bar]",
+        new Filter(List.of(), List.of("foo/**/bar"))
+            .steamExclusions().toString());
+    Assertions.assertEquals("[a\\b\\c\\*, a\\b\\*\\c\\*, "
+            + "a\\*\\b\\c\\*, a\\*\\b\\*\\c\\*]",
+        new Filter(List.of(), List.of("a/**/b/**/c/"))
+            .steamExclusions().toString());
+    Assertions.assertEquals("[logs\\*]",
+        new Filter(List.of(), List.of("/logs/**"))
+            .steamExclusions().toString());
+    Assertions.assertEquals("[*.log, *\\*.log]",
+        new Filter(List.of(), List.of("*.log", "**/*.log"))
+            .steamExclusions().toString(), "duplicates");
+  }
+
+  /**
+   * The steam patterns cover the same nested paths as the rules they came from
+   */
+  @Test
+  void steamNesting() {
+    for (String exclude : List.of("*.pdb", "cache/", "/bin/*.map", "**/*.tmp", "foo/**/bar")) {
+      Filter filter = new Filter(List.of(), List.of(exclude));
+      List<Pattern> steam = filter.steamExclusions().stream()
+          .map(FilterTest::steamRegex)
+          .toList();
+      for (String path : List.of("a.pdb", "x/y/a.pdb", "cache/a", "x/cache/a", "bin/a.map",
+          "x/bin/a.map", "a.tmp", "x/y/a.tmp", "foo/bar", "foo/x/bar", "x/foo/bar", "a.txt")) {
+        String steamPath = path.replace('/', '\\');
+        Assertions.assertEquals(!filter.accepts(path),
+            steam.stream().anyMatch(p -> p.matcher(steamPath).matches()),
+            exclude + " " + path);
+      }
+    }
+  }
+
+  /**
+   * Our understanding of steam's matching: wildcards against the whole relative path
+   */
+  private static Pattern steamRegex(String exclusion) {
+    StringBuilder regex = new StringBuilder();
+    for (char c : exclusion.toCharArray()) {
+      regex.append(c == '*' ? ".*" : c == '?' ? "." : Pattern.quote(String.valueOf(c)));
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  /**
+   * Bad patterns are rejected
+   */
+  @Test
+  void bad() {
+    IllegalArgumentException iae = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new Filter(List.of("/"), List.of()));
+    Assertions.assertEquals("Empty file pattern '/'", iae.getMessage());
+  }
+
+  private static void assertAccepted(List<String> includes, List<String> excludes,
+      String expected) {
+    Filter filter = new Filter(includes, excludes);
+    Assertions.assertEquals(expected, FILES.stream()
+            .filter(filter::accepts)
+            .collect(Collectors.joining(" ")),
+        filter::toString);
+  }
+}
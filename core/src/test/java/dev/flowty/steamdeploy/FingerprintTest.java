@@ -0,0 +1,145 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link Fingerprint}
+ */
+class FingerprintTest {
+
+  private static final Path ROOT = Paths.get("target", "FingerprintTest");
+  private static final Path APP = ROOT.resolve("app");
+  private static final Path STORE = ROOT.resolve("store");
+
+  private final Fingerprint fingerprint = new Fingerprint(STORE).parallelism(4);
+
+  @BeforeEach
+  void clean() {
+    QuietFiles.recursiveDelete(ROOT);
+    for (int i = 0; i < 10; i++) {
+      write("dir/file" + i + ".txt", "content " + i);
+      age("dir/file" + i + ".txt");
+    }
+  }
+
+  /**
+   * Content changes are detected, metadata changes are not. Changes that do not alter the size
+   * are detected even when the modification time is unreliable.
+   */
+  @Test
+  void content() throws Exception {
+    String initial = fingerprint.compute("app", APP);
+    Assertions.assertEquals(initial, fingerprint.compute("app", APP));
+
+    Files.setLastModifiedTime(APP.resolve("dir/file3.txt"), FileTime.from(Instant.EPOCH));
+    Assertions.assertEquals(initial, fingerprint.compute("app", APP),
+        "touched but identical");
+
+    write("dir/file3.txt", "changed!!");
+    FileTime mtime = Files.getLastModifiedTime(APP.resolve("dir/file3.txt"));
+    String changed = fingerprint.compute("app", APP);
+    Assertions.assertNotEquals(initial, changed);
+    // same size and modification time, but content has changed since it was hashed
+    write("dir/file3.txt", "content 3");
+    Files.setLastModifiedTime(APP.resolve("dir/file3.txt"), mtime);
+    Assertions.assertEquals(initial, fingerprint.compute("app", APP), "racy");
+
+    write("new.txt", "");
+    Assertions.assertNotEquals(initial, fingerprint.compute("app", APP), "added");
+  }
+
+  /**
+   * Extra files contribute to the fingerprint
+   */
+  @Test
+  void extras() {
+    Path script = ROOT.resolve("script.vdf");
+    QuietFiles.write(script, "a".getBytes(UTF_8));
+    String withA = fingerprint.compute("app", APP, script);
+    Assertions.assertNotEquals(fingerprint.compute("app", APP), withA);
+    QuietFiles.write(script, "b".getBytes(UTF_8));
+    Assertions.assertNotEquals(withA, fingerprint.compute("app", APP, script));
+  }
+
+  /**
+   * Depot file mappings contribute to the fingerprint
+   */
+  @Test
+  void mappings() {
+    Depot all = new Depot(1001, APP);
+    String initial = fingerprint.compute("depot", all);
+    Assertions.assertEquals(initial, fingerprint.compute("depot", new Depot(1001, APP)));
+    Assertions.assertNotEquals(initial, fingerprint.compute("depot", APP),
+        "the default mapping is part of the fingerprint");
+
+    Assertions.assertNotEquals(initial, fingerprint.compute("depot", new Depot(1001, APP,
+            List.of(new Mapping("dir/*", "bin", true)))),
+        "mapped elsewhere");
+    Assertions.assertNotEquals(initial, fingerprint.compute("depot", new Depot(1001, APP,
+            List.of(new Mapping("*", ".", false)))),
+        "not recursive");
+  }
+
+  /**
+   * Hashes of files with unchanged size and modification time are taken from the cache
+   */
+  @Test
+  void cached() {
+    String initial = fingerprint.compute("app", APP);
+    Path cache = STORE.resolve("app.hashes");
+    try (Stream<String> lines = QuietFiles.lines(cache)) {
+      QuietFiles.write(cache, lines
+          .map(l -> l.replaceAll("\t[0-9a-f]{64}\t", "\t" + "0".repeat(64) + "\t"))
+          .collect(Collectors.joining("\n", "", "\n"))
+          .getBytes(UTF_8));
+    }
+    Assertions.assertNotEquals(initial, fingerprint.compute("app", APP),
+        "the corrupted cache was trusted");
+    Assertions.assertEquals(initial, new Fingerprint(STORE).compute("other", APP),
+        "caches are per-key");
+  }
+
+  /**
+   * Deployments are recorded per-key
+   */
+  @Test
+  void record() {
+    Assertions.assertEquals(Optional.empty(), fingerprint.last("app-1-depot-2"));
+
+    Fingerprint.Deployment deployment = new Fingerprint.Deployment(
+        "abc", Instant.ofEpochMilli(1234), Duration.ofSeconds(90));
+    fingerprint.record("app-1-depot-2", deployment);
+
+    Assertions.assertEquals(Optional.of(deployment), fingerprint.last("app-1-depot-2"));
+    Assertions.assertEquals(Optional.empty(), fingerprint.last("app-1-depot-3"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> fingerprint.last("../x"));
+  }
+
+  /**
+   * Sets the modification time well into the past, so that the content hash can be trusted
+   */
+  private static void age(String path) {
+    QuietFiles.wrap(() -> Files.setLastModifiedTime(APP.resolve(path),
+        FileTime.from(Instant.now().minusSeconds(60))));
+  }
+
+  private static void write(String path, String content) {
+    Path file = APP.resolve(path);
+    QuietFiles.createDirectories(file.getParent());
+    QuietFiles.write(file, content.getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,247 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link Ingester}
+ */
+class IngesterTest {
+
+  private static final Path ROOT = Paths.get("target", "IngesterTest");
+  private static final Path APP = ROOT.resolve("app");
+  private static final Path CONTENT = ROOT.resolve("content");
+  private static final Path MANIFEST = ROOT.resolve("content.manifest");
+
+  @BeforeEach
+  void clean() {
+    QuietFiles.recursiveDelete(ROOT);
+    write("a.txt", "a");
+    write("dir/b.txt", "bb");
+    write("dir/sub/c.txt", "ccc");
+  }
+
+  /**
+   * Shows that the default behaviour copies everything every time
+   */
+  @Test
+  void replace() {
+    Ingester ingester = new Ingester(new Ingestion(), Platform.fromOsName());
+
+    assertStats("Stats[copied=3, copiedBytes=6, skipped=0, skippedBytes=0, removed=0]",
+        ingester.ingest(APP, CONTENT, MANIFEST));
+    assertStats("Stats[copied=3, copiedBytes=6, skipped=0, skippedBytes=0, removed=0]",
+        ingester.ingest(APP, CONTENT, MANIFEST));
+    assertContent("""
+        a.txt a
+        dir
+        dir/b.txt bb
+        dir/sub
+        dir/sub/c.txt ccc""");
+  }
+
+  /**
+   * Shows that incremental ingestion only copies what has changed
+   */
+  @Test
+  void incremental() {
+    Ingestion settings = new Ingestion();
+    settings.incremental(true);
+    Ingester ingester = new Ingester(settings, Platform.fromOsName());
+
+    assertStats("Stats[copied=3, copiedBytes=6, skipped=0, skippedBytes=0, removed=0]",
+        ingester.ingest(APP, CONTENT, MANIFEST));
+    assertStats("Stats[copied=0, copiedBytes=0, skipped=3, skippedBytes=6, removed=0]",
+        ingester.ingest(APP, CONTENT, MANIFEST));
+
+    write("a.txt", "aaaa");
+    QuietFiles.recursiveDelete(APP.resolve("dir/sub"));
+    write("dir/d.txt", "d");
+
+    assertStats("Stats[copied=2, copiedBytes=5, skipped=1, skippedBytes=2, removed=2]",
+        ingester.ingest(APP, CONTENT, MANIFEST));
+    assertContent("""
+        a.txt aaaa
+        dir
+        dir/b.txt bb
+        dir/d.txt d""");
+  }
+
+  /**
+   * Shows that filtered files are never staged, and that files which become excluded are removed
+   * from incrementally-staged content
+   */
+  @Test
+  void filtered() {
+    write("a.pdb", "symbols");
+    write("dir/cache/big.bin", "lots");
+    Ingestion settings = new Ingestion();
+    settings.incremental(true);
+    Ingester ingester = new Ingester(settings, Platform.fromOsName());
+
+    assertStats("Stats[copied=5, copiedBytes=17, skipped=0, skippedBytes=0, removed=0]",
+        ingester.ingest(APP, CONTENT, MANIFEST));
+
+    settings.filter(new Filter(List.of(), List.of("*.pdb", "cache/")));
+    assertStats("Stats[copied=0, copiedBytes=0, skipped=3, skippedBytes=6, removed=3]",
+        ingester.ingest(APP, CONTENT, MANIFEST));
+    assertContent("""
+        a.txt a
+        dir
+        dir/b.txt bb
+        dir/sub
+        dir/sub/c.txt ccc""");
+  }
+
+  /**
+   * Shows that hashing detects content changes that preserve size and modification time
+   */
+  @Test
+  void hashing() {
+    Ingestion settings = new Ingestion();
+    settings.incremental(true);
+    settings.hashing(true);
+    Ingester ingester = new Ingester(settings, Platform.fromOsName());
+
+    ingester.ingest(APP, CONTENT, MANIFEST);
+    Path a = APP.resolve("a.txt");
+    FileTime mtime = QuietFiles.wrap(() -> Files.getLastModifiedTime(a));
+    write("a.txt", "z");
+    QuietFiles.wrap(() -> Files.setLastModifiedTime(a, mtime));
+
+    assertStats("Stats[copied=1, copiedBytes=1, skipped=2, skippedBytes=5, removed=0]",
+        ingester.ingest(APP, CONTENT, MANIFEST));
+    assertContent("""
+        a.txt z
+        dir
+        dir/b.txt bb
+        dir/sub
+        dir/sub/c.txt ccc""");
+  }
+
+  /**
+   * Shows that linked files share storage with the application
+   */
+  @Test
+  void link() {
+    Ingestion settings = new Ingestion();
+    settings.staging(Staging.LINK);
+    Ingester ingester = new Ingester(settings, Platform.fromOsName());
+
+    assertStats("Stats[copied=3, copiedBytes=6, skipped=0, skippedBytes=0, removed=0]",
+        ingester.ingest(APP, CONTENT, MANIFEST));
+    Assertions.assertTrue(QuietFiles.wrap(() -> Files.isSameFile(
+        APP.resolve("dir/b.txt"), CONTENT.resolve("dir/b.txt"))));
+    assertContent("""
+        a.txt a
+        dir
+        dir/b.txt bb
+        dir/sub
+        dir/sub/c.txt ccc""");
+  }
+
+  /**
+   * Shows that cloning falls back to copying where it is not supported
+   */
+  @Test
+  void reflink() {
+    Ingestion settings = new Ingestion();
+    settings.staging(Staging.REFLINK);
+    Ingester ingester = new Ingester(settings, Platform.fromOsName());
+
+    assertStats("Stats[copied=3, copiedBytes=6, skipped=0, skippedBytes=0, removed=0]",
+        ingester.ingest(APP, CONTENT, MANIFEST));
+    assertContent("""
+        a.txt a
+        dir
+        dir/b.txt bb
+        dir/sub
+        dir/sub/c.txt ccc""");
+  }
+
+  /**
+   * Shows that files can be staged concurrently
+   */
+  @Test
+  void parallel() {
+    for (int i = 0; i < 100; i++) {
+      write("many/" + (i % 7) + "/" + i + ".txt", String.valueOf(i));
+    }
+    Ingestion settings = new Ingestion();
+    settings.parallelism(4);
+    Ingester ingester = new Ingester(settings, Platform.fromOsName());
+
+    assertStats("Stats[copied=103, copiedBytes=196, skipped=0, skippedBytes=0, removed=0]",
+        ingester.ingest(APP, CONTENT, MANIFEST));
+    Assertions.assertEquals(Manifest.scan(APP, true).entries().keySet(),
+        Manifest.scan(CONTENT, true).entries().keySet());
+  }
+
+  /**
+   * Shows that all files are attempted when some fail, and that the failures are reported in path
+   * order regardless of which thread got to them first
+   */
+  @Test
+  void failures() {
+    Ingestion settings = new Ingestion();
+    settings.incremental(true);
+    settings.parallelism(4);
+    Ingester ingester = new Ingester(settings, Platform.fromOsName());
+    ingester.ingest(APP, CONTENT, MANIFEST);
+
+    // non-empty directories where the changed files should be staged
+    for (String path : List.of("dir/sub/c.txt", "a.txt")) {
+      write(path, "changed");
+      QuietFiles.recursiveDelete(CONTENT.resolve(path));
+      QuietFiles.createDirectories(CONTENT.resolve(path));
+      QuietFiles.write(CONTENT.resolve(path).resolve("blocker"), new byte[0]);
+    }
+    write("dir/b.txt", "changed");
+
+    IllegalStateException ise = Assertions.assertThrows(IllegalStateException.class,
+        () -> ingester.ingest(APP, CONTENT, MANIFEST));
+    Assertions.assertEquals(
+        "Failed to stage 2 of 3 files, starting with " + APP.resolve("a.txt"),
+        ise.getMessage());
+    Assertions.assertTrue(ise.getCause().getMessage().endsWith("a.txt"),
+        ise.getCause().getMessage());
+    Assertions.assertEquals(1, ise.getSuppressed().length);
+    Assertions.assertTrue(ise.getSuppressed()[0].getMessage().endsWith("c.txt"),
+        ise.getSuppressed()[0].getMessage());
+    Assertions.assertEquals("changed", new String(
+        QuietFiles.readAllBytes(CONTENT.resolve("dir/b.txt")), UTF_8), "others still staged");
+  }
+
+  private static void write(String path, String content) {
+    Path file = APP.resolve(path);
+    QuietFiles.createDirectories(file.getParent());
+    QuietFiles.write(file, content.getBytes(UTF_8));
+  }
+
+  private static void assertStats(String expected, Ingester.Stats actual) {
+    Assertions.assertEquals(expected, actual.toString());
+  }
+
+  private static void assertContent(String expected) {
+    try (Stream<Path> paths = QuietFiles.walk(CONTENT)) {
+      Assertions.assertEquals(expected, paths
+          .filter(p -> !p.equals(CONTENT))
+          .map(p -> Manifest.key(CONTENT, p)
+              + (p.toFile().isFile()
+              ? " " + new String(QuietFiles.readAllBytes(p), UTF_8)
+              : ""))
+          .sorted()
+          .collect(joining("\n")));
+    }
+  }
+}
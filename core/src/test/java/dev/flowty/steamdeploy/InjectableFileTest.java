@@ -1,8 +1,10 @@
 package dev.flowty.steamdeploy;
 
+import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -37,4 +39,161 @@ class InjectableFileTest {
             + "}\n",
         new String(QuietFiles.readAllBytes(destination), StandardCharsets.UTF_8));
   }
-}
\ No newline at end of file
+
+  @Test
+  void appBuildInPlace() {
+    Path content = Paths.get("path", "to", "app");
+    Path output = Paths.get("path", "to", "output");
+    InjectableFile actual = InjectableFile.appBuild(1234, "", true, false, 5678, content, output);
+    Path destination = Paths.get("target/InjectableFileTest/appBuildInPlace.vdf");
+    actual.writeTo(destination);
+    Assertions.assertEquals(""
+            + "\"AppBuild\"\n"
+            + "{\n"
+            + "  \"AppId\" \"1234\"\n"
+            + "  \"Desc\" \"\"\n"
+            + "  \"verbose\" \"1\"\n"
+            + "  \"preview\" \"0\"\n"
+            + "  \"ContentRoot\" \"" + content.toAbsolutePath() + File.separator + "\"\n"
+            + "  \"BuildOutput\" \"" + output.toAbsolutePath() + File.separator + "\"\n"
+            + "  \"Depots\"\n"
+            + "  {\n"
+            + "    \"5678\"\n"
+            + "    {\n"
+            + "      \"FileMapping\"\n"
+            + "      {\n"
+            + "        \"LocalPath\" \"*\"\n"
+            + "        \"DepotPath\" \".\"\n"
+            + "        \"recursive\" \"1\"\n"
+            + "      }\n"
+            + "    }\n"
+            + "  }\n"
+            + "}\n",
+        new String(QuietFiles.readAllBytes(destination), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void multiDepot() {
+    InjectableFile actual = InjectableFile.appBuild(1234, "", false, false, List.of(
+        new Depot(1001, Paths.get("linux")),
+        new Depot(1002, Paths.get("windows"), List.of(
+            new Mapping("bin\\*.exe", "bin", false),
+            new Mapping("data\\*", "data", true)))));
+    Path destination = Paths.get("target/InjectableFileTest/multiDepot.vdf");
+    actual.writeTo(destination);
+    Assertions.assertEquals(""
+            + "\"AppBuild\"\n"
+            + "{\n"
+            + "  \"AppId\" \"1234\"\n"
+            + "  \"Desc\" \"\"\n"
+            + "  \"verbose\" \"0\"\n"
+            + "  \"preview\" \"0\"\n"
+            + "  \"ContentRoot\" \"..\\content\\\"\n"
+            + "  \"BuildOutput\" \"..\\output\\\"\n"
+            + "  \"Depots\"\n"
+            + "  {\n"
+            + "    \"1001\"\n"
+            + "    {\n"
+            + "      \"ContentRoot\" \"..\\content\\1001\\\"\n"
+            + "      \"FileMapping\"\n"
+            + "      {\n"
+            + "        \"LocalPath\" \"*\"\n"
+            + "        \"DepotPath\" \".\"\n"
+            + "        \"recursive\" \"1\"\n"
+            + "      }\n"
+            + "    }\n"
+            + "    \"1002\"\n"
+            + "    {\n"
+            + "      \"ContentRoot\" \"..\\content\\1002\\\"\n"
+            + "      \"FileMapping\"\n"
+            + "      {\n"
+            + "        \"LocalPath\" \"bin\\*.exe\"\n"
+            + "        \"DepotPath\" \"bin\"\n"
+            + "        \"recursive\" \"0\"\n"
+            + "      }\n"
+            + "      \"FileMapping\"\n"
+            + "      {\n"
+            + "        \"LocalPath\" \"data\\*\"\n"
+            + "        \"DepotPath\" \"data\"\n"
+            + "        \"recursive\" \"1\"\n"
+            + "      }\n"
+            + "    }\n"
+            + "  }\n"
+            + "}\n",
+        new String(QuietFiles.readAllBytes(destination), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void multiDepotInPlace() {
+    Path linux = Paths.get("path", "to", "linux");
+    Path output = Paths.get("path", "to", "output");
+    InjectableFile actual = InjectableFile.appBuild(1234, "", false, true, List.of(
+        new Depot(1001, linux)), output);
+    Path destination = Paths.get("target/InjectableFileTest/multiDepotInPlace.vdf");
+    actual.writeTo(destination);
+    Assertions.assertEquals(""
+            + "\"AppBuild\"\n"
+            + "{\n"
+            + "  \"AppId\" \"1234\"\n"
+            + "  \"Desc\" \"\"\n"
+            + "  \"verbose\" \"0\"\n"
+            + "  \"preview\" \"1\"\n"
+            + "  \"BuildOutput\" \"" + output.toAbsolutePath() + File.separator + "\"\n"
+            + "  \"Depots\"\n"
+            + "  {\n"
+            + "    \"1001\"\n"
+            + "    {\n"
+            + "      \"ContentRoot\" \"" + linux.toAbsolutePath() + File.separator + "\"\n"
+            + "      \"FileMapping\"\n"
+            + "      {\n"
+            + "        \"LocalPath\" \"*\"\n"
+            + "        \"DepotPath\" \".\"\n"
+            + "        \"recursive\" \"1\"\n"
+            + "      }\n"
+            + "    }\n"
+            + "  }\n"
+            + "}\n",
+        new String(QuietFiles.readAllBytes(destination), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void exclusions() {
+    InjectableFile actual = InjectableFile.appBuild(1234, "", false, false, 5678,
+        new Filter(List.of("*.exe"), List.of("*.pdb", "cache/")));
+    Path destination = Paths.get("target/InjectableFileTest/exclusions.vdf");
+    actual.writeTo(destination);
+    Assertions.assertEquals(""
+            + "\"AppBuild\"\n"
+            + "{\n"
+            + "  \"AppId\" \"1234\"\n"
+            + "  \"Desc\" \"\"\n"
+            + "  \"verbose\" \"0\"\n"
+            + "  \"preview\" \"0\"\n"
+            + "  \"ContentRoot\" \"..\\content\\\"\n"
+            + "  \"BuildOutput\" \"..\\output\\\"\n"
+            + "  \"Depots\"\n"
+            + "  {\n"
+            + "    \"5678\"\n"
+            + "    {\n"
+            + "      \"FileMapping\"\n"
+            + "      {\n"
+            + "        \"LocalPath\" \"*\"\n"
+            + "        \"DepotPath\" \".\"\n"
+            + "        \"recursive\" \"1\"\n"
+            + "      }\n"
+            + "      \"FileExclusion\" \"*.pdb\"\n"
+            + "      \"FileExclusion\" \"*\\*.pdb\"\n"
+            + "      \"FileExclusion\" \"cache\\*\"\n"
+            + "      \"FileExclusion\" \"*\\cache\\*\"\n"
+            + "    }\n"
+            + "  }\n"
+            + "}\n",
+        new String(QuietFiles.readAllBytes(destination), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void noMappings() {
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new Depot(1001, Paths.get("linux"), List.of()));
+  }
+}
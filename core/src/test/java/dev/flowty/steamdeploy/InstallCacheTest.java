@@ -0,0 +1,312 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link InstallCache} with a local stand-in for the SDK archive
+ */
+class InstallCacheTest {
+
+  private static final Path ROOT = Paths.get("target", "InstallCacheTest");
+  private static final Path ARCHIVE = ROOT.resolve("sdk");
+  private static final Platform PLATFORM = Platform.fromOsName();
+
+  private final InstallCache cache = new InstallCache(ROOT.resolve("cache"));
+  private final List<String> requests = new CopyOnWriteArrayList<>();
+  private HttpServer server;
+
+  @BeforeEach
+  void clean() throws IOException {
+    QuietFiles.recursiveDelete(ROOT);
+    QuietFiles.createDirectories(ROOT);
+    archive("a", "b");
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/sdk", this::serve);
+    server.start();
+  }
+
+  @AfterEach
+  void stop() {
+    server.stop(0);
+  }
+
+  /**
+   * Shows that the archive is only downloaded once
+   */
+  @Test
+  void reuse() {
+    cache.installTo(PLATFORM, source(), ROOT.resolve("first"));
+    Assertions.assertEquals("""
+            a.txt a
+            dir
+            dir/b.txt b""",
+        list(ROOT.resolve("first")));
+
+    QuietFiles.recursiveDelete(ARCHIVE);
+    cache.installTo(PLATFORM, source(), ROOT.resolve("second"));
+    Assertions.assertEquals(list(ROOT.resolve("first")), list(ROOT.resolve("second")));
+  }
+
+  /**
+   * Shows that corrupted cache entries are detected and replaced
+   */
+  @Test
+  void corruption() {
+    cache.installTo(PLATFORM, source(), ROOT.resolve("first"));
+    try (Stream<Path> entries = QuietFiles.walk(ROOT.resolve("cache"))) {
+      Path tree = entries.filter(p -> p.endsWith("tree")).findFirst().orElseThrow();
+      QuietFiles.write(tree.resolve("a.txt"), "corrupted!".getBytes(UTF_8));
+    }
+
+    cache.installTo(PLATFORM, source(), ROOT.resolve("second"));
+    Assertions.assertEquals(list(ROOT.resolve("first")), list(ROOT.resolve("second")));
+  }
+
+  /**
+   * Shows that a pinned archive checksum is enforced
+   */
+  @Test
+  void pinned() {
+    cache.expectingArchive("0123456789abcdef");
+    IllegalStateException ise = Assertions.assertThrows(IllegalStateException.class,
+        () -> cache.installTo(PLATFORM, source(), ROOT.resolve("first")));
+    Assertions.assertTrue(ise.getMessage().endsWith("expected 0123456789abcdef"),
+        ise.getMessage());
+
+    cache.expectingArchive(Manifest.hash(ARCHIVE));
+    cache.installTo(PLATFORM, source(), ROOT.resolve("first"));
+    Assertions.assertEquals("""
+            a.txt a
+            dir
+            dir/b.txt b""",
+        list(ROOT.resolve("first")));
+  }
+
+  /**
+   * Shows that an unchanged archive is revalidated without being transferred
+   */
+  @Test
+  void revalidation() {
+    cache.installTo(PLATFORM, http(), ROOT.resolve("first"));
+    cache.installTo(PLATFORM, http(), ROOT.resolve("second"));
+
+    Assertions.assertEquals(list(ROOT.resolve("first")), list(ROOT.resolve("second")));
+    Assertions.assertEquals("[HEAD, GET, HEAD If-None-Match]", requests.toString());
+  }
+
+  /**
+   * Shows that the source is not checked again within the revalidation window
+   */
+  @Test
+  void window() {
+    cache.revalidatingAfter(Duration.ofHours(1));
+    cache.installTo(PLATFORM, http(), ROOT.resolve("first"));
+    archive("c", "d");
+    cache.installTo(PLATFORM, http(), ROOT.resolve("second"));
+
+    Assertions.assertEquals(list(ROOT.resolve("first")), list(ROOT.resolve("second")));
+    Assertions.assertEquals("[HEAD, GET]", requests.toString());
+
+    cache.revalidatingAfter(Duration.ZERO);
+    cache.installTo(PLATFORM, http(), ROOT.resolve("third"));
+    Assertions.assertEquals("""
+            a.txt c
+            dir
+            dir/b.txt d""",
+        list(ROOT.resolve("third")));
+    Assertions.assertEquals("[HEAD, GET, HEAD If-None-Match, GET]", requests.toString());
+  }
+
+  /**
+   * Shows that a changed archive is downloaded, and that previous versions are kept
+   */
+  @Test
+  void changed() {
+    cache.installTo(PLATFORM, http(), ROOT.resolve("first"));
+    archive("c", "d");
+    cache.installTo(PLATFORM, http(), ROOT.resolve("second"));
+
+    Assertions.assertEquals("""
+            a.txt c
+            dir
+            dir/b.txt d""",
+        list(ROOT.resolve("second")));
+    Assertions.assertEquals("[HEAD, GET, HEAD If-None-Match, GET]", requests.toString());
+    Assertions.assertEquals(2, versions());
+
+    cache.retaining(1);
+    cache.installTo(PLATFORM, http(), ROOT.resolve("third"));
+    Assertions.assertEquals(list(ROOT.resolve("second")), list(ROOT.resolve("third")));
+    QuietFiles.awaitReaping(Duration.ofSeconds(10));
+    Assertions.assertEquals(1, versions());
+  }
+
+  /**
+   * Shows that the cached version is used if the source can't be reached
+   */
+  @Test
+  void offline() {
+    cache.installTo(PLATFORM, http(), ROOT.resolve("first"));
+    server.stop(0);
+    cache.installTo(PLATFORM, http(), ROOT.resolve("second"));
+
+    Assertions.assertEquals(list(ROOT.resolve("first")), list(ROOT.resolve("second")));
+  }
+
+  /**
+   * Shows that installations from one cache in the same JVM wait for each other rather than
+   * failing on the file lock
+   */
+  @Test
+  void concurrent() throws Exception {
+    List<Path> destinations = List.of(ROOT.resolve("first"), ROOT.resolve("second"));
+    CyclicBarrier start = new CyclicBarrier(destinations.size());
+    try (ExecutorService pool = Executors.newFixedThreadPool(destinations.size())) {
+      List<Future<?>> installs = destinations.stream()
+          .<Future<?>>map(d -> pool.submit(() -> {
+            // separate instances, as in parallel builds
+            InstallCache instance = new InstallCache(ROOT.resolve("cache"));
+            start.await();
+            instance.installTo(PLATFORM, http(), d);
+            return null;
+          }))
+          .toList();
+      for (Future<?> install : installs) {
+        install.get();
+      }
+    }
+
+    Assertions.assertEquals("""
+            a.txt a
+            dir
+            dir/b.txt b""",
+        list(ROOT.resolve("first")));
+    Assertions.assertEquals(list(ROOT.resolve("first")), list(ROOT.resolve("second")));
+    Assertions.assertEquals(1, requests.stream().filter("GET"::equals).count(), requests::toString);
+  }
+
+  private Optional<URL> http() {
+    try {
+      return Optional.of(URI.create(
+          "http://localhost:" + server.getAddress().getPort() + "/sdk").toURL());
+    } catch (MalformedURLException mue) {
+      throw new IllegalStateException(mue);
+    }
+  }
+
+  private void serve(HttpExchange exchange) throws IOException {
+    String etag = "\"" + Manifest.hash(ARCHIVE) + "\"";
+    String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+    requests.add(exchange.getRequestMethod() + (ifNoneMatch != null ? " If-None-Match" : ""));
+    exchange.getResponseHeaders().add("ETag", etag);
+
+    if (etag.equals(ifNoneMatch)) {
+      exchange.sendResponseHeaders(304, -1);
+    } else if ("HEAD".equals(exchange.getRequestMethod())) {
+      exchange.getResponseHeaders().add("Content-Length", String.valueOf(Files.size(ARCHIVE)));
+      exchange.sendResponseHeaders(200, -1);
+    } else {
+      exchange.sendResponseHeaders(200, Files.size(ARCHIVE));
+      try (OutputStream out = exchange.getResponseBody()) {
+        Files.copy(ARCHIVE, out);
+      }
+    }
+    exchange.close();
+  }
+
+  /**
+   * @return The number of cached archive versions
+   */
+  private static long versions() {
+    try (Stream<Path> entries = QuietFiles.walk(ROOT.resolve("cache"))) {
+      return entries.filter(p -> p.endsWith("archive")).count();
+    }
+  }
+
+  private static Optional<URL> source() {
+    try {
+      return Optional.of(ARCHIVE.toUri().toURL());
+    } catch (MalformedURLException mue) {
+      throw new IllegalStateException(mue);
+    }
+  }
+
+  /**
+   * Builds an archive in the format that the current platform expects
+   *
+   * @param a The content of <code>a.txt</code>
+   * @param b The content of <code>dir/b.txt</code>
+   */
+  private static void archive(String a, String b) {
+    try (OutputStream out = Files.newOutputStream(ARCHIVE)) {
+      if (PLATFORM == Platform.WINDOWS) {
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+          zip.putNextEntry(new ZipEntry("a.txt"));
+          zip.write(a.getBytes(UTF_8));
+          zip.putNextEntry(new ZipEntry("dir/b.txt"));
+          zip.write(b.getBytes(UTF_8));
+        }
+      } else {
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(
+            new GzipCompressorOutputStream(out))) {
+          for (String[] file : new String[][]{{"a.txt", a}, {"dir/b.txt", b}}) {
+            byte[] content = file[1].getBytes(UTF_8);
+            TarArchiveEntry entry = new TarArchiveEntry(file[0]);
+            entry.setSize(content.length);
+            tar.putArchiveEntry(entry);
+            tar.write(content);
+            tar.closeArchiveEntry();
+          }
+        }
+      }
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  private static String list(Path dir) {
+    try (Stream<Path> paths = QuietFiles.walk(dir)) {
+      return paths
+          .filter(p -> !p.equals(dir))
+          .map(p -> Manifest.key(dir, p)
+              + (Files.isRegularFile(p)
+              ? " " + new String(QuietFiles.readAllBytes(p), UTF_8)
+              : ""))
+          .sorted()
+          .collect(joining("\n"));
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link LoginCache}
+ */
+class LoginCacheTest {
+
+  private static final Path ROOT = Paths.get("target", "LoginCacheTest");
+  private static final Path CONFIG = ROOT.resolve("config", "config.vdf");
+
+  private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+  private final LoginCache cache = new LoginCache(CONFIG, InstantSource.fixed(NOW));
+
+  @BeforeEach
+  void clean() {
+    QuietFiles.recursiveDelete(ROOT);
+  }
+
+  /**
+   * Unchanged auth content is left in place, so any refresh by steamcmd is preserved
+   */
+  @Test
+  void inject() throws Exception {
+    Assertions.assertTrue(cache.inject(InjectableFile.of("first")));
+    Assertions.assertEquals("first", Files.readString(CONFIG, UTF_8));
+
+    Files.writeString(CONFIG, "refreshed by steamcmd", UTF_8);
+    Assertions.assertFalse(cache.inject(InjectableFile.of("first")));
+    Assertions.assertEquals("refreshed by steamcmd", Files.readString(CONFIG, UTF_8));
+
+    Assertions.assertTrue(cache.inject(InjectableFile.of("second")));
+    Assertions.assertEquals("second", Files.readString(CONFIG, UTF_8));
+
+    Files.delete(CONFIG);
+    Assertions.assertTrue(cache.inject(InjectableFile.of("second")), "missing file");
+    Assertions.assertEquals("second", Files.readString(CONFIG, UTF_8));
+
+    try (var files = Files.list(CONFIG.getParent())) {
+      Assertions.assertEquals("[config.vdf, config.vdf.steamdeploy]",
+          files.map(p -> p.getFileName().toString()).sorted().toList().toString(),
+          "no temporary files left behind");
+    }
+  }
+
+  /**
+   * Logins are trusted within the freshness window, for the same user and auth content
+   */
+  @Test
+  void fresh() {
+    Duration window = Duration.ofMinutes(10);
+    cache.inject(InjectableFile.of("auth"));
+    Assertions.assertFalse(cache.fresh("user", window), "never logged in");
+
+    cache.validated("user");
+    Assertions.assertTrue(cache.fresh("user", window));
+    Assertions.assertFalse(cache.fresh("other", window), "different user");
+
+    LoginCache later = new LoginCache(CONFIG, InstantSource.fixed(NOW.plus(window)));
+    Assertions.assertTrue(later.fresh("user", window), "edge of window");
+    LoginCache stale = new LoginCache(CONFIG, InstantSource.fixed(NOW.plusSeconds(601)));
+    Assertions.assertFalse(stale.fresh("user", window), "outside of window");
+
+    cache.inject(InjectableFile.of("auth"));
+    Assertions.assertTrue(cache.fresh("user", window), "same content");
+    cache.inject(InjectableFile.of("new auth"));
+    Assertions.assertFalse(cache.fresh("user", window), "changed content");
+  }
+}
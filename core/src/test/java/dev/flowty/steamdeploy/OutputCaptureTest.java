@@ -0,0 +1,161 @@
+package dev.flowty.steamdeploy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link OutputCapture}
+ */
+class OutputCaptureTest {
+
+  private static final Path ROOT = Paths.get("target", "OutputCaptureTest");
+
+  @BeforeEach
+  void clean() {
+    QuietFiles.recursiveDelete(ROOT);
+  }
+
+  /**
+   * Small output stays in memory
+   */
+  @Test
+  void small() {
+    OutputCapture capture = new OutputCapture(5, 100, Optional.empty());
+    lines(3).forEach(capture::add);
+    Result result = capture.result(0);
+
+    Assertions.assertEquals("[0, 1, 2]", result.tail().toString());
+    Assertions.assertFalse(result.truncated());
+    Assertions.assertEquals(Optional.empty(), result.log());
+    Assertions.assertEquals("[0, 1, 2]", result.stdOut().toString());
+  }
+
+  /**
+   * Large output is spilled to disk
+   */
+  @Test
+  void spilled() {
+    OutputCapture capture = new OutputCapture(5, 100, Optional.empty());
+    lines(20).forEach(capture::add);
+    Result result = capture.result(0);
+
+    Assertions.assertEquals("[15, 16, 17, 18, 19]", result.tail().toString());
+    Assertions.assertTrue(result.truncated());
+    Assertions.assertEquals(20, result.lines());
+    Assertions.assertTrue(result.log().isPresent());
+    Assertions.assertEquals(lines(20), result.stdOut());
+    Assertions.assertEquals(String.format("""
+              ... 15 earlier lines, complete output in %s
+              15
+              16
+              17
+              18
+              19
+            """, result.log().get().toAbsolutePath()),
+        result.abbreviated());
+  }
+
+  /**
+   * The in-memory buffer is also bounded by size
+   */
+  @Test
+  void characters() {
+    OutputCapture capture = new OutputCapture(100, 10, Optional.empty());
+    List.of("aaaa", "bbbb", "cccc", "dddddddddddddddd").forEach(capture::add);
+    Result result = capture.result(0);
+
+    Assertions.assertEquals("[dddddddddddddddd]", result.tail().toString());
+    Assertions.assertEquals("[aaaa, bbbb, cccc, dddddddddddddddd]",
+        result.stdOut().toString());
+  }
+
+  /**
+   * An explicit log file always gets the complete output
+   */
+  @Test
+  void logged() {
+    Path log = ROOT.resolve("logs").resolve("output.log.gz");
+    OutputCapture capture = new OutputCapture(5, 100, Optional.of(log));
+    lines(3).forEach(capture::add);
+    Result result = capture.result(0);
+    capture.add("ignored");
+
+    Assertions.assertTrue(Files.exists(log));
+    Assertions.assertEquals(Optional.of(log), result.log());
+    Assertions.assertEquals("[0, 1, 2]", result.stdOut().toString());
+  }
+
+  /**
+   * A spill file that no result refers to is deleted
+   */
+  @Test
+  void discarded() {
+    Path spills = ROOT.resolve("spills");
+    QuietFiles.createDirectories(spills);
+    try (OutputCapture capture = new OutputCapture(5, 100, Optional.empty(), spills)) {
+      lines(20).forEach(capture::add);
+      Assertions.assertEquals(1, QuietFiles.list(spills).count(), "spilled");
+    }
+    Assertions.assertEquals(0, QuietFiles.list(spills).count(), "discarded");
+  }
+
+  /**
+   * A spill file outlives the result that it was captured for while a copy of that result is
+   * reachable, and is deleted once no result refers to it
+   */
+  @Test
+  void copied() throws InterruptedException {
+    Path spills = ROOT.resolve("spills");
+    QuietFiles.createDirectories(spills);
+    OutputCapture capture = new OutputCapture(5, 100, Optional.empty(), spills);
+    lines(20).forEach(capture::add);
+    Result result = capture.result(0);
+    Result copy = result.withStatus(1);
+    Path log = Paths.get(result.log().orElseThrow().toString());
+
+    result = null;
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    Assertions.assertEquals(lines(20), copy.stdOut());
+
+    copy = null;
+    for (int i = 0; i < 500 && Files.exists(log); i++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    Assertions.assertFalse(Files.exists(log), "deleted");
+  }
+
+  /**
+   * Failing to write the complete output is not fatal, we just keep the tail
+   */
+  @Test
+  void unwritable() {
+    // a file where the spill directory should be
+    Path spills = ROOT.resolve("spills");
+    QuietFiles.createDirectories(ROOT);
+    QuietFiles.write(spills, new byte[0]);
+
+    OutputCapture capture = new OutputCapture(5, 100, Optional.empty(), spills);
+    lines(20).forEach(capture::add);
+    Result result = capture.result(0);
+
+    Assertions.assertEquals("[15, 16, 17, 18, 19]", result.tail().toString());
+    Assertions.assertEquals(20, result.lines());
+    Assertions.assertEquals(Optional.empty(), result.log());
+    Assertions.assertEquals("[15, 16, 17, 18, 19]", result.stdOut().toString());
+  }
+
+  private static List<String> lines(int count) {
+    return IntStream.range(0, count).mapToObj(String::valueOf).toList();
+  }
+}
@@ -0,0 +1,83 @@
+package dev.flowty.steamdeploy;
+
+import static java.util.stream.Collectors.joining;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link ProgressParser}
+ */
+class ProgressParserTest {
+
+  private final List<Progress> events = new ArrayList<>();
+  private Instant now = Instant.EPOCH;
+  private final ProgressParser parser = new ProgressParser(events::add, () -> now);
+
+  /**
+   * Parses a typical build transcript
+   */
+  @Test
+  void build() {
+    feed(0, "Redirecting stderr to '/home/user/Steam/logs/stderr.txt'");
+    feed(0, "Logging in user 'builder' [U:1:12345] to Steam Public...OK");
+    feed(0, "Waiting for user info...OK");
+    feed(1, "Building depot 1001...");
+    feed(0, "Scanning content        10.00 MB :  10%");
+    feed(2, "Scanning content        60.00 MB :  60%");
+    feed(1, "Scanning content       100.00 MB : 100%");
+    feed(0, "Uploading content...");
+    feed(0, "\u001B[0mUploading content         1,024.0 KB :  20%");
+    feed(4, "Uploading content         5,120.0 KB : 100%");
+    feed(0, "Depot build for scan: 1001 ended");
+    feed(0, "Successfully finished AppID 1000 build (BuildID 8675309).");
+
+    Assertions.assertEquals("""
+            Login[user=builder, success=true, status=OK]
+            Depot[depotId=1001]
+            Transfer[phase=SCANNING, bytes=10485760, percent=10.0, bytesPerSecond=0.0, eta=Optional.empty]
+            Transfer[phase=SCANNING, bytes=62914560, percent=60.0, bytesPerSecond=2.62144E7, eta=Optional[PT1.333S]]
+            Transfer[phase=SCANNING, bytes=104857600, percent=100.0, bytesPerSecond=3.145728E7, eta=Optional[PT0S]]
+            Transfer[phase=UPLOADING, bytes=1048576, percent=20.0, bytesPerSecond=0.0, eta=Optional.empty]
+            Transfer[phase=UPLOADING, bytes=5242880, percent=100.0, bytesPerSecond=1048576.0, eta=Optional[PT0S]]
+            Build[appId=1000, buildId=8675309]""",
+        events.stream().map(String::valueOf).collect(joining("\n")));
+  }
+
+  /**
+   * Parses a failed login
+   */
+  @Test
+  void loginFailure() {
+    feed(0, "Logging in user 'builder' to Steam Public...FAILED (Invalid Password)");
+
+    Assertions.assertEquals(
+        "[Login[user=builder, success=false, status=FAILED (Invalid Password)]]",
+        events.toString());
+  }
+
+  /**
+   * Checks size parsing
+   */
+  @Test
+  void bytes() {
+    Assertions.assertEquals("[12, 1536, 1048576, 1288490188, 1099511627776]",
+        Stream.of(
+                ProgressParser.bytes("12", "bytes"),
+                ProgressParser.bytes("1.5", "KB"),
+                ProgressParser.bytes("1,024", "KB"),
+                ProgressParser.bytes("1.2", "GB"),
+                ProgressParser.bytes("1", "TB"))
+            .toList()
+            .toString());
+  }
+
+  private void feed(int seconds, String line) {
+    now = now.plusSeconds(seconds);
+    parser.accept(line);
+  }
+}
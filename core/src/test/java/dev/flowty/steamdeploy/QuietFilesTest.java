@@ -0,0 +1,72 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link QuietFiles}
+ */
+class QuietFilesTest {
+
+  private static final Path ROOT = Paths.get("target", "QuietFilesTest");
+
+  @BeforeEach
+  void clean() {
+    QuietFiles.recursiveDelete(ROOT);
+  }
+
+  /**
+   * Shows that the reaped directory disappears immediately and its tombstone is deleted in the
+   * background
+   */
+  @Test
+  void reap() {
+    populate(ROOT.resolve("doomed"));
+
+    QuietFiles.reap(ROOT.resolve("doomed"));
+
+    Assertions.assertFalse(Files.exists(ROOT.resolve("doomed")));
+    Assertions.assertTrue(QuietFiles.awaitReaping(Duration.ofSeconds(10)));
+    Assertions.assertEquals("", list());
+  }
+
+  /**
+   * Shows that orphaned tombstones are cleaned up
+   */
+  @Test
+  void reapTombstones() {
+    populate(ROOT.resolve("content.tombstone-orphan"));
+    populate(ROOT.resolve("content"));
+
+    QuietFiles.reapTombstones(ROOT);
+
+    Assertions.assertTrue(QuietFiles.awaitReaping(Duration.ofSeconds(10)));
+    Assertions.assertEquals("content", list());
+  }
+
+  private static void populate(Path dir) {
+    for (int i = 0; i < 20; i++) {
+      Path file = dir.resolve((i % 3) + "/" + (i % 5) + "/" + i + ".txt");
+      QuietFiles.createDirectories(file.getParent());
+      QuietFiles.write(file, String.valueOf(i).getBytes(UTF_8));
+    }
+  }
+
+  private static String list() {
+    try (Stream<Path> children = QuietFiles.list(ROOT)) {
+      return children
+          .map(p -> p.getFileName().toString())
+          .sorted()
+          .collect(joining("\n"));
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package dev.flowty.steamdeploy;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link Retry}
+ */
+class RetryTest {
+
+  /**
+   * Retries are limited by attempt count and failure category
+   */
+  @Test
+  void retries() {
+    Retry retry = new Retry();
+    Assertions.assertFalse(retry.retries(Failure.NETWORK, 1), "no retries by default");
+
+    retry.attempts(3);
+    Assertions.assertTrue(retry.retries(Failure.NETWORK, 1));
+    Assertions.assertTrue(retry.retries(Failure.NETWORK, 2));
+    Assertions.assertFalse(retry.retries(Failure.NETWORK, 3), "attempts exhausted");
+    Assertions.assertFalse(retry.retries(Failure.CREDENTIALS, 1), "permanent failure");
+
+    retry.on(Failure.CREDENTIALS);
+    Assertions.assertTrue(retry.retries(Failure.CREDENTIALS, 1));
+    Assertions.assertFalse(retry.retries(Failure.NETWORK, 1));
+  }
+
+  /**
+   * Delays double with each attempt up to a limit, and are reduced by a random amount
+   */
+  @Test
+  void backoff() {
+    Retry retry = new Retry();
+    retry.delay(Duration.ofSeconds(1));
+    retry.maxDelay(Duration.ofSeconds(10));
+    retry.jitter(0);
+    Assertions.assertEquals("[PT1S, PT2S, PT4S, PT8S, PT10S, PT10S]",
+        IntStream.rangeClosed(1, 6)
+            .mapToObj(a -> retry.backoff(a, new Random(0)))
+            .toList().toString());
+    Assertions.assertEquals(Duration.ofSeconds(10), retry.backoff(100, new Random(0)),
+        "no overflow");
+
+    retry.jitter(0.5);
+    Random random = new Random(0);
+    for (int i = 0; i < 100; i++) {
+      Duration d = retry.backoff(2, random);
+      Assertions.assertTrue(d.compareTo(Duration.ofSeconds(1)) >= 0
+          && d.compareTo(Duration.ofSeconds(2)) <= 0, d::toString);
+    }
+  }
+}
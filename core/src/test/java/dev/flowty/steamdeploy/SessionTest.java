@@ -0,0 +1,78 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+/**
+ * Exercises {@link Session} against a shell script that mimics the steamcmd console
+ */
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class SessionTest {
+
+  private static final Path INSTALL = Paths.get("target", "SessionTest", "installation");
+
+  @BeforeAll
+  static void fakeInstallation() {
+    QuietFiles.recursiveDelete(INSTALL.getParent());
+    Path exe = INSTALL.resolve(Platform.fromOsName().steamCmd);
+    QuietFiles.createDirectories(INSTALL);
+    QuietFiles.write(exe, """
+        #!/bin/bash
+        echo "Logging in user '$2' to Steam Public...OK"
+        printf 'Steam>'
+        while read -r cmd args; do
+          case "$cmd" in
+            quit)
+              exit 0;;
+            run_app_build)
+              echo "building $args"
+              echo "Successfully finished AppID 1234 build (BuildID 5678)."
+              printf 'Steam>';;
+            *)
+              echo "unknown command $cmd $args"
+              printf '\\033[0mSteam>\\033[0m';;
+          esac
+        done
+        """.getBytes(UTF_8));
+    QuietFiles.wrap(() -> Files.setPosixFilePermissions(exe,
+        PosixFilePermissions.fromString("rwxr-xr-x")));
+    QuietFiles.write(INSTALL.resolve(SteamCMD.INSTALLED_MARKER), new byte[0]);
+  }
+
+  /**
+   * Shows that many commands can be run on one login
+   */
+  @Test
+  void commands() {
+    SteamCMD steamCMD = new SteamCMD(INSTALL);
+    try (Session session = steamCMD.session(new Auth("user"))) {
+      Result first = session.run("info");
+      Assertions.assertEquals(0, first.status());
+      Assertions.assertEquals("[unknown command info ]", first.stdOut().toString());
+
+      Result second = session.run("app_status", "1234");
+      Assertions.assertEquals(0, second.status());
+      Assertions.assertEquals("[unknown command app_status 1234]", second.stdOut().toString());
+
+      Path content = INSTALL.resolveSibling("app");
+      QuietFiles.createDirectories(content);
+      Workspace ws = steamCMD.workspace("session");
+      Result build = session.deploy(
+          InjectableFile.appBuild(1234, "", false, false, 5678, content, ws.output()),
+          ws);
+      Assertions.assertEquals(0, build.status());
+      Assertions.assertEquals("[building " + ws.script().toAbsolutePath() + ", "
+              + "Successfully finished AppID 1234 build (BuildID 5678).]",
+          build.stdOut().toString());
+    }
+  }
+}
@@ -1,10 +1,15 @@
 package dev.flowty.steamdeploy;
 
+import dev.flowty.steamdeploy.VDFReader.Event;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 /**
- * Exercises {@link VDF}
+ * Exercises {@link VDF} and {@link VDFReader}
  */
 class VDFTest {
 
@@ -36,4 +41,119 @@ class VDFTest {
             )
             .toString());
   }
-}
\ No newline at end of file
+
+  /**
+   * Build scripts take backslashes literally, steam's own files escape them
+   */
+  @Test
+  void escaping() {
+    VDF vdf = new VDF("root").v("path", "C:\\dir\\");
+    Assertions.assertEquals("""
+            "root"
+            {
+              "path" "C:\\dir\\"
+            }
+            """,
+        vdf.toString());
+
+    StringWriter escaped = new StringWriter();
+    vdf.v("quote", "say \"hi\"\n").writeTo(escaped, true);
+    Assertions.assertEquals("""
+            "root"
+            {
+              "path" "C:\\\\dir\\\\"
+              "quote" "say \\"hi\\"\\n"
+            }
+            """,
+        escaped.toString());
+
+    IllegalArgumentException iae = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> vdf.writeTo(new StringWriter()));
+    Assertions.assertEquals(
+        "Cannot represent \\\" in unescaped VDF content 'say \"hi\"\n'",
+        iae.getMessage());
+  }
+
+  /**
+   * Content can be read back in
+   */
+  @Test
+  void roundTrip() {
+    VDF vdf = new VDF("AppBuild")
+        .v("ContentRoot", "..\\content\\")
+        .o("Depots", ds -> ds
+            .o("1001", d -> d.v("FileMapping", "*"))
+            .o("1002", d -> d.v("FileExclusion", "*.pdb")))
+        .v("quote", "a \"b\"\tc\\d");
+
+    StringWriter raw = new StringWriter();
+    vdf.object("Depots").orElseThrow().writeTo(raw);
+    Assertions.assertEquals(raw.toString(),
+        VDFReader.parse(new StringReader(raw.toString()), false).toString());
+
+    StringWriter escaped = new StringWriter();
+    vdf.writeTo(escaped, true);
+    VDF parsed = VDFReader.parse(new StringReader(escaped.toString()), true);
+    Assertions.assertEquals("a \"b\"\tc\\d", parsed.value("quote").orElseThrow());
+    Assertions.assertEquals("..\\content\\", parsed.value("ContentRoot").orElseThrow());
+    Assertions.assertEquals("*.pdb", parsed.object("Depots")
+        .flatMap(d -> d.object("1002"))
+        .flatMap(d -> d.value("FileExclusion"))
+        .orElseThrow());
+  }
+
+  /**
+   * The pull parser copes with the less-regular syntax found in the wild
+   */
+  @Test
+  void pull() {
+    List<String> events = new ArrayList<>();
+    try (VDFReader reader = new VDFReader(new StringReader("""
+        // a comment
+        "InstallConfigStore"
+        {
+        \tSoftware { "Valve" {
+        \t\tAutoUpdate 1 [$WIN32]
+        \t\t"empty"\t""
+        \t} }
+        \t"last" "value" // trailing comment
+        }
+        """), true)) {
+      for (Event e = reader.next(); e != Event.END_DOCUMENT; e = reader.next()) {
+        events.add(reader.depth() + " " + e
+            + (e == Event.END_OBJECT ? "" : " " + reader.name())
+            + (e == Event.VALUE ? "=" + reader.value() : ""));
+      }
+    }
+    Assertions.assertEquals("""
+            1 START_OBJECT InstallConfigStore
+            2 START_OBJECT Software
+            3 START_OBJECT Valve
+            3 VALUE AutoUpdate=1
+            3 VALUE empty=
+            2 END_OBJECT
+            1 END_OBJECT
+            1 VALUE last=value
+            0 END_OBJECT""",
+        String.join("\n", events));
+  }
+
+  /**
+   * Malformed content is rejected
+   */
+  @Test
+  void malformed() {
+    Assertions.assertEquals("Unexpected end of content with 1 unclosed objects",
+        Assertions.assertThrows(IllegalStateException.class,
+            () -> VDFReader.parse(new StringReader("\"a\" { \"b\" \"c\""), false))
+            .getMessage());
+    Assertions.assertEquals("Expected a value for 'b' at line 2, found CLOSE",
+        Assertions.assertThrows(IllegalStateException.class,
+            () -> VDFReader.parse(new StringReader("\"a\" {\n\"b\" }"), false))
+            .getMessage());
+    Assertions.assertEquals("Unterminated string at line 1",
+        Assertions.assertThrows(IllegalStateException.class,
+            () -> VDFReader.parse(new StringReader("\"a\" { \"b"), false))
+            .getMessage());
+  }
+}
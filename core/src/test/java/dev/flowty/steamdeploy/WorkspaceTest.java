@@ -0,0 +1,121 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link Workspace} and {@link SteamCMD#workspace(String)}
+ */
+class WorkspaceTest {
+
+  private static final Path ROOT = Paths.get("target", "WorkspaceTest");
+  private static final Path INSTALL = ROOT.resolve("installation");
+
+  private SteamCMD steamCMD;
+
+  @BeforeEach
+  void clean() {
+    QuietFiles.recursiveDelete(ROOT);
+    // a placeholder installation, as we don't need to run steamcmd
+    QuietFiles.createDirectories(INSTALL);
+    QuietFiles.write(INSTALL.resolve(Platform.fromOsName().steamCmd), new byte[0]);
+    QuietFiles.write(INSTALL.resolve(SteamCMD.INSTALLED_MARKER), new byte[0]);
+    steamCMD = new SteamCMD(INSTALL);
+  }
+
+  /**
+   * Workspace names can't escape the workspaces directory
+   */
+  @Test
+  void names() {
+    for (String name : List.of("linux", "a.b-c_1", "..x")) {
+      Assertions.assertEquals(INSTALL.resolve("workspaces").resolve(name),
+          steamCMD.workspace(name).root(), name);
+    }
+    for (String name : List.of("", ".", "..", "...", "a/b", "../x", "a\\b", "a b")) {
+      Assertions.assertThrows(IllegalArgumentException.class, () -> steamCMD.workspace(name),
+          name);
+    }
+  }
+
+  /**
+   * The locations of the files within a workspace, and the default workspace being the
+   * installation itself
+   */
+  @Test
+  void layout() {
+    Workspace ws = steamCMD.workspace("linux");
+    Path root = INSTALL.resolve("workspaces").resolve("linux");
+    Assertions.assertEquals(root.resolve("content"), ws.content());
+    Assertions.assertEquals(root.resolve("content").resolve("1001"), ws.content(1001));
+    Assertions.assertEquals(root.resolve("scripts").resolve("script.vdf"), ws.script());
+    Assertions.assertEquals(root.resolve("output"), ws.output());
+    Assertions.assertEquals(root.resolve("logs").resolve("steamcmd.log.gz"), ws.log());
+    Assertions.assertEquals(root.resolve("content.manifest"), ws.manifest());
+    Assertions.assertEquals(root.resolve("content-1001.manifest"), ws.manifest(1001));
+
+    Assertions.assertEquals(INSTALL, steamCMD.workspace().root());
+    Assertions.assertEquals(INSTALL.resolve("content"), steamCMD.workspace().content());
+  }
+
+  /**
+   * Deployments in different workspaces can stage at the same time without interfering
+   */
+  @Test
+  void concurrent() throws Exception {
+    List<String> names = List.of("linux", "windows");
+    for (String name : names) {
+      for (int i = 0; i < 200; i++) {
+        Path file = ROOT.resolve(name).resolve("dir" + i % 10).resolve("file" + i + ".txt");
+        QuietFiles.createDirectories(file.getParent());
+        QuietFiles.write(file, (name + i).getBytes(UTF_8));
+      }
+    }
+    steamCMD.withIngestion(i -> {
+      i.incremental(true);
+      i.parallelism(4);
+    });
+
+    CyclicBarrier start = new CyclicBarrier(names.size());
+    try (ExecutorService pool = Executors.newFixedThreadPool(names.size())) {
+      List<Future<Path>> scripts = names.stream()
+          .map(name -> pool.submit(() -> {
+            Workspace ws = steamCMD.workspace(name);
+            start.await();
+            steamCMD.ingestApplication(ROOT.resolve(name), ws);
+            return SteamCMD.generateBuildScript(
+                InjectableFile.appBuild(1234, name, false, false, 5678), ws);
+          }))
+          .toList();
+      for (Future<Path> script : scripts) {
+        script.get();
+      }
+    }
+
+    for (String name : names) {
+      Workspace ws = steamCMD.workspace(name);
+      Assertions.assertEquals(hashes(ROOT.resolve(name)), hashes(ws.content()), name);
+      Assertions.assertTrue(QuietFiles.lines(ws.script()).anyMatch(
+          l -> l.contains("\"Desc\" \"" + name + "\"")), name);
+    }
+  }
+
+  private static Map<String, Optional<String>> hashes(Path dir) {
+    Map<String, Optional<String>> hashes = new TreeMap<>();
+    Manifest.scan(dir, true).entries().forEach((path, entry) -> hashes.put(path, entry.hash()));
+    return hashes;
+  }
+}
@@ -0,0 +1,629 @@
+package dev.flowty.steamdeploy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * The configuration and mechanics shared by the goals that deploy an application to steam
+ */
+public abstract class AbstractDeployMojo extends AbstractMojo {
+
+  /**
+   * Optional: Skips plugin execution
+   */
+  @Parameter(property = "steamdeploy.skip", defaultValue = "false")
+  private boolean skip;
+
+  /**
+   * Optional: The URL from which to download the steamCMD executable, if the defaults don't work
+   * for you
+   */
+  @Parameter(property = "steamdeploy.source")
+  private String source;
+
+  /**
+   * Optional: The directory in which to install the steamCMD executable
+   */
+  @Parameter(property = "steamdeploy.install", defaultValue = "target/steamcmd")
+  private String install;
+
+  /**
+   * The steam user name.
+   */
+  @Parameter(property = "steamdeploy.user", required = true)
+  private String user;
+
+  /**
+   * The name of the environment variable that holds the steam user's password
+   */
+  @Parameter(property = "steamdeploy.passwordVar", defaultValue = "STEAM_PASSWORD")
+  private String passwordVar;
+
+  /**
+   * The name of the environment variable that holds the base64-encoded authorised
+   * <code>config.vdf</code> content
+   */
+  @Parameter(property = "steamdeploy.authVdfVar", defaultValue = "STEAM_AUTH_VDF")
+  private String authVdfVar;
+
+  /**
+   * The directory that holds the application to deploy. Required unless <code>depots</code> are
+   * supplied.
+   */
+  @Parameter(property = "steamdeploy.application")
+  private String application;
+
+  /**
+   * Optional: The path to the appBuild install script for your deployed application. If this is
+   * supplied then all of:
+   * <ul>
+   *   <li><code>appId</code></li>
+   *   <li><code>depotId</code></li>
+   *   <li><code>description</code></li>
+   *   <li><code>verbose</code></li>
+   *   <li><code>preview</code></li>
+   * </ul>
+   * are forbidden
+   */
+  @Parameter(property = "steamdeploy.script")
+  private String script;
+
+  /**
+   * Optional: The steam application ID. <code>depotId</code> is also required.
+   */
+  @Parameter(property = "steamdeploy.appId")
+  private Integer appId;
+
+  /**
+   * Optional: The steam depot ID. <code>appId</code> is also required.
+   */
+  @Parameter(property = "steamdeploy.depotId")
+  private Integer depotId;
+
+  /**
+   * Optional: The depots to upload in a single build, each with its own content directory. This
+   * replaces <code>application</code> and <code>depotId</code>, and <code>appId</code> is also
+   * required:
+   * <pre>
+   * &lt;depots&gt;
+   *   &lt;depot&gt;
+   *     &lt;id&gt;1001&lt;/id&gt;
+   *     &lt;source&gt;target/linux&lt;/source&gt;
+   *   &lt;/depot&gt;
+   *   &lt;depot&gt;
+   *     &lt;id&gt;1002&lt;/id&gt;
+   *     &lt;source&gt;target/windows&lt;/source&gt;
+   *     &lt;mappings&gt;
+   *       &lt;mapping&gt;
+   *         &lt;localPath&gt;bin/*&lt;/localPath&gt;
+   *         &lt;depotPath&gt;bin&lt;/depotPath&gt;
+   *         &lt;recursive&gt;false&lt;/recursive&gt;
+   *       &lt;/mapping&gt;
+   *     &lt;/mappings&gt;
+   *   &lt;/depot&gt;
+   * &lt;/depots&gt;
+   * </pre>
+   * A depot takes all of its source files unless <code>mappings</code> are supplied.
+   */
+  @Parameter
+  private List<DepotConfig> depots;
+
+  /**
+   * Optional: Patterns for the application files to upload, in <code>.gitignore</code> style: e.g.:
+   * <code>*.exe</code> matches at any depth, <code>/bin/*</code> only at the top level, and
+   * <code>data/</code> matches a directory and everything in it. All files are uploaded if no
+   * includes are supplied. Not supported with <code>inPlace</code>.
+   */
+  @Parameter(property = "steamdeploy.includes")
+  private List<String> includes;
+
+  /**
+   * Optional: Patterns for the application files not to upload, in the same style as
+   * <code>includes</code>. Excluded files are never staged, and are also excluded in the generated
+   * <code>appBuild</code> script.
+   */
+  @Parameter(property = "steamdeploy.excludes")
+  private List<String> excludes;
+
+  /**
+   * Optional: A description for the build. Default value will detail the OS name and current time.
+   */
+  @Parameter(property = "steamdeploy.description")
+  private String description;
+
+  /**
+   * Optional: Controls verbose logging for the steam deployment
+   */
+  @Parameter(property = "steamdeploy.verbose", defaultValue = "false")
+  private Boolean verbose;
+
+  /**
+   * Optional: Skips the upload of compiled application content
+   */
+  @Parameter(property = "steamdeploy.preview", defaultValue = "false")
+  private Boolean preview;
+
+  /**
+   * Optional: Keeps a manifest of the staged application files so that only changed files are
+   * copied on subsequent deployments
+   */
+  @Parameter(property = "steamdeploy.incremental", defaultValue = "false")
+  private boolean incremental;
+
+  /**
+   * Optional: Compares file content hashes as well as sizes and modification times when deciding
+   * which files have changed in an <code>incremental</code> deployment
+   */
+  @Parameter(property = "steamdeploy.hashing", defaultValue = "false")
+  private boolean hashing;
+
+  /**
+   * Optional: How application files are put into the staging area. One of:
+   * <ul>
+   *   <li><code>COPY</code>: byte-for-byte copies</li>
+   *   <li><code>LINK</code>: hard links where possible, copies otherwise</li>
+   *   <li><code>REFLINK</code>: copy-on-write clones where possible, copies otherwise</li>
+   *   <li><code>AUTO</code>: hard links, then clones, then copies</li>
+   * </ul>
+   */
+  @Parameter(property = "steamdeploy.staging", defaultValue = "COPY")
+  private Staging staging;
+
+  /**
+   * Optional: How many application files to stage, fingerprint or estimate concurrently
+   */
+  @Parameter(property = "steamdeploy.parallelism", defaultValue = "1")
+  private int parallelism;
+
+  /**
+   * Optional: Moves previously-staged content out of the way and deletes it in the background,
+   * rather than waiting for the deletion to complete
+   */
+  @Parameter(property = "steamdeploy.asyncDelete", defaultValue = "false")
+  private boolean asyncDelete;
+
+  /**
+   * Optional: Uploads the application files from where they are, rather than staging a copy of them
+   * in the installation directory first. If a custom <code>script</code> is supplied then it is
+   * responsible for pointing <code>ContentRoot</code> at the application files.
+   */
+  @Parameter(property = "steamdeploy.inPlace", defaultValue = "false")
+  private boolean inPlace;
+
+  /**
+   * Optional: The name of a workspace within the installation in which to stage the application.
+   * Deployments that use different workspaces can run concurrently against the same installation.
+   */
+  @Parameter(property = "steamdeploy.workspace")
+  private String workspace;
+
+  /**
+   * Optional: A directory in which to cache downloaded steamCMD executables, so that new
+   * installations can be populated without downloading anything unless steamCMD has been updated.
+   * Use <code>~</code> for a cache in your home directory.
+   */
+  @Parameter(property = "steamdeploy.cache")
+  private String cache;
+
+  /**
+   * Optional: The expected SHA-256 checksum of the steamCMD download. Only applies when
+   * <code>cache</code> is set.
+   */
+  @Parameter(property = "steamdeploy.sourceSha256")
+  private String sourceSha256;
+
+  /**
+   * Optional: The maximum number of concurrent connections to use when downloading steamCMD. Only
+   * applies when <code>cache</code> is set.
+   */
+  @Parameter(property = "steamdeploy.downloadConnections", defaultValue = "1")
+  private int downloadConnections;
+
+  /**
+   * Optional: The number of seconds after the steamCMD download was last checked for changes during
+   * which the cached version will be used without checking again. Only applies when
+   * <code>cache</code> is set.
+   */
+  @Parameter(property = "steamdeploy.revalidateAfter", defaultValue = "0")
+  private int revalidateAfter;
+
+  /**
+   * Optional: A file to which a JSON summary of the deployment will be written: the build ID, phase
+   * timings, and per-depot counts of new, changed and unchanged files and bytes
+   */
+  @Parameter(property = "steamdeploy.report")
+  private String report;
+
+  /**
+   * Optional: Skips the deployment if the application content is identical to that of the last
+   * successful deployment to the same app and depot. The content of a custom <code>script</code> is
+   * included in the comparison.
+   */
+  @Parameter(property = "steamdeploy.skipUnchanged", defaultValue = "false")
+  private boolean skipUnchanged;
+
+  /**
+   * Optional: The directory in which to record the content of successful deployments for
+   * <code>skipUnchanged</code>. Defaults to a directory in your home directory.
+   */
+  @Parameter(property = "steamdeploy.fingerprints")
+  private String fingerprints;
+
+  /**
+   * Optional: How many times to retry a failed upload, if the failure looks transient: e.g.: rate
+   * limiting, timeouts or network trouble
+   */
+  @Parameter(property = "steamdeploy.retries", defaultValue = "0")
+  private int retries;
+
+  /**
+   * Optional: How many seconds to wait before the first retry. Each subsequent wait is twice as
+   * long, and all are randomly shortened by up to half.
+   */
+  @Parameter(property = "steamdeploy.retryDelay", defaultValue = "30")
+  private int retryDelay;
+
+  /**
+   * Optional: Estimates how much of the application will be uploaded before invoking steamcmd, by
+   * comparing its content against that of the last successful deployment to the same app and
+   * depot. Steam compresses content before upload, so the estimate is an upper bound.
+   */
+  @Parameter(property = "steamdeploy.estimateUpload", defaultValue = "false")
+  private boolean estimateUpload;
+
+  /**
+   * Optional: Fails the build, without uploading anything, if the estimated upload exceeds this
+   * many megabytes. Implies <code>estimateUpload</code>.
+   */
+  @Parameter(property = "steamdeploy.maxUploadMb")
+  private Long maxUploadMb;
+
+  /**
+   * Optional: The directory in which to record the content of successful deployments for
+   * <code>estimateUpload</code>. Defaults to a directory in your home directory.
+   */
+  @Parameter(property = "steamdeploy.chunkIndex")
+  private String chunkIndex;
+
+  /**
+   * A validated deployment, ready to run
+   */
+  @FunctionalInterface
+  protected interface Deployment {
+
+    /**
+     * Installs steamCMD, uploads the application and records its fingerprint
+     *
+     * @param log Where to report progress
+     * @return The result of the upload
+     * @throws MojoFailureException if the deployment could not be attempted
+     */
+    Result run(Log log) throws MojoFailureException;
+  }
+
+  /**
+   * @return {@code true} if plugin execution should be skipped
+   */
+  protected boolean skip() {
+    return skip;
+  }
+
+  /**
+   * Validates the configuration and checks whether the application has changed since the last
+   * deployment
+   *
+   * @return The deployment to run, or empty if it is unnecessary
+   * @throws MojoFailureException if the configuration is invalid
+   */
+  protected Optional<Deployment> prepare() throws MojoFailureException {
+    Auth auth = buildAuth();
+    Filter filter = filter();
+    List<Depot> depotList = depots(filter);
+    Optional<URL> src = source();
+
+    Fingerprint fingerprint;
+    Map<String, String> prints = new LinkedHashMap<>();
+    if (skipUnchanged) {
+      fingerprint = (fingerprints != null
+          ? new Fingerprint(Paths.get(fingerprints))
+          : Fingerprint.machineWide())
+          .parallelism(parallelism);
+      Path[] extras = script != null
+          ? new Path[]{Paths.get(script)}
+          : new Path[0];
+      Iterator<Depot> depotConfig = depotList.iterator();
+      for (Map.Entry<String, Path> target : fingerprintTargets(depotList).entrySet()) {
+        // the targets are in depot order, and the mappings matter as much as the content
+        prints.put(target.getKey(), depotConfig.hasNext()
+            ? fingerprint.compute(target.getKey(), depotConfig.next(), extras)
+            : fingerprint.compute(target.getKey(), target.getValue(), filter, extras));
+      }
+      List<Fingerprint.Deployment> unchanged = new ArrayList<>();
+      for (Map.Entry<String, String> print : prints.entrySet()) {
+        fingerprint.last(print.getKey())
+            .filter(d -> d.fingerprint().equals(print.getValue()))
+            .ifPresent(unchanged::add);
+      }
+      if (unchanged.size() == prints.size()) {
+        getLog().info(String.format(
+            "Skipping steam deployment: %s unchanged since the deployment at %s, saving about %s",
+            String.join(", ", prints.keySet()),
+            unchanged.stream().map(Fingerprint.Deployment::time)
+                .max(Comparator.naturalOrder()).orElseThrow(),
+            ProgressLog.duration(unchanged.stream().map(Fingerprint.Deployment::duration)
+                .max(Comparator.naturalOrder()).orElseThrow())));
+        return Optional.empty();
+      }
+    } else {
+      fingerprint = null;
+    }
+
+    DeltaEstimator estimator;
+    Map<String, Path> estimated;
+    if (estimateUpload || maxUploadMb != null) {
+      estimator = (chunkIndex != null
+          ? new DeltaEstimator(Paths.get(chunkIndex))
+          : DeltaEstimator.machineWide())
+          .parallelism(parallelism);
+      estimated = fingerprintTargets(depotList);
+      estimateUpload(estimator, estimated, filter);
+    } else {
+      estimator = null;
+      estimated = Map.of();
+    }
+
+    return Optional.of(log -> {
+      Instant start = Instant.now();
+      SteamCMD steamCMD = installation(src)
+          .withListener(new ProgressLog(log))
+          .withIngestion(i -> {
+            i.incremental(incremental);
+            i.hashing(hashing);
+            i.staging(staging);
+            i.parallelism(parallelism);
+            i.asyncDelete(asyncDelete);
+            i.filter(filter);
+          })
+          .withRetry(r -> {
+            r.attempts(retries + 1);
+            r.delay(Duration.ofSeconds(retryDelay));
+          });
+      if (report != null) {
+        steamCMD.withReport(Paths.get(report));
+      }
+      Workspace ws = workspace != null
+          ? steamCMD.workspace(workspace)
+          : steamCMD.workspace();
+      InjectableFile appBuild = appBuild(ws, depotList, filter);
+      Result result;
+      if (inPlace) {
+        result = steamCMD.deploy(auth, appBuild, ws);
+      } else if (!depotList.isEmpty()) {
+        result = steamCMD.deploy(auth, depotList, appBuild, ws);
+      } else {
+        result = steamCMD.deploy(auth, Paths.get(application), appBuild, ws);
+      }
+      if (result.status() == 0 && fingerprint != null && !Boolean.TRUE.equals(preview)) {
+        Instant end = Instant.now();
+        for (Map.Entry<String, String> print : prints.entrySet()) {
+          fingerprint.record(print.getKey(),
+              new Fingerprint.Deployment(print.getValue(), end, Duration.between(start, end)));
+        }
+      }
+      if (result.status() == 0 && estimator != null && !Boolean.TRUE.equals(preview)) {
+        estimated.keySet().forEach(estimator::record);
+      }
+      return result;
+    });
+  }
+
+  /**
+   * Logs the expected upload for each deployment target
+   *
+   * @param estimator The source of estimates
+   * @param targets   The content directories to estimate, keyed by deployment target
+   * @param filter    Which application files to upload
+   * @throws MojoFailureException if the total exceeds <code>maxUploadMb</code>
+   */
+  private void estimateUpload(DeltaEstimator estimator, Map<String, Path> targets, Filter filter)
+      throws MojoFailureException {
+    long total = 0;
+    for (Map.Entry<String, Path> target : targets.entrySet()) {
+      DeltaEstimator.Estimate estimate = estimator.estimate(
+          target.getKey(), target.getValue(), filter);
+      getLog().info(String.format(
+          "%s: expecting to upload %s of %s%s, %d new, %d changed, %d unchanged, %d removed files",
+          target.getKey(), megabytes(estimate.uploadBytes()), megabytes(estimate.bytes()),
+          estimate.baseline() ? "" : " (no previous deployment)",
+          estimate.count(DeltaEstimator.Change.NEW),
+          estimate.count(DeltaEstimator.Change.CHANGED),
+          estimate.count(DeltaEstimator.Change.UNCHANGED),
+          estimate.removedFiles()));
+      if (getLog().isDebugEnabled()) {
+        estimate.largest(10).forEach(f -> getLog().debug(String.format(
+            "  %s %s %s", megabytes(f.uploadBytes()), f.change(), f.path())));
+      }
+      total += estimate.uploadBytes();
+    }
+    if (maxUploadMb != null && total > maxUploadMb * 1024 * 1024) {
+      throw new MojoFailureException(String.format(
+          "Estimated upload of %s exceeds `maxUploadMb` of %d MB",
+          megabytes(total), maxUploadMb));
+    }
+  }
+
+  private static String megabytes(long bytes) {
+    return String.format("%.1f MB", bytes / (1024.0 * 1024));
+  }
+
+  /**
+   * @return The configured file filter
+   * @throws MojoFailureException if the configuration is invalid
+   */
+  private Filter filter() throws MojoFailureException {
+    if (inPlace && includes != null && !includes.isEmpty()) {
+      throw new MojoFailureException("`includes` are not supported with `inPlace`");
+    }
+    try {
+      return new Filter(
+          Optional.ofNullable(includes).orElse(List.of()),
+          Optional.ofNullable(excludes).orElse(List.of()));
+    } catch (IllegalArgumentException iae) {
+      throw new MojoFailureException("Bad file pattern: " + iae.getMessage(), iae);
+    }
+  }
+
+  /**
+   * @param filter Which application files to upload
+   * @return The configured depots, or an empty list if a single <code>application</code> is to be
+   * deployed
+   * @throws MojoFailureException if the configuration is invalid
+   */
+  private List<Depot> depots(Filter filter) throws MojoFailureException {
+    if (depots == null || depots.isEmpty()) {
+      if (application == null) {
+        throw new MojoFailureException("Supply either `application` or `depots`");
+      }
+      return List.of();
+    }
+    if (application != null || depotId != null) {
+      throw new MojoFailureException(
+          "`application` and `depotId` are extraneous when `depots` are supplied");
+    }
+    if (depots.stream().map(DepotConfig::id).distinct().count() != depots.size()) {
+      throw new MojoFailureException("Duplicate depot IDs");
+    }
+    try {
+      return depots.stream().map(d -> d.toDepot(filter)).toList();
+    } catch (IllegalArgumentException iae) {
+      throw new MojoFailureException("Bad depot configuration: " + iae.getMessage(), iae);
+    }
+  }
+
+  /**
+   * @param depotList The configured depots
+   * @return The content directories to fingerprint, keyed by deployment target
+   * @throws MojoFailureException if the app and depot can't be determined
+   */
+  private Map<String, Path> fingerprintTargets(List<Depot> depotList)
+      throws MojoFailureException {
+    String app;
+    if (script != null) {
+      try (Reader in = Files.newBufferedReader(Paths.get(script), StandardCharsets.UTF_8)) {
+        app = "app-" + VDFReader.parse(in, false).value("AppID")
+            .orElseThrow(() -> new MojoFailureException("No AppID found in " + script));
+      } catch (IOException | IllegalStateException e) {
+        throw new MojoFailureException("Failed to read " + script, e);
+      }
+    } else if (appId != null && (depotId != null || !depotList.isEmpty())) {
+      app = "app-" + appId;
+    } else {
+      throw new MojoFailureException(
+          "Missing app build parameters. Supply either `script` or `appId` and `depotId");
+    }
+
+    Map<String, Path> targets = new LinkedHashMap<>();
+    if (!depotList.isEmpty()) {
+      depotList.forEach(d -> targets.put(app + "-depot-" + d.id(), d.source()));
+    } else {
+      targets.put(script != null ? app + "-script" : app + "-depot-" + depotId,
+          Paths.get(application));
+    }
+    return targets;
+  }
+
+  private SteamCMD installation(Optional<URL> src) {
+    if (cache == null) {
+      return new SteamCMD(src, Paths.get(install));
+    }
+    InstallCache ic = "~".equals(cache)
+        ? InstallCache.machineWide()
+        : new InstallCache(Paths.get(cache));
+    ic.downloadConnections(downloadConnections)
+        .revalidatingAfter(Duration.ofSeconds(revalidateAfter));
+    if (sourceSha256 != null) {
+      ic.expectingArchive(sourceSha256);
+    }
+    return new SteamCMD(src, Paths.get(install), ic);
+  }
+
+  private Optional<URL> source() throws MojoFailureException {
+    if (source == null) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(new URI(source).toURL());
+    } catch (MalformedURLException | URISyntaxException e) {
+      throw new MojoFailureException("Bad source URL", e);
+    }
+  }
+
+  private Auth buildAuth() throws MojoFailureException {
+    String password = System.getenv(passwordVar);
+    String authVDF = System.getenv(authVdfVar);
+    if (authVDF != null && password != null) {
+      throw new MojoFailureException("password is extraneous when an auth VDF is supplied");
+    }
+
+    if (authVDF != null) {
+      return new Auth(user, InjectableFile.ofB64(authVDF));
+    } else if (password != null) {
+      return new Auth(user, password);
+    } else {
+      return new Auth(user);
+    }
+  }
+
+  private InjectableFile appBuild(Workspace ws, List<Depot> depotList, Filter filter)
+      throws MojoFailureException {
+    if (script != null) {
+      if (Stream.of(appId, depotId, description, verbose, preview).anyMatch(Objects::nonNull)) {
+        throw new MojoFailureException("appBuild vdf parameters are extraneous"
+            + "when custom script is supplied");
+      }
+
+      return InjectableFile.from(Paths.get(script));
+    } else if (appId != null && (depotId != null || !depotList.isEmpty())) {
+      String desc = Optional.ofNullable(description)
+          .orElse(System.getProperty("os.name") + "@" + Instant.now());
+      boolean verb = Optional.ofNullable(verbose).orElse(false);
+      boolean prev = Optional.ofNullable(preview).orElse(false);
+      if (!depotList.isEmpty()) {
+        return inPlace
+            ? InjectableFile.appBuild(appId, desc, verb, prev, depotList, ws.output())
+            : InjectableFile.appBuild(appId, desc, verb, prev, depotList);
+      }
+      if (inPlace) {
+        return InjectableFile.appBuild(appId, desc, verb, prev, depotId,
+            Paths.get(application), ws.output(), filter);
+      }
+      return InjectableFile.appBuild(appId, desc, verb, prev, depotId, filter);
+    } else {
+      throw new MojoFailureException(
+          "Missing app build parameters. Supply either `script` or `appId` and `depotId");
+    }
+  }
+}
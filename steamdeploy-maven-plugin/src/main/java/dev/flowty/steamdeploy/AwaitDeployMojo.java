@@ -0,0 +1,112 @@
+package dev.flowty.steamdeploy;
+
+import dev.flowty.steamdeploy.Handle.State;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Waits for a deployment started by <code>start-deploy</code> to complete, relaying its progress to
+ * the build log. The build fails if the deployment does.
+ */
+@Mojo(name = "await-deploy", defaultPhase = LifecyclePhase.DEPLOY)
+public class AwaitDeployMojo extends AbstractMojo {
+
+  /**
+   * Optional: Skips plugin execution
+   */
+  @Parameter(property = "steamdeploy.skip", defaultValue = "false")
+  private boolean skip;
+
+  /**
+   * Optional: The directory in which the state and log of the background deployment are recorded
+   */
+  @Parameter(property = "steamdeploy.handle", defaultValue = "target/steamdeploy")
+  private String handle;
+
+  /**
+   * Optional: How often, in milliseconds, to check on the background deployment
+   */
+  @Parameter(property = "steamdeploy.pollInterval", defaultValue = "1000")
+  private long pollInterval;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (skip) {
+      getLog().info("Skipping steam deployment");
+      return;
+    }
+    Handle h = new Handle(Paths.get(handle));
+    Handle.Status status = h.status()
+        .orElseThrow(() -> new MojoFailureException(
+            "No deployment found in " + h.dir() + ", has start-deploy been run?"));
+
+    long position = 0;
+    while (status.state() == State.RUNNING) {
+      if (status.abandoned()) {
+        relay(h.log(), position, getLog());
+        throw new MojoFailureException("The deployment in " + h.dir() + " was abandoned");
+      }
+      position = relay(h.log(), position, getLog());
+      try {
+        Thread.sleep(pollInterval);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new MojoExecutionException("Interrupted while awaiting deployment", ie);
+      }
+      status = h.status().orElseThrow();
+    }
+    // the log is complete once the final state has been recorded
+    relay(h.log(), position, getLog());
+
+    switch (status.state()) {
+      case SKIPPED -> getLog().info("Skipped steam deployment: " + status.detail());
+      case SUCCEEDED -> getLog().info("Steam deployment complete");
+      default -> throw new MojoFailureException("steam deployment failed!\n" + status.detail());
+    }
+  }
+
+  /**
+   * Copies complete lines from the log file to the build log. A partial line is left for the next
+   * call, when it will hopefully have been finished.
+   *
+   * @param log      The log file
+   * @param position The offset in the file from which to start
+   * @param to       The build log
+   * @return The offset of the first unrelayed byte in the file
+   */
+  static long relay(Path log, long position, Log to) {
+    if (!Files.exists(log)) {
+      return position;
+    }
+    try (RandomAccessFile in = new RandomAccessFile(log.toFile(), "r")) {
+      if (in.length() <= position) {
+        return position;
+      }
+      byte[] bytes = new byte[(int) (in.length() - position)];
+      in.seek(position);
+      in.readFully(bytes);
+      int end = 0;
+      for (int i = 0; i < bytes.length; i++) {
+        if (bytes[i] == '\n') {
+          LogFile.relay(new String(bytes, end, i - end, StandardCharsets.UTF_8), to);
+          end = i + 1;
+        }
+      }
+      return position + end;
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package dev.flowty.steamdeploy;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Maven configuration for a {@link Depot}:
+ * <pre>
+ * &lt;depot&gt;
+ *   &lt;id&gt;1001&lt;/id&gt;
+ *   &lt;source&gt;target/linux&lt;/source&gt;
+ *   &lt;mappings&gt;
+ *     &lt;mapping&gt;...&lt;/mapping&gt;
+ *   &lt;/mappings&gt;
+ * &lt;/depot&gt;
+ * </pre>
+ */
+public class DepotConfig {
+
+  /**
+   * The steam depot ID
+   */
+  private Integer id;
+
+  /**
+   * The directory that holds the depot content
+   */
+  private String source;
+
+  /**
+   * How the content maps into the depot. Defaults to all files into the depot root.
+   */
+  private List<MappingConfig> mappings;
+
+  /**
+   * @return The steam depot ID
+   */
+  Integer id() {
+    return id;
+  }
+
+  /**
+   * @param filter Which source files to upload
+   * @return The depot
+   * @throws IllegalArgumentException if the configuration is incomplete
+   */
+  Depot toDepot(Filter filter) {
+    if (id == null || source == null) {
+      throw new IllegalArgumentException("depot id and source are required");
+    }
+    return new Depot(id, Paths.get(source),
+        mappings == null || mappings.isEmpty()
+            ? List.of(Mapping.ALL)
+            : mappings.stream().map(MappingConfig::toMapping).toList(),
+        filter);
+  }
+}
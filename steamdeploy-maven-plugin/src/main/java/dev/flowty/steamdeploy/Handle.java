@@ -0,0 +1,136 @@
+package dev.flowty.steamdeploy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * The on-disk record of a deployment that runs in the background of the maven build: its state,
+ * and a log of its progress. This allows one goal to start a deployment and another to collect the
+ * result.
+ */
+class Handle {
+
+  /**
+   * The stages in the life of a background deployment
+   */
+  enum State {
+    /**
+     * The deployment is in progress
+     */
+    RUNNING,
+    /**
+     * The deployment completed successfully
+     */
+    SUCCEEDED,
+    /**
+     * The deployment could not be completed
+     */
+    FAILED,
+    /**
+     * The deployment was unnecessary
+     */
+    SKIPPED
+  }
+
+  /**
+   * A snapshot of the deployment
+   *
+   * @param state  The state of the deployment
+   * @param pid    The ID of the process that is running the deployment
+   * @param detail Explanation of the state
+   */
+  record Status(State state, long pid, String detail) {
+
+    /**
+     * @return {@code true} if the deployment is running in a process that no longer exists
+     */
+    boolean abandoned() {
+      return state == State.RUNNING && ProcessHandle.of(pid)
+          .map(ProcessHandle::isAlive)
+          .map(alive -> !alive)
+          .orElse(true);
+    }
+  }
+
+  private final Path dir;
+
+  /**
+   * @param dir The directory in which to record the deployment
+   */
+  Handle(Path dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * @return The directory in which the deployment is recorded
+   */
+  Path dir() {
+    return dir;
+  }
+
+  /**
+   * @return The file to which deployment progress is logged
+   */
+  Path log() {
+    return dir.resolve("deploy.log");
+  }
+
+  /**
+   * Discards the log of a previous deployment
+   */
+  void clearLog() {
+    try {
+      Files.deleteIfExists(log());
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  /**
+   * Records the state of the deployment for the current process
+   *
+   * @param state  The new state
+   * @param detail Explanation of the state
+   */
+  void state(State state, String detail) {
+    try {
+      Files.createDirectories(dir);
+      Path tmp = Files.createTempFile(dir, "state", ".tmp");
+      Files.writeString(tmp,
+          state + " " + ProcessHandle.current().pid() + "\n" + detail,
+          StandardCharsets.UTF_8);
+      Files.move(tmp, dir.resolve("state"),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  /**
+   * @return The recorded state of the deployment, or empty if none has been started
+   */
+  Optional<Status> status() {
+    Path file = dir.resolve("state");
+    if (!Files.exists(file)) {
+      return Optional.empty();
+    }
+    try {
+      String content = Files.readString(file, StandardCharsets.UTF_8);
+      int lineEnd = content.indexOf('\n');
+      String[] first = content.substring(0, lineEnd).split(" ");
+      return Optional.of(new Status(
+          State.valueOf(first[0]),
+          Long.parseLong(first[1]),
+          content.substring(lineEnd + 1)));
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+      throw new IllegalStateException("Malformed deployment state in " + file, e);
+    }
+  }
+}
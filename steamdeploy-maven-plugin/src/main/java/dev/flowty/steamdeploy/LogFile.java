@@ -0,0 +1,157 @@
+package dev.flowty.steamdeploy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A maven {@link Log} that writes to a file, so that the output of a background deployment can be
+ * relayed to the build log later. Each line is prefixed with its level.
+ */
+class LogFile implements Log, Closeable {
+
+  private final Writer out;
+
+  /**
+   * @param file The file to write, which will be truncated
+   */
+  LogFile(Path file) {
+    try {
+      Files.createDirectories(file.getParent());
+      out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  /**
+   * Relays a line of the log file to another log
+   *
+   * @param line A line from the log file
+   * @param to   Where to relay it
+   */
+  static void relay(String line, Log to) {
+    int space = line.indexOf(' ');
+    String content = line.substring(space + 1);
+    switch (line.substring(0, Math.max(space, 0))) {
+      case "DEBUG" -> to.debug(content);
+      case "WARN" -> to.warn(content);
+      case "ERROR" -> to.error(content);
+      default -> to.info(content);
+    }
+  }
+
+  private synchronized void write(String level, CharSequence content, Throwable error) {
+    StringWriter text = new StringWriter();
+    if (content != null) {
+      text.append(content).append('\n');
+    }
+    if (error != null) {
+      error.printStackTrace(new PrintWriter(text));
+    }
+    try {
+      for (String line : text.toString().split("\r?\n")) {
+        out.write(level + " " + line + "\n");
+      }
+      out.flush();
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  @Override
+  public boolean isDebugEnabled() {
+    return false;
+  }
+
+  @Override
+  public void debug(CharSequence content) {
+    // not recorded
+  }
+
+  @Override
+  public void debug(CharSequence content, Throwable error) {
+    // not recorded
+  }
+
+  @Override
+  public void debug(Throwable error) {
+    // not recorded
+  }
+
+  @Override
+  public boolean isInfoEnabled() {
+    return true;
+  }
+
+  @Override
+  public void info(CharSequence content) {
+    write("INFO", content, null);
+  }
+
+  @Override
+  public void info(CharSequence content, Throwable error) {
+    write("INFO", content, error);
+  }
+
+  @Override
+  public void info(Throwable error) {
+    write("INFO", null, error);
+  }
+
+  @Override
+  public boolean isWarnEnabled() {
+    return true;
+  }
+
+  @Override
+  public void warn(CharSequence content) {
+    write("WARN", content, null);
+  }
+
+  @Override
+  public void warn(CharSequence content, Throwable error) {
+    write("WARN", content, error);
+  }
+
+  @Override
+  public void warn(Throwable error) {
+    write("WARN", null, error);
+  }
+
+  @Override
+  public boolean isErrorEnabled() {
+    return true;
+  }
+
+  @Override
+  public void error(CharSequence content) {
+    write("ERROR", content, null);
+  }
+
+  @Override
+  public void error(CharSequence content, Throwable error) {
+    write("ERROR", content, error);
+  }
+
+  @Override
+  public void error(Throwable error) {
+    write("ERROR", null, error);
+  }
+
+  @Override
+  public void close() {
+    try {
+      out.close();
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package dev.flowty.steamdeploy;
+
+/**
+ * Maven configuration for a {@link Mapping}:
+ * <pre>
+ * &lt;mapping&gt;
+ *   &lt;localPath&gt;bin/*&lt;/localPath&gt;
+ *   &lt;depotPath&gt;bin&lt;/depotPath&gt;
+ *   &lt;recursive&gt;true&lt;/recursive&gt;
+ * &lt;/mapping&gt;
+ * </pre>
+ */
+public class MappingConfig {
+
+  /**
+   * Which files to include, relative to the depot source directory
+   */
+  private String localPath;
+
+  /**
+   * Where the files should go in the depot. Defaults to the depot root.
+   */
+  private String depotPath = ".";
+
+  /**
+   * Whether to include files in subdirectories. Defaults to {@code true}.
+   */
+  private boolean recursive = true;
+
+  /**
+   * @return The mapping
+   * @throws IllegalArgumentException if the configuration is incomplete
+   */
+  Mapping toMapping() {
+    if (localPath == null) {
+      throw new IllegalArgumentException("mapping localPath is required");
+    }
+    return new Mapping(localPath, depotPath, recursive);
+  }
+}
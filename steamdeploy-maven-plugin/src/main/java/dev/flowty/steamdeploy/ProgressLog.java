@@ -0,0 +1,80 @@
+package dev.flowty.steamdeploy;
+
+import dev.flowty.steamdeploy.Progress.Phase;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Consumer;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Reports deployment progress on the maven console. Transfer progress is reported in steps of 10%
+ * so as not to flood the build log.
+ */
+class ProgressLog implements Consumer<Progress> {
+
+  private static final String[] UNITS = {"B", "KB", "MB", "GB", "TB"};
+
+  private final Log log;
+  private Phase phase;
+  private int step = -1;
+
+  /**
+   * @param log Where to report progress
+   */
+  ProgressLog(Log log) {
+    this.log = log;
+  }
+
+  @Override
+  public synchronized void accept(Progress progress) {
+    switch (progress) {
+      case Progress.Login l -> {
+        if (l.success()) {
+          log.info("Logged in as " + l.user());
+        } else {
+          log.warn("Login as " + l.user() + " " + l.status());
+        }
+      }
+      case Progress.Depot d -> {
+        phase = null;
+        log.info("Building depot " + d.depotId());
+      }
+      case Progress.Transfer t -> {
+        int s = (int) (t.percent() / 10);
+        if (t.phase() != phase || s > step) {
+          phase = t.phase();
+          step = s;
+          log.info(String.format(Locale.ROOT, "%s %5.1f%% %s at %s/s%s",
+              t.phase() == Phase.SCANNING ? "Scanning " : "Uploading",
+              t.percent(), size(t.bytes()), size((long) t.bytesPerSecond()),
+              t.eta().map(eta -> ", ETA " + duration(eta)).orElse("")));
+        }
+      }
+      case Progress.Build b -> log.info("Created build " + b.buildId() + " of app " + b.appId());
+    }
+  }
+
+  /**
+   * @param bytes A number of bytes
+   * @return A human-readable representation
+   */
+  static String size(long bytes) {
+    double value = bytes;
+    int unit = 0;
+    while (value >= 1024 && unit < UNITS.length - 1) {
+      value /= 1024;
+      unit++;
+    }
+    return String.format(Locale.ROOT, unit == 0 ? "%.0f %s" : "%.1f %s", value, UNITS[unit]);
+  }
+
+  /**
+   * @param d A duration
+   * @return A human-readable representation
+   */
+  static String duration(Duration d) {
+    return d.toHours() > 0
+        ? String.format(Locale.ROOT, "%dh%02dm", d.toHours(), d.toMinutesPart())
+        : String.format(Locale.ROOT, "%dm%02ds", d.toMinutes(), d.toSecondsPart());
+  }
+}
@@ -0,0 +1,89 @@
+package dev.flowty.steamdeploy;
+
+import dev.flowty.steamdeploy.Handle.State;
+import java.nio.file.Paths;
+import java.util.Optional;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Starts deploying an application to steam in the background, so that the rest of the build can
+ * proceed during the upload. The <code>await-deploy</code> goal must be run later in the same build
+ * to collect the result.
+ * <p>
+ * The deployment runs on a thread of the maven process. If that process exits before
+ * <code>await-deploy</code> is reached, e.g.: because a later goal fails, then the upload is
+ * abandoned and the deployment is recorded as failed. Only the messages of this plugin are written
+ * to the deployment log: the SLF4J output of the core library goes to the maven console as usual,
+ * and so will be interleaved with that of the rest of the build.
+ */
+@Mojo(name = "start-deploy", defaultPhase = LifecyclePhase.VERIFY)
+public class StartDeployMojo extends AbstractDeployMojo {
+
+  /**
+   * Optional: The directory in which to record the state and log of the background deployment
+   */
+  @Parameter(property = "steamdeploy.handle", defaultValue = "target/steamdeploy")
+  private String handle;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (skip()) {
+      getLog().info("Skipping steam deployment");
+      return;
+    }
+    Handle h = new Handle(Paths.get(handle));
+    Optional<Handle.Status> previous = h.status();
+    if (previous.isPresent()
+        && previous.get().state() == State.RUNNING
+        && !previous.get().abandoned()) {
+      throw new MojoFailureException("A deployment is already running from " + h.dir());
+    }
+
+    Optional<Deployment> deployment = prepare();
+    if (deployment.isEmpty()) {
+      h.clearLog();
+      h.state(State.SKIPPED, "Application unchanged since the last deployment");
+      return;
+    }
+
+    LogFile log = new LogFile(h.log());
+    h.state(State.RUNNING, "");
+    // maven exits without waiting for us, so at least explain what happened
+    Thread exit = new Thread(() -> {
+      if (h.status().map(Handle.Status::state).orElse(State.RUNNING) == State.RUNNING) {
+        h.state(State.FAILED, "The build ended before await-deploy was reached, so the "
+            + "deployment was abandoned");
+      }
+    }, "steamdeploy-exit");
+    Thread thread = new Thread(() -> {
+      State state = State.FAILED;
+      String detail = "Deployment terminated unexpectedly";
+      try (log) {
+        Result result = deployment.get().run(log);
+        if (result.status() == 0) {
+          state = State.SUCCEEDED;
+          detail = "";
+        } else {
+          detail = result.abbreviated();
+        }
+      } catch (Exception e) {
+        log.error("Deployment failed", e);
+        detail = e.toString();
+      } finally {
+        h.state(state, detail);
+        try {
+          Runtime.getRuntime().removeShutdownHook(exit);
+        } catch (IllegalStateException ise) {
+          // we're already shutting down
+        }
+      }
+    }, "steamdeploy-background");
+    Runtime.getRuntime().addShutdownHook(exit);
+    thread.start();
+    getLog().info("Deploying to steam in the background, progress is logged to " + h.log());
+  }
+}
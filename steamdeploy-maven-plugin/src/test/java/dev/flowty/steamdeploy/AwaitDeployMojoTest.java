@@ -0,0 +1,43 @@
+package dev.flowty.steamdeploy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link AwaitDeployMojo}
+ */
+class AwaitDeployMojoTest {
+
+  private static final Path ROOT = Paths.get("target", "AwaitDeployMojoTest");
+
+  /**
+   * Only complete lines are relayed, a partial line waits until it is finished
+   */
+  @Test
+  void relay() {
+    Path file = ROOT.resolve("deploy.log");
+    QuietFiles.recursiveDelete(ROOT);
+    RecordingLog to = new RecordingLog();
+
+    Assertions.assertEquals(0, AwaitDeployMojo.relay(file, 0, to), "no log yet");
+
+    QuietFiles.createDirectories(ROOT);
+    QuietFiles.write(file, "INFO first\nWARN sec".getBytes(UTF_8));
+    long position = AwaitDeployMojo.relay(file, 0, to);
+    Assertions.assertEquals("INFO first\n".length(), position);
+    Assertions.assertEquals(List.of("INFO first"), to.lines);
+
+    Assertions.assertEquals(position, AwaitDeployMojo.relay(file, position, to), "no progress");
+
+    QuietFiles.write(file, "ond\nERROR thïrd\n".getBytes(UTF_8), StandardOpenOption.APPEND);
+    position = AwaitDeployMojo.relay(file, position, to);
+    Assertions.assertEquals(QuietFiles.readAllBytes(file).length, position);
+    Assertions.assertEquals(List.of("INFO first", "WARN second", "ERROR thïrd"), to.lines);
+  }
+}
@@ -0,0 +1,74 @@
+package dev.flowty.steamdeploy;
+
+import dev.flowty.steamdeploy.Handle.State;
+import dev.flowty.steamdeploy.Handle.Status;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link Handle}
+ */
+class HandleTest {
+
+  private static final Path ROOT = Paths.get("target", "HandleTest");
+
+  private final Handle handle = new Handle(ROOT);
+
+  @BeforeEach
+  void clean() {
+    QuietFiles.recursiveDelete(ROOT);
+  }
+
+  /**
+   * The recorded state can be read back, including multi-line details
+   */
+  @Test
+  void state() {
+    Assertions.assertEquals(Optional.empty(), handle.status());
+
+    handle.state(State.RUNNING, "");
+    Assertions.assertEquals(
+        Optional.of(new Status(State.RUNNING, ProcessHandle.current().pid(), "")),
+        handle.status());
+
+    handle.state(State.FAILED, "first line\nsecond line");
+    Assertions.assertEquals(
+        Optional.of(new Status(State.FAILED, ProcessHandle.current().pid(),
+            "first line\nsecond line")),
+        handle.status());
+  }
+
+  /**
+   * A malformed state file is reported as such
+   */
+  @Test
+  void malformed() {
+    QuietFiles.createDirectories(ROOT);
+    QuietFiles.write(ROOT.resolve("state"), "RUNNING".getBytes());
+
+    IllegalStateException ise = Assertions.assertThrows(IllegalStateException.class,
+        handle::status);
+    Assertions.assertEquals("Malformed deployment state in " + ROOT.resolve("state"),
+        ise.getMessage());
+  }
+
+  /**
+   * Only deployments that are running in a process that has gone are abandoned
+   */
+  @Test
+  void abandoned() throws Exception {
+    long self = ProcessHandle.current().pid();
+    Process process = new ProcessBuilder(
+        ProcessHandle.current().info().command().orElse("java"), "-version").start();
+    process.waitFor();
+    long gone = process.pid();
+
+    Assertions.assertFalse(new Status(State.RUNNING, self, "").abandoned(), "running");
+    Assertions.assertTrue(new Status(State.RUNNING, gone, "").abandoned(), "gone");
+    Assertions.assertFalse(new Status(State.SUCCEEDED, gone, "").abandoned(), "finished");
+  }
+}
@@ -0,0 +1,66 @@
+package dev.flowty.steamdeploy;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises {@link LogFile}
+ */
+class LogFileTest {
+
+  private static final Path ROOT = Paths.get("target", "LogFileTest");
+
+  /**
+   * Lines are relayed at the level they were written, and stack traces are kept together with
+   * their message
+   */
+  @Test
+  void relay() {
+    Path file = ROOT.resolve("deploy.log");
+    QuietFiles.recursiveDelete(ROOT);
+    try (LogFile log = new LogFile(file)) {
+      log.debug("not recorded");
+      log.info("info");
+      log.warn("multi\nline");
+      log.error("error", new IllegalStateException("boom"));
+    }
+
+    RecordingLog to = new RecordingLog();
+    try (Stream<String> lines = QuietFiles.lines(file)) {
+      lines.forEach(line -> LogFile.relay(line, to));
+    }
+
+    Assertions.assertEquals(List.of(
+            "INFO info",
+            "WARN multi",
+            "WARN line",
+            "ERROR error",
+            "ERROR java.lang.IllegalStateException: boom"),
+        to.lines.subList(0, 5));
+    Assertions.assertTrue(to.lines.subList(5, to.lines.size()).stream()
+        .allMatch(l -> l.startsWith("ERROR \tat ")), to.lines::toString);
+  }
+
+  /**
+   * Lines with unexpected levels are relayed intact as information
+   */
+  @Test
+  void unknown() {
+    RecordingLog to = new RecordingLog();
+    LogFile.relay("TRACE detail", to);
+    LogFile.relay("DEBUG detail", to);
+    LogFile.relay("nolevel", to);
+    LogFile.relay("", to);
+
+    Assertions.assertEquals(List.of(
+            "INFO detail",
+            "DEBUG detail",
+            "INFO nolevel",
+            "INFO "),
+        to.lines);
+  }
+}
@@ -0,0 +1,36 @@
+package dev.flowty.steamdeploy;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * A maven log that remembers what was logged to it
+ */
+class RecordingLog extends SystemStreamLog {
+
+  /**
+   * The logged messages, each prefixed with its level
+   */
+  final List<String> lines = new ArrayList<>();
+
+  @Override
+  public void debug(CharSequence content) {
+    lines.add("DEBUG " + content);
+  }
+
+  @Override
+  public void info(CharSequence content) {
+    lines.add("INFO " + content);
+  }
+
+  @Override
+  public void warn(CharSequence content) {
+    lines.add("WARN " + content);
+  }
+
+  @Override
+  public void error(CharSequence content) {
+    lines.add("ERROR " + content);
+  }
+}